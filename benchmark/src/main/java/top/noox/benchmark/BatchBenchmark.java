@@ -0,0 +1,77 @@
+package top.noox.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import top.noox.bst.BSTree;
+import top.noox.rbtree.RBTree;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量更新：逐个insert/delete 对比 insertAll/deleteAll
+ * <p>树中预先放入偶数key，每次调用先插入一批随机奇数key再全部删除，树规模保持不变
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"10000", "100000"})
+    public int batchSize;
+
+    private Integer[] batch;
+
+    private RBTree<Integer, Integer> rbTree;
+
+    private BSTree<Integer, Integer> avl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        batch = new Integer[batchSize];
+        for (int i = 0; i < batchSize; i++)
+            batch[i] = random.nextInt(size) << 1 | 1;
+
+        Integer[] keys = new Integer[size];
+        for (int i = 0; i < size; i++)
+            keys[i] = i << 1;
+        rbTree = new RBTree<>();
+        rbTree.buildFromSorted(keys, keys);
+        avl = new BSTree<>();
+        avl.buildFromSorted(keys, keys);
+    }
+
+    @Benchmark
+    public void rbTreeLoop() {
+        for (Integer key : batch)
+            rbTree.insert(key, key);
+        for (Integer key : batch)
+            rbTree.delete(key);
+    }
+
+    @Benchmark
+    public void rbTreeBatch() {
+        rbTree.insertAll(batch, batch);
+        rbTree.deleteAll(batch);
+    }
+
+    @Benchmark
+    public void avlLoop() {
+        for (Integer key : batch)
+            avl.insert(key, key);
+        for (Integer key : batch)
+            avl.delete(key);
+    }
+
+    @Benchmark
+    public void avlBatch() {
+        avl.insertAll(batch, batch);
+        avl.deleteAll(batch);
+    }
+}
@@ -0,0 +1,61 @@
+package top.noox.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import top.noox.bst.BSTree;
+import top.noox.rbtree.RBTree;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 由升序key建树：逐个insert 对比 buildFromSorted
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkLoadBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    private Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new Integer[size];
+        for (int i = 0; i < size; i++)
+            keys[i] = i;
+    }
+
+    @Benchmark
+    public Object rbTreeInsert() {
+        RBTree<Integer, Integer> tree = new RBTree<>();
+        for (Integer key : keys)
+            tree.insert(key, key);
+        return tree;
+    }
+
+    @Benchmark
+    public Object rbTreeBuildFromSorted() {
+        RBTree<Integer, Integer> tree = new RBTree<>();
+        tree.buildFromSorted(keys, keys);
+        return tree;
+    }
+
+    @Benchmark
+    public Object avlInsert() {
+        BSTree<Integer, Integer> tree = new BSTree<>();
+        for (Integer key : keys)
+            tree.insert(key, key);
+        return tree;
+    }
+
+    @Benchmark
+    public Object avlBuildFromSorted() {
+        BSTree<Integer, Integer> tree = new BSTree<>();
+        tree.buildFromSorted(keys, keys);
+        return tree;
+    }
+}
@@ -0,0 +1,31 @@
+package top.noox.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 删除一个key后再插回，树规模保持不变
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeleteBenchmark extends TreeState {
+
+    private SortedTree tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        initKeys();
+        tree = fill();
+    }
+
+    @Benchmark
+    public void deleteThenInsert() {
+        Integer key = nextKey();
+        tree.delete(key);
+        tree.insert(key, key);
+    }
+}
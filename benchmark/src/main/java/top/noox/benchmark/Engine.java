@@ -0,0 +1,81 @@
+package top.noox.benchmark;
+
+import top.noox.bptree.BPlusTree;
+import top.noox.bst.BSTree;
+import top.noox.rbtree.ArrayRBTree;
+import top.noox.rbtree.RBTree;
+import top.noox.rbtree.RBTreeMap;
+
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+
+/**
+ * <p>参与对比的树实现，统一包装成 {@link SortedTree}
+ * <p>每种实现只需给出构造方法与insert、contains、delete三个操作，由 {@link #adapter} 组装
+ */
+public enum Engine {
+
+    RBTREE(adapter(RBTree<Integer, Integer>::new, RBTree::insert, (tree, key) -> tree.find(key) != null, RBTree::delete)),
+
+    ARRAY_RBTREE(adapter(ArrayRBTree<Integer, Integer>::new, ArrayRBTree::insert, ArrayRBTree::contains, ArrayRBTree::delete)),
+
+    /**
+     * 经 {@link RBTreeMap} 的Map接口访问，衡量NavigableMap包装层的开销
+     */
+    RBTREE_MAP(adapter(RBTreeMap<Integer, Integer>::new, RBTreeMap::put, RBTreeMap::containsKey, RBTreeMap::remove)),
+
+    AVL(adapter(BSTree<Integer, Integer>::new, BSTree::insert, (tree, key) -> tree.find(key) != null, BSTree::delete)),
+
+    BPLUSTREE(adapter(BPlusTree<Integer, Integer>::new, BPlusTree::insert, BPlusTree::contains, BPlusTree::delete)),
+
+    /**
+     * 基准：java.util.TreeMap
+     */
+    TREEMAP(adapter(TreeMap<Integer, Integer>::new, TreeMap::put, TreeMap::containsKey, TreeMap::remove));
+
+    /**
+     * insert操作：树、key、value
+     */
+    private interface Insert<T> {
+
+        void insert(T tree, Integer key, Integer value);
+    }
+
+    private final Supplier<SortedTree> factory;
+
+    Engine(Supplier<SortedTree> factory) {
+        this.factory = factory;
+    }
+
+    public SortedTree create() {
+        return factory.get();
+    }
+
+    /**
+     * 用构造方法与三个操作组装SortedTree的工厂，每次调用create都新建一棵空树
+     */
+    private static <T> Supplier<SortedTree> adapter(Supplier<T> constructor, Insert<T> insert,
+                                                    BiPredicate<T, Integer> contains, BiConsumer<T, Integer> delete) {
+        return () -> {
+            T tree = constructor.get();
+            return new SortedTree() {
+                @Override
+                public void insert(Integer key, Integer value) {
+                    insert.insert(tree, key, value);
+                }
+
+                @Override
+                public boolean contains(Integer key) {
+                    return contains.test(tree, key);
+                }
+
+                @Override
+                public void delete(Integer key) {
+                    delete.accept(tree, key);
+                }
+            };
+        };
+    }
+}
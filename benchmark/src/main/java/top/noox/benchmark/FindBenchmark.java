@@ -0,0 +1,29 @@
+package top.noox.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在规模为size的树中查找已存在的key
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindBenchmark extends TreeState {
+
+    private SortedTree tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        initKeys();
+        tree = fill();
+    }
+
+    @Benchmark
+    public boolean find() {
+        return tree.contains(nextKey());
+    }
+}
@@ -0,0 +1,26 @@
+package top.noox.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 从空树开始插入size个key的总耗时
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InsertBenchmark extends TreeState {
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        initKeys();
+    }
+
+    @Benchmark
+    public SortedTree insertAll() {
+        return fill();
+    }
+}
@@ -0,0 +1,42 @@
+package top.noox.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读写混合：每 readPercent% 的操作为查找，其余为删除后再插回
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MixedBenchmark extends TreeState {
+
+    @Param({"50", "90", "99"})
+    public int readPercent;
+
+    private SortedTree tree;
+
+    private int tick;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        initKeys();
+        tree = fill();
+        tick = 0;
+    }
+
+    @Benchmark
+    public boolean mixed() {
+        Integer key = nextKey();
+        if (++tick == 100)
+            tick = 0;
+        if (tick < readPercent)
+            return tree.contains(key);
+        tree.delete(key);
+        tree.insert(key, key);
+        return true;
+    }
+}
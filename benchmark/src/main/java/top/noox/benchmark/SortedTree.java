@@ -0,0 +1,13 @@
+package top.noox.benchmark;
+
+/**
+ * 基准测试使用的最小公共接口
+ */
+public interface SortedTree {
+
+    void insert(Integer key, Integer value);
+
+    boolean contains(Integer key);
+
+    void delete(Integer key);
+}
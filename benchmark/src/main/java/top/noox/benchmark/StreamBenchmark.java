@@ -0,0 +1,63 @@
+package top.noox.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import top.noox.bst.BSTree;
+import top.noox.rbtree.RBTree;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对全部结点做过滤加求和：串行stream 对比 parallelStream，并行度取决于公共ForkJoinPool的线程数
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private RBTree<Integer, Integer> rbTree;
+    private BSTree<Integer, Integer> avl;
+    private TreeMap<Integer, Integer> treeMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Integer[] keys = new Integer[size];
+        for (int i = 0; i < size; i++)
+            keys[i] = i;
+        rbTree = new RBTree<>();
+        rbTree.buildFromSorted(keys, keys);
+        avl = new BSTree<>();
+        avl.buildFromSorted(keys, keys);
+        treeMap = new TreeMap<>();
+        for (Integer key : keys)
+            treeMap.put(key, key);
+    }
+
+    @Benchmark
+    public long rbTree() {
+        return (parallel ? rbTree.parallelStream() : rbTree.stream())
+                .mapToLong(Map.Entry::getValue).filter(v -> (v & 3) != 0).sum();
+    }
+
+    @Benchmark
+    public long avl() {
+        return (parallel ? avl.parallelStream() : avl.stream())
+                .mapToLong(Map.Entry::getValue).filter(v -> (v & 3) != 0).sum();
+    }
+
+    @Benchmark
+    public long treeMap() {
+        return (parallel ? treeMap.entrySet().parallelStream() : treeMap.entrySet().stream())
+                .mapToLong(Map.Entry::getValue).filter(v -> (v & 3) != 0).sum();
+    }
+}
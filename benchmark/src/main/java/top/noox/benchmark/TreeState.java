@@ -0,0 +1,65 @@
+package top.noox.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+
+/**
+ * 各基准共用的参数与数据：实现、规模、key的访问顺序
+ * <p>key事先装箱好放在数组中，测量时不产生装箱分配
+ */
+@State(Scope.Benchmark)
+public abstract class TreeState {
+
+    @Param({"RBTREE", "ARRAY_RBTREE", "RBTREE_MAP", "AVL", "BPLUSTREE", "TREEMAP"})
+    public Engine engine;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    /**
+     * sequential：按key递增顺序访问   random：按随机排列访问
+     */
+    @Param({"sequential", "random"})
+    public String order;
+
+    /**
+     * 0..size-1 按 order 排列
+     */
+    protected Integer[] keys;
+
+    protected int cursor;
+
+    protected void initKeys() {
+        keys = new Integer[size];
+        for (int i = 0; i < size; i++)
+            keys[i] = i;
+        if ("random".equals(order)) {
+            Random random = new Random(42);
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                Integer tmp = keys[i];
+                keys[i] = keys[j];
+                keys[j] = tmp;
+            }
+        }
+        cursor = 0;
+    }
+
+    protected SortedTree fill() {
+        SortedTree tree = engine.create();
+        for (Integer key : keys)
+            tree.insert(key, key);
+        return tree;
+    }
+
+    /**
+     * 依次返回下一个key，到末尾后回绕
+     */
+    protected Integer nextKey() {
+        Integer key = keys[cursor];
+        if (++cursor == keys.length)
+            cursor = 0;
+        return key;
+    }
+}
@@ -0,0 +1,44 @@
+package top.noox.bptree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * B+树随机查找的耗时随结点大小（maxKeys）的变化，用于为不同的缓存层次选择合适的扇出
+ * <p>扇出越大树越矮、访问的结点越少，但结点内二分查找跨越的缓存行也越多
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BPlusTreeFanoutBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    @Param({"8", "16", "32", "64", "128", "256"})
+    public int maxKeys;
+
+    private Integer[] keys;
+
+    private BPlusTree<Integer, Integer> tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new Integer[size];
+        tree = new BPlusTree<>(maxKeys);
+        for (int i = 0; i < size; i++) {
+            keys[i] = i;
+            tree.insert(keys[i], keys[i]);
+        }
+    }
+
+    @Benchmark
+    public boolean find() {
+        return tree.contains(keys[ThreadLocalRandom.current().nextInt(size)]);
+    }
+}
@@ -0,0 +1,64 @@
+package top.noox.bptree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 磁盘B+树随机查找与覆盖写入的耗时随缓存页数的变化：缓存放得下全部页时只有内存访问，放不下时查找会触发读页与脏页写回
+ * <p>写入默认不在每次提交时force日志，测量的是日志追加与页缓存的开销而不是磁盘同步的延迟，可用 -p syncOnCommit=true 对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DiskBTreeBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"256", "65536"})
+    public int poolPages;
+
+    @Param({"false"})
+    public boolean syncOnCommit;
+
+    private Path file;
+
+    private DiskBTree tree;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("disk-btree", ".db");
+        Files.delete(file);
+        tree = new DiskBTree(file, DiskBTree.DEFAULT_PAGE_SIZE, poolPages, syncOnCommit);
+        for (int i = 0; i < size; i++)
+            tree.insert(i, i);
+        tree.checkpoint();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        tree.close();
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(Paths.get(file + ".wal"));
+    }
+
+    @Benchmark
+    public long find() throws IOException {
+        return tree.get(ThreadLocalRandom.current().nextInt(size), -1);
+    }
+
+    @Benchmark
+    public void update() throws IOException {
+        int key = ThreadLocalRandom.current().nextInt(size);
+        tree.insert(key, key);
+    }
+}
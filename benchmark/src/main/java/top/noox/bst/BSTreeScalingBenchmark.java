@@ -0,0 +1,39 @@
+package top.noox.bst;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AVL单次插入+删除的耗时随树规模的变化
+ * <p>树中预先放入偶数key，每次操作插入一个随机奇数key再删除，树规模保持不变
+ * <p>高度缓存正确时，每次操作的耗时应只随log(n)缓慢增长
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BSTreeScalingBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private BSTree<Integer, Integer> tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tree = new BSTree<>();
+        for (int i = 0; i < size; i++)
+            tree.insert(i << 1, i);
+    }
+
+    @Benchmark
+    public void insertThenDelete() {
+        int key = (ThreadLocalRandom.current().nextInt(size) << 1) | 1;
+        tree.insert(key, key);
+        tree.delete(key);
+    }
+}
@@ -0,0 +1,99 @@
+package top.noox.rbtree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读多写少（默认95%查找）的多线程吞吐量：ConcurrentRBTree、CopyOnWriteRBTree、LockFreeRBTree 对比 Collections.synchronizedSortedMap(new TreeMap())
+ * <p>线程数用 -t 指定，例如依次运行 -t 1、-t 4、-t 16、-t 32 观察读吞吐量的扩展情况
+ * <p>写操作为删除一个key后再插回，树规模保持不变
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentReadBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"95"})
+    public int readPercent;
+
+    private Integer[] keys;
+
+    private ConcurrentRBTree<Integer, Integer> tree;
+
+    private CopyOnWriteRBTree<Integer, Integer> copyOnWriteTree;
+
+    private LockFreeRBTree<Integer, Integer> lockFreeTree;
+
+    private SortedMap<Integer, Integer> synchronizedMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new Integer[size];
+        tree = new ConcurrentRBTree<>();
+        copyOnWriteTree = new CopyOnWriteRBTree<>();
+        lockFreeTree = new LockFreeRBTree<>();
+        synchronizedMap = Collections.synchronizedSortedMap(new TreeMap<>());
+        for (int i = 0; i < size; i++) {
+            keys[i] = i;
+            tree.insert(keys[i], keys[i]);
+            copyOnWriteTree.insert(keys[i], keys[i]);
+            lockFreeTree.insert(keys[i], keys[i]);
+            synchronizedMap.put(keys[i], keys[i]);
+        }
+    }
+
+    @Benchmark
+    public Object concurrentRBTree() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Integer key = keys[random.nextInt(size)];
+        if (random.nextInt(100) < readPercent)
+            return tree.get(key);
+        tree.delete(key);
+        tree.insert(key, key);
+        return key;
+    }
+
+    @Benchmark
+    public Object copyOnWriteRBTree() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Integer key = keys[random.nextInt(size)];
+        if (random.nextInt(100) < readPercent)
+            return copyOnWriteTree.get(key);
+        copyOnWriteTree.delete(key);
+        copyOnWriteTree.insert(key, key);
+        return key;
+    }
+
+    @Benchmark
+    public Object lockFreeRBTree() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Integer key = keys[random.nextInt(size)];
+        if (random.nextInt(100) < readPercent)
+            return lockFreeTree.get(key);
+        lockFreeTree.delete(key);
+        lockFreeTree.insert(key, key);
+        return key;
+    }
+
+    @Benchmark
+    public Object synchronizedTreeMap() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Integer key = keys[random.nextInt(size)];
+        if (random.nextInt(100) < readPercent)
+            return synchronizedMap.get(key);
+        synchronizedMap.remove(key);
+        synchronizedMap.put(key, key);
+        return key;
+    }
+}
@@ -0,0 +1,55 @@
+package top.noox.rbtree;
+
+import org.openjdk.jmh.annotations.*;
+import top.noox.metrics.CountingTreeMetrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 热点路径计数的开销：metrics=none 为默认的空实现，应与未插桩时一致；metrics=counting 为实际计数的代价
+ * <p>每个参数组合在单独的JVM中运行，空实现的调用点只见过一种类型，可被JIT完全内联消除
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"none", "counting"})
+    public String metrics;
+
+    private Integer[] keys;
+
+    private RBTree<Integer, Integer> tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new Integer[size];
+        tree = new RBTree<>();
+        if ("counting".equals(metrics))
+            tree.setMetrics(new CountingTreeMetrics());
+        for (int i = 0; i < size; i++) {
+            keys[i] = i;
+            tree.insert(keys[i], keys[i]);
+        }
+    }
+
+    @Benchmark
+    public Object find() {
+        return tree.find(keys[ThreadLocalRandom.current().nextInt(size)]);
+    }
+
+    @Benchmark
+    public Object deleteInsert() {
+        Integer key = keys[ThreadLocalRandom.current().nextInt(size)];
+        tree.delete(key);
+        tree.insert(key, key);
+        return key;
+    }
+}
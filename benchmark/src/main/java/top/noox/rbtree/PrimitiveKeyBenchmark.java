@@ -0,0 +1,73 @@
+package top.noox.rbtree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * long key的查找与插入：泛型 RBTree&lt;Long, V&gt;（调用方持有的是long，需要装箱）对比 LongRBTree
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrimitiveKeyBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private long[] keys;
+
+    private RBTree<Long, Object> generic;
+
+    private LongRBTree<Object> primitive;
+
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        keys = new long[size];
+        generic = new RBTree<>();
+        primitive = new LongRBTree<>();
+        for (int i = 0; i < size; i++) {
+            keys[i] = random.nextLong();
+            generic.insert(keys[i], Boolean.TRUE);
+            primitive.insert(keys[i], Boolean.TRUE);
+        }
+    }
+
+    private long nextKey() {
+        long key = keys[cursor];
+        if (++cursor == keys.length)
+            cursor = 0;
+        return key;
+    }
+
+    @Benchmark
+    public Object findGeneric() {
+        return generic.find(nextKey());
+    }
+
+    @Benchmark
+    public Object findPrimitive() {
+        return primitive.find(nextKey());
+    }
+
+    @Benchmark
+    public void deleteThenInsertGeneric() {
+        long key = nextKey();
+        generic.delete(key);
+        generic.insert(key, Boolean.TRUE);
+    }
+
+    @Benchmark
+    public void deleteThenInsertPrimitive() {
+        long key = nextKey();
+        primitive.delete(key);
+        primitive.insert(key, Boolean.TRUE);
+    }
+}
@@ -0,0 +1,44 @@
+package top.noox.rbtree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 红黑树删除吞吐量：不挂监听器（quiet）与每次修复后渲染整棵树（render，即原先打印时的开销，不含控制台IO）对比
+ * <p>每次操作删除一个随机key后再插回，树规模保持不变
+ * <p>render模式下渲染网格随树深度指数增长，规模不宜设置过大
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RBTreeDeleteBenchmark {
+
+    @Param({"1000"})
+    public int size;
+
+    @Param({"quiet", "render"})
+    public String mode;
+
+    private RBTree<Integer, Integer> tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tree = new RBTree<>();
+        for (int i = 0; i < size; i++)
+            tree.insert(i, i);
+        if ("render".equals(mode))
+            tree.setListener(TreeOperation::render);
+    }
+
+    @Benchmark
+    public void deleteThenInsert() {
+        Integer key = ThreadLocalRandom.current().nextInt(size);
+        tree.delete(key);
+        tree.insert(key, key);
+    }
+}
@@ -0,0 +1,54 @@
+package top.noox.rbtree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>红黑树写路径的耗时，用于观察insertFixUp与deleteFixUp的开销
+ * <p>ascending：从空树按升序插入1000个key，插入修复的变色上溯最频繁，结果按单次插入折算
+ * <p>deleteInsert：删除一个随机key后再插回，树规模保持不变，覆盖删除修复的各个情景
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RBTreeWriteBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    private Integer[] keys;
+
+    private RBTree<Integer, Integer> tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new Integer[size];
+        tree = new RBTree<>();
+        for (int i = 0; i < size; i++) {
+            keys[i] = i;
+            tree.insert(keys[i], keys[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public RBTree<Integer, Integer> ascending() {
+        RBTree<Integer, Integer> fresh = new RBTree<>();
+        for (int i = 0; i < 1000; i++)
+            fresh.insert(keys[i], keys[i]);
+        return fresh;
+    }
+
+    @Benchmark
+    public Object deleteInsert() {
+        Integer key = keys[ThreadLocalRandom.current().nextInt(size)];
+        tree.delete(key);
+        tree.insert(key, key);
+        return key;
+    }
+}
@@ -0,0 +1,84 @@
+package top.noox.rbtree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>以null为叶子的 RBTree 对比以哨兵为叶子的 SentinelRBTree，场景同 RBTreeWriteBenchmark
+ * <p>注意RBTree还维护子树结点数与metrics钩子，差值不全是判空的开销；分支预测失败次数可用 -prof perfnorm 查看（需要Linux perf）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SentinelBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    private Integer[] keys;
+
+    private RBTree<Integer, Integer> nullLeaves;
+
+    private SentinelRBTree<Integer, Integer> sentinel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new Integer[size];
+        nullLeaves = new RBTree<>();
+        sentinel = new SentinelRBTree<>();
+        for (int i = 0; i < size; i++) {
+            keys[i] = i;
+            nullLeaves.insert(keys[i], keys[i]);
+            sentinel.insert(keys[i], keys[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public Object ascendingNull() {
+        RBTree<Integer, Integer> fresh = new RBTree<>();
+        for (int i = 0; i < 1000; i++)
+            fresh.insert(keys[i], keys[i]);
+        return fresh;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public Object ascendingSentinel() {
+        SentinelRBTree<Integer, Integer> fresh = new SentinelRBTree<>();
+        for (int i = 0; i < 1000; i++)
+            fresh.insert(keys[i], keys[i]);
+        return fresh;
+    }
+
+    @Benchmark
+    public Object deleteInsertNull() {
+        Integer key = keys[ThreadLocalRandom.current().nextInt(size)];
+        nullLeaves.delete(key);
+        nullLeaves.insert(key, key);
+        return key;
+    }
+
+    @Benchmark
+    public Object deleteInsertSentinel() {
+        Integer key = keys[ThreadLocalRandom.current().nextInt(size)];
+        sentinel.delete(key);
+        sentinel.insert(key, key);
+        return key;
+    }
+
+    @Benchmark
+    public Object findNull() {
+        return nullLeaves.find(keys[ThreadLocalRandom.current().nextInt(size)]);
+    }
+
+    @Benchmark
+    public Object findSentinel() {
+        return sentinel.find(keys[ThreadLocalRandom.current().nextInt(size)]);
+    }
+}
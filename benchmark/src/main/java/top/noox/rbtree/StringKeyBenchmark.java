@@ -0,0 +1,92 @@
+package top.noox.rbtree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>String key的查找与删除后插回：String.compareTo逐层比较对比结点中缓存的 KeyPrefix.STRING 前缀
+ * <p>shape=random时key为随机字母数字串，前4个char几乎总能分出大小；
+ * shape=shared时key形如"user:000123"，前缀全部相同，缓存帮不上忙，只剩多一次long比较的开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StringKeyBenchmark {
+
+    private static final String ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    @Param({"random", "shared"})
+    public String shape;
+
+    private String[] keys;
+
+    private RBTree<String, Object> plain;
+
+    private RBTree<String, Object> prefixed;
+
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        keys = new String[size];
+        plain = new RBTree<>();
+        prefixed = new RBTree<>(null, KeyPrefix.STRING);
+        for (int i = 0; i < size; i++) {
+            if (shape.equals("shared")) {
+                keys[i] = String.format("user:%09d", random.nextInt(Integer.MAX_VALUE));
+            } else {
+                char[] chars = new char[16];
+                for (int j = 0; j < chars.length; j++)
+                    chars[j] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+                keys[i] = new String(chars);
+            }
+            plain.insert(keys[i], Boolean.TRUE);
+            prefixed.insert(keys[i], Boolean.TRUE);
+        }
+        //查找用内容相同的另一个String，避免compareTo因引用相同而提前返回
+        for (int i = 0; i < size; i++)
+            keys[i] = new String(keys[i].toCharArray());
+    }
+
+    private String nextKey() {
+        String key = keys[cursor];
+        if (++cursor == keys.length)
+            cursor = 0;
+        return key;
+    }
+
+    @Benchmark
+    public Object findPlain() {
+        return plain.find(nextKey());
+    }
+
+    @Benchmark
+    public Object findPrefixed() {
+        return prefixed.find(nextKey());
+    }
+
+    @Benchmark
+    public Object deleteInsertPlain() {
+        String key = nextKey();
+        plain.delete(key);
+        plain.insert(key, key);
+        return key;
+    }
+
+    @Benchmark
+    public Object deleteInsertPrefixed() {
+        String key = nextKey();
+        prefixed.delete(key);
+        prefixed.insert(key, key);
+        return key;
+    }
+}
@@ -0,0 +1,65 @@
+package top.noox.rbtree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写多的多线程吞吐量：按key范围分片的 StripedRBTree、无锁的 LockFreeRBTree 对比单锁的 ConcurrentRBTree
+ * <p>线程数用 -t 指定；key在 [0, size) 内均匀分布，分片按等宽区间切分
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StripedWriteBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"16"})
+    public int shards;
+
+    private Integer[] keys;
+
+    private StripedRBTree<Integer, Integer> striped;
+
+    private ConcurrentRBTree<Integer, Integer> single;
+
+    private LockFreeRBTree<Integer, Integer> lockFree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new Integer[size];
+        for (int i = 0; i < size; i++)
+            keys[i] = i;
+
+        Integer[] boundaries = new Integer[shards - 1];
+        for (int i = 1; i < shards; i++)
+            boundaries[i - 1] = (int) ((long) size * i / shards);
+        striped = new StripedRBTree<>(boundaries);
+        single = new ConcurrentRBTree<>();
+        lockFree = new LockFreeRBTree<>();
+    }
+
+    @Benchmark
+    public void striped() {
+        Integer key = keys[ThreadLocalRandom.current().nextInt(size)];
+        striped.insert(key, key);
+    }
+
+    @Benchmark
+    public void singleLock() {
+        Integer key = keys[ThreadLocalRandom.current().nextInt(size)];
+        single.insert(key, key);
+    }
+
+    @Benchmark
+    public void lockFree() {
+        Integer key = keys[ThreadLocalRandom.current().nextInt(size)];
+        lockFree.insert(key, key);
+    }
+}
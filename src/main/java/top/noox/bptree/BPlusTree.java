@@ -0,0 +1,535 @@
+package top.noox.bptree;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>内存中的B+树，插入、删除、查找的接口与 RBTree、BSTree 一致，可以直接替换
+ * <p>每个结点保存最多maxKeys个有序key，结点内二分查找；一次查找只访问 log(maxKeys+1)(n) 个结点，
+ * 而二叉树每层一个结点，结点越大访问的结点越少，缓存未命中也越少
+ * <p>value只存放在叶子中，叶子之间按key顺序用next链接，有序遍历与范围扫描沿链表顺序读取，不需要回到上层
+ * <p>maxKeys按缓存行或页的大小调整：引用4字节时，16个key的数组约占一个64字节缓存行，256个key约占一个1KB的块
+ * <p>
+ * @param <K> key
+ * @param <V> value
+ */
+@SuppressWarnings("unchecked")
+public class BPlusTree<K extends Comparable<K>, V> implements Iterable<Map.Entry<K, V>> {
+
+    private static final int DEFAULT_MAX_KEYS = 64;
+
+    /**
+     * 每个结点最多的key数，内部结点最多有maxKeys+1个孩子
+     */
+    private final int maxKeys;
+
+    /**
+     * 非根结点最少的key数，少于此数时向兄弟借或与兄弟合并
+     */
+    private final int minKeys;
+
+    private Node root;
+
+    private int size;
+
+    /**
+     * 内部结点分裂时提升到父结点的key
+     */
+    private Object promoted;
+
+
+    public BPlusTree() {
+        this(DEFAULT_MAX_KEYS);
+    }
+
+    /**
+     * @param maxKeys 每个结点最多的key数，至少为3
+     */
+    public BPlusTree(int maxKeys) {
+        if (maxKeys < 3)
+            throw new IllegalArgumentException("maxKeys must be at least 3");
+        this.maxKeys = maxKeys;
+        this.minKeys = maxKeys / 2;
+        this.root = new Leaf(maxKeys);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 树高，只有一个叶子时为1
+     */
+    public int height() {
+        int height = 1;
+        for (Node node = root; node instanceof Inner; node = ((Inner) node).children[0])
+            height++;
+        return height;
+    }
+
+
+    /**
+     * 根据key查找value
+     * @param key   key
+     * @return  找到返回value，否则返回null
+     */
+    public V get(K key) {
+        Leaf leaf = leafOf(key);
+        int i = leaf.indexOf(key);
+        return i >= 0 ? (V) leaf.values[i] : null;
+    }
+
+    public boolean contains(K key) {
+        return leafOf(key).indexOf(key) >= 0;
+    }
+
+    private Leaf leafOf(K key) {
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            node = inner.children[inner.childIndex(key)];
+        }
+        return (Leaf) node;
+    }
+
+
+    /**
+     * 对外插入方法，key已存在时覆盖value
+     * @param key  key
+     * @param value value
+     */
+    public void insert(K key, V value) {
+        Node sibling = insert(root, key, value);
+        //根分裂：新根只有一个key、两个孩子
+        if (sibling != null) {
+            Inner newRoot = new Inner(maxKeys);
+            newRoot.keys[0] = sibling instanceof Leaf ? sibling.keys[0] : promoted;
+            newRoot.children[0] = root;
+            newRoot.children[1] = sibling;
+            newRoot.size = 1;
+            root = newRoot;
+        }
+    }
+
+    /**
+     * 插入到以node为根的子树
+     * @return  node分裂时返回新的右兄弟（内部结点提升的key放在promoted中），否则返回null
+     */
+    private Node insert(Node node, K key, V value) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int i = leaf.indexOf(key);
+            if (i >= 0) {
+                leaf.values[i] = value;
+                return null;
+            }
+            leaf.insertAt(-i - 1, key, value);
+            size++;
+            return leaf.size > maxKeys ? leaf.split() : null;
+        }
+
+        Inner inner = (Inner) node;
+        int c = inner.childIndex(key);
+        Node sibling = insert(inner.children[c], key, value);
+        if (sibling == null)
+            return null;
+
+        inner.insertAt(c, sibling instanceof Leaf ? sibling.keys[0] : promoted, sibling);
+        if (inner.size <= maxKeys)
+            return null;
+        promoted = inner.keys[inner.size >>> 1];
+        return inner.split();
+    }
+
+    public void delete(K key) {
+        if (delete(root, key) && root instanceof Inner && root.size == 0)
+            root = ((Inner) root).children[0];  //根只剩一个孩子，树高减1
+    }
+
+    /**
+     * 从以node为根的子树中删除key，孩子不足minKeys时向兄弟借或与兄弟合并
+     * @return  key是否存在
+     */
+    private boolean delete(Node node, K key) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int i = leaf.indexOf(key);
+            if (i < 0)
+                return false;
+            leaf.removeAt(i);
+            size--;
+            return true;
+        }
+
+        Inner inner = (Inner) node;
+        int c = inner.childIndex(key);
+        if (!delete(inner.children[c], key))
+            return false;
+        if (inner.children[c].size < minKeys)
+            rebalance(inner, c);
+        return true;
+    }
+
+    /**
+     * <p>修复parent的第c个孩子的下溢
+     * <p>情景1：左兄弟有富余 <span style="color:#4f86cd"> => 借左兄弟最大的一项
+     * <p>情景2：右兄弟有富余 <span style="color:#4f86cd"> => 借右兄弟最小的一项
+     * <p>情景3：兄弟都没有富余 <span style="color:#4f86cd"> => 与兄弟合并，父结点少一个key，由上层继续检查
+     */
+    private void rebalance(Inner parent, int c) {
+        Node child = parent.children[c];
+        Node left = c > 0 ? parent.children[c - 1] : null;
+        Node right = c < parent.size ? parent.children[c + 1] : null;
+
+        if (left != null && left.size > minKeys) {
+            if (child instanceof Leaf) {
+                Leaf from = (Leaf) left;
+                ((Leaf) child).insertAt(0, from.keys[from.size - 1], from.values[from.size - 1]);
+                from.removeAt(from.size - 1);
+                parent.keys[c - 1] = child.keys[0];
+            } else {
+                Inner from = (Inner) left, to = (Inner) child;
+                to.insertFirst(parent.keys[c - 1], from.children[from.size]);
+                parent.keys[c - 1] = from.keys[from.size - 1];
+                from.removeLast();
+            }
+        } else if (right != null && right.size > minKeys) {
+            if (child instanceof Leaf) {
+                Leaf from = (Leaf) right;
+                ((Leaf) child).insertAt(child.size, from.keys[0], from.values[0]);
+                from.removeAt(0);
+                parent.keys[c] = from.keys[0];
+            } else {
+                Inner from = (Inner) right, to = (Inner) child;
+                to.insertAt(to.size, parent.keys[c], from.children[0]);
+                parent.keys[c] = from.keys[0];
+                from.removeFirst();
+            }
+        } else if (left != null) {
+            left.merge(parent.keys[c - 1], child);
+            parent.removeAt(c - 1);
+        } else {
+            child.merge(parent.keys[c], right);
+            parent.removeAt(c);
+        }
+    }
+
+
+    /**
+     * 按key升序遍历，沿叶子链表顺序读取
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        Node node = root;
+        while (node instanceof Inner)
+            node = ((Inner) node).children[0];
+        return new EntryIterator((Leaf) node, 0, null);
+    }
+
+    /**
+     * 按key升序遍历 [lo, hi) 范围内的结点，先从根下降到lo所在叶子，之后只沿叶子链表前进
+     * @param lo 下界（包含）
+     * @param hi 上界（不包含）
+     */
+    public Iterator<Map.Entry<K, V>> iterator(K lo, K hi) {
+        Leaf leaf = leafOf(lo);
+        int i = leaf.indexOf(lo);
+        return new EntryIterator(leaf, i >= 0 ? i : -i - 1, hi);
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+        private Leaf leaf;
+
+        private int index;
+
+        /**
+         * 上界（不包含），null表示不限
+         */
+        private final K hi;
+
+        EntryIterator(Leaf leaf, int index, K hi) {
+            this.leaf = leaf;
+            this.index = index;
+            this.hi = hi;
+            skipExhausted();
+        }
+
+        /**
+         * 当前叶子读完时跳到下一个非空叶子
+         */
+        private void skipExhausted() {
+            while (leaf != null && index >= leaf.size) {
+                leaf = leaf.next;
+                index = 0;
+            }
+            if (leaf != null && hi != null && ((K) leaf.keys[index]).compareTo(hi) >= 0)
+                leaf = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leaf != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (leaf == null)
+                throw new NoSuchElementException();
+            Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<>((K) leaf.keys[index], (V) leaf.values[index]);
+            index++;
+            skipExhausted();
+            return entry;
+        }
+    }
+
+
+    /**
+     * <p>检查全部不变式，O(n)，供差分测试在修改后调用
+     * <p>非根结点的key数在 [minKeys, maxKeys] 内，内部的根至少有一个key；所有叶子深度相同；
+     * 结点内key严格升序，分隔key把孩子的key划分为 [keys[i-1], keys[i])；size之后的位置已清空；
+     * 叶子链表按中序串起全部叶子，最后一个叶子的next为null；叶子中的key总数等于size
+     * @throws IllegalStateException 被破坏的不变式
+     */
+    void checkInvariants() {
+        if (root instanceof Inner && root.size == 0)
+            throw new IllegalStateException("inner root has no key");
+        List<Leaf> leaves = new ArrayList<>();
+        checkInvariants(root, null, null, height(), leaves);
+
+        int count = 0;
+        for (int i = 0; i < leaves.size(); i++) {
+            Leaf leaf = leaves.get(i);
+            Leaf expected = i + 1 < leaves.size() ? leaves.get(i + 1) : null;
+            if (leaf.next != expected)
+                throw new IllegalStateException("leaf chain is broken after leaf " + i + " of " + leaves.size()
+                        + " starting with " + (leaf.size > 0 ? leaf.keys[0] : "nothing"));
+            count += leaf.size;
+        }
+        if (count != size)
+            throw new IllegalStateException("leaves hold " + count + " keys, size is " + size);
+    }
+
+    /**
+     * 检查以node为根、还有depth层（含自身）的子树，叶子的key须在 [lo, hi) 内，分隔key须在 (lo, hi) 内，null表示不设界
+     * @param leaves 按中序收集的叶子
+     */
+    private void checkInvariants(Node node, K lo, K hi, int depth, List<Leaf> leaves) {
+        if (node.size > maxKeys || node != root && node.size < minKeys)
+            throw new IllegalStateException("node starting with " + (node.size > 0 ? node.keys[0] : "nothing")
+                    + " has " + node.size + " keys, expected in [" + minKeys + ", " + maxKeys + "]");
+        for (int i = node.size; i < node.keys.length; i++)
+            if (node.keys[i] != null)
+                throw new IllegalStateException("key slot " + i + " past size " + node.size + " is not cleared");
+        boolean leaf = node instanceof Leaf;
+        if (leaf != (depth == 1))
+            throw new IllegalStateException("leaves are at different depths");
+
+        for (int i = 0; i < node.size; i++) {
+            K key = (K) node.keys[i];
+            if (i > 0 && key.compareTo((K) node.keys[i - 1]) <= 0)
+                throw new IllegalStateException("key " + key + " is not above " + node.keys[i - 1]);
+            if (lo != null && (leaf ? key.compareTo(lo) < 0 : key.compareTo(lo) <= 0) || hi != null && key.compareTo(hi) >= 0)
+                throw new IllegalStateException((leaf ? "key " : "separator ") + key + " is out of order, expected in "
+                        + (leaf ? "[" : "(") + lo + ", " + hi + ")");
+        }
+
+        if (leaf) {
+            for (int i = node.size; i < node.keys.length; i++)
+                if (((Leaf) node).values[i] != null)
+                    throw new IllegalStateException("value slot " + i + " past size " + node.size + " is not cleared");
+            leaves.add((Leaf) node);
+            return;
+        }
+        Inner inner = (Inner) node;
+        for (int i = inner.size + 1; i < inner.children.length; i++)
+            if (inner.children[i] != null)
+                throw new IllegalStateException("child slot " + i + " past size " + inner.size + " is not cleared");
+        for (int i = 0; i <= inner.size; i++) {
+            if (inner.children[i] == null)
+                throw new IllegalStateException("child " + i + " of node starting with " + inner.keys[0] + " is missing");
+            checkInvariants(inner.children[i], i == 0 ? lo : (K) inner.keys[i - 1], i == inner.size ? hi : (K) inner.keys[i],
+                    depth - 1, leaves);
+        }
+    }
+
+
+    /**
+     * 结点公共部分：有序的key数组，数组多留一个位置，插入后超出maxKeys再分裂
+     */
+    private abstract static class Node {
+
+        final Object[] keys;
+
+        int size;
+
+        Node(int maxKeys) {
+            keys = new Object[maxKeys + 1];
+        }
+
+        /**
+         * 把separator和右兄弟right的全部内容合并到本结点
+         */
+        abstract void merge(Object separator, Node right);
+    }
+
+    private static final class Leaf extends Node {
+
+        final Object[] values;
+
+        Leaf next;
+
+        Leaf(int maxKeys) {
+            super(maxKeys);
+            values = new Object[maxKeys + 1];
+        }
+
+        /**
+         * 二分查找，找到返回下标，否则返回 -(插入位置) - 1
+         */
+        int indexOf(Object key) {
+            return Arrays.binarySearch(keys, 0, size, key);
+        }
+
+        void insertAt(int i, Object key, Object value) {
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            System.arraycopy(values, i, values, i + 1, size - i);
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        void removeAt(int i) {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(values, i + 1, values, i, size - i - 1);
+            size--;
+            keys[size] = null;
+            values[size] = null;
+        }
+
+        /**
+         * 后一半移到新的右兄弟，右兄弟接入叶子链表
+         */
+        Leaf split() {
+            Leaf right = new Leaf(keys.length - 1);
+            int mid = size >>> 1;
+            right.size = size - mid;
+            System.arraycopy(keys, mid, right.keys, 0, right.size);
+            System.arraycopy(values, mid, right.values, 0, right.size);
+            Arrays.fill(keys, mid, size, null);
+            Arrays.fill(values, mid, size, null);
+            size = mid;
+            right.next = next;
+            next = right;
+            return right;
+        }
+
+        @Override
+        void merge(Object separator, Node right) {
+            Leaf leaf = (Leaf) right;
+            System.arraycopy(leaf.keys, 0, keys, size, leaf.size);
+            System.arraycopy(leaf.values, 0, values, size, leaf.size);
+            size += leaf.size;
+            next = leaf.next;
+        }
+    }
+
+    /**
+     * 内部结点：children[i] 中的key都在 [keys[i-1], keys[i]) 内
+     */
+    private static final class Inner extends Node {
+
+        final Node[] children;
+
+        Inner(int maxKeys) {
+            super(maxKeys);
+            children = new Node[maxKeys + 2];
+        }
+
+        /**
+         * key所在孩子的下标，等于分隔key时进入右侧孩子
+         */
+        int childIndex(Object key) {
+            int i = Arrays.binarySearch(keys, 0, size, key);
+            return i >= 0 ? i + 1 : -i - 1;
+        }
+
+        /**
+         * 在第i个key处插入key，其右侧孩子为child
+         */
+        void insertAt(int i, Object key, Node child) {
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            System.arraycopy(children, i + 1, children, i + 2, size - i);
+            keys[i] = key;
+            children[i + 1] = child;
+            size++;
+        }
+
+        /**
+         * 删除第i个key及其右侧孩子
+         */
+        void removeAt(int i) {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(children, i + 2, children, i + 1, size - i - 1);
+            size--;
+            keys[size] = null;
+            children[size + 1] = null;
+        }
+
+        void insertFirst(Object key, Node child) {
+            System.arraycopy(keys, 0, keys, 1, size);
+            System.arraycopy(children, 0, children, 1, size + 1);
+            keys[0] = key;
+            children[0] = child;
+            size++;
+        }
+
+        void removeFirst() {
+            System.arraycopy(keys, 1, keys, 0, size - 1);
+            System.arraycopy(children, 1, children, 0, size);
+            size--;
+            keys[size] = null;
+            children[size + 1] = null;
+        }
+
+        void removeLast() {
+            size--;
+            keys[size] = null;
+            children[size + 1] = null;
+        }
+
+        /**
+         * 中间的key keys[size/2] 提升到父结点，其右侧的key与孩子移到新的右兄弟
+         */
+        Inner split() {
+            Inner right = new Inner(keys.length - 1);
+            int mid = size >>> 1;
+            right.size = size - mid - 1;
+            System.arraycopy(keys, mid + 1, right.keys, 0, right.size);
+            System.arraycopy(children, mid + 1, right.children, 0, right.size + 1);
+            Arrays.fill(keys, mid, size, null);
+            Arrays.fill(children, mid + 1, size + 1, null);
+            size = mid;
+            return right;
+        }
+
+        @Override
+        void merge(Object separator, Node right) {
+            Inner inner = (Inner) right;
+            keys[size] = separator;
+            System.arraycopy(inner.keys, 0, keys, size + 1, inner.size);
+            System.arraycopy(inner.children, 0, children, size + 1, inner.size + 1);
+            size += inner.size + 1;
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package top.noox.bptree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * <p>BPlusTree与TreeMap的随机差分测试，直接运行main，发现不一致或不变式被破坏时抛出AssertionError
+ * <p>maxKeys取3和4各跑一遍：结点很小，少量key就有多层，分裂、借用、合并与根的升降频繁发生，
+ * 奇偶两种maxKeys下分裂与合并后的结点大小不同
+ * <p>随机插入、删除与get，每次操作后比较size，树较小时检查不变式；随机用iterator(lo, hi)做范围查询与模型的subMap比较，
+ * 上下界可能不存在于树中、超出全部key、相等或颠倒；每个阶段结束时比较完整的iterator()，并检查遍历结束后next抛出异常
+ * <p>参数：操作次数（每个maxKeys，默认2000000）、随机种子（默认0）
+ */
+public class BPlusTreeDifferentialTest {
+
+    private static final int[] MAX_KEYS = {3, 4};
+
+    private static final int PHASE = 1 << 16;
+
+    private static final int[] RANGES = {16, 1 << 8, 1 << 12};
+
+    private static final int[] INSERT_PERCENTS = {50, 70, 30};
+
+    private static final int SMALL = 1 << 8;
+
+    private static final int CHECK_INTERVAL = 1 << 10;
+
+    public static void main(String[] args) {
+        long operations = args.length > 0 ? Long.parseLong(args[0]) : 2_000_000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        for (int maxKeys : MAX_KEYS)
+            run(maxKeys, operations, new Random(seed));
+        System.out.println("ok: " + operations + " operations for each maxKeys in " + Arrays.toString(MAX_KEYS));
+    }
+
+    private static void run(int maxKeys, long operations, Random random) {
+        BPlusTree<Integer, Integer> tree = new BPlusTree<>(maxKeys);
+        TreeMap<Integer, Integer> model = new TreeMap<>();
+        String name = "maxKeys " + maxKeys;
+        int maxHeight = 0;
+        for (long done = 0; done < operations; done++) {
+            long phase = done / PHASE;
+            int range = RANGES[(int) (phase % RANGES.length)];
+            int key = random.nextInt(range);
+            int dice = random.nextInt(100);
+            int insertPercent = INSERT_PERCENTS[(int) (phase % INSERT_PERCENTS.length)];
+            String when = name + " operation " + done;
+            if (dice < insertPercent) {
+                tree.insert(key, (int) done);
+                model.put(key, (int) done);
+            } else if (dice < 90) {
+                tree.delete(key);
+                model.remove(key);
+            } else if (dice < 97) {
+                Integer expected = model.get(key);
+                check(expected == null ? tree.get(key) == null : expected.equals(tree.get(key)), "get(" + key + ") at " + when);
+                check(tree.contains(key) == model.containsKey(key), "contains(" + key + ") at " + when);
+            } else {
+                int lo = random.nextInt(range + 4) - 2, hi = random.nextInt(range + 4) - 2;
+                if (random.nextInt(8) != 0 && lo > hi) {
+                    int t = lo;
+                    lo = hi;
+                    hi = t;
+                }
+                Map<Integer, Integer> expected = lo < hi ? model.subMap(lo, hi) : new TreeMap<>();
+                compare(tree.iterator(lo, hi), expected, "iterator(" + lo + ", " + hi + ") at " + when);
+            }
+            check(tree.size() == model.size(), "size " + tree.size() + " != " + model.size() + " at " + when);
+            check(tree.isEmpty() == model.isEmpty(), "isEmpty at " + when);
+            if (model.size() <= SMALL || done % CHECK_INTERVAL == 0)
+                checkInvariants(tree, when);
+            maxHeight = Math.max(maxHeight, tree.height());
+
+            if (done % PHASE == PHASE - 1) {
+                checkInvariants(tree, when);
+                compare(tree.iterator(), model, "iterator() at " + when);
+            }
+        }
+        checkInvariants(tree, name + " the end");
+        compare(tree.iterator(), model, "iterator() at " + name + " the end");
+        check(maxHeight >= 4, "tree never grew beyond height " + maxHeight + " with " + name);
+    }
+
+    /**
+     * 逐个比较键值对，遍历结束后hasNext为false且next抛出NoSuchElementException
+     */
+    private static void compare(Iterator<Map.Entry<Integer, Integer>> actual, Map<Integer, Integer> expected, String when) {
+        List<Map.Entry<Integer, Integer>> entries = new ArrayList<>();
+        while (actual.hasNext())
+            entries.add(actual.next());
+        check(entries.equals(new ArrayList<>(expected.entrySet())), when + ": " + entries + " != " + expected);
+        try {
+            actual.next();
+        } catch (NoSuchElementException e) {
+            return;
+        }
+        throw new AssertionError("next() after the end did not throw in " + when);
+    }
+
+    private static void checkInvariants(BPlusTree<Integer, Integer> tree, String when) {
+        try {
+            tree.checkInvariants();
+        } catch (IllegalStateException e) {
+            throw new AssertionError(e.getMessage() + " after " + when, e);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,214 @@
+package top.noox.bptree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>{@link DiskBTree} 的页缓存，固定数量的页框，按CLOCK算法淘汰，脏页在淘汰或检查点时写回
+ * <p>每次操作开始时调用 {@link #begin()}：本次操作访问过的页不会被淘汰，调用方在操作期间持有的页缓冲区始终有效；
+ * 本次操作修改过的页也因此不会在写入日志前落到数据文件
+ * <p>操作结束时 {@link #commit()} 把本次修改过的页整体写入日志，之后这些页即可按需写回；
+ * 操作中途失败时 {@link #abort()} 丢弃这些页，它们既不会进入日志也不会写回数据文件
+ */
+final class BufferPool {
+
+    /**
+     * 页框：缓存的页号、页内容与淘汰所需的状态
+     */
+    static final class Frame {
+
+        int pageId = -1;
+
+        final ByteBuffer buffer;
+
+        /**
+         * CLOCK的访问位
+         */
+        boolean referenced;
+
+        boolean dirty;
+
+        /**
+         * 最近一次被访问的操作序号，等于当前操作时不可淘汰
+         */
+        long operation;
+
+        /**
+         * 本次操作中是否修改过，用于收集需要写入日志的页
+         */
+        boolean modified;
+
+        Frame(int pageSize) {
+            buffer = ByteBuffer.allocate(pageSize);
+        }
+    }
+
+    private final FileChannel file;
+
+    private final WriteAheadLog log;
+
+    private final int pageSize;
+
+    private Frame[] frames;
+
+    private final Map<Integer, Frame> table = new HashMap<>();
+
+    private final List<Frame> modified = new ArrayList<>();
+
+    private int hand;
+
+    private long operation;
+
+
+    BufferPool(FileChannel file, WriteAheadLog log, int pageSize, int capacity) {
+        this.file = file;
+        this.log = log;
+        this.pageSize = pageSize;
+        this.frames = new Frame[capacity];
+        for (int i = 0; i < capacity; i++)
+            frames[i] = new Frame(pageSize);
+    }
+
+    /**
+     * 开始一次操作
+     */
+    void begin() {
+        operation++;
+    }
+
+    /**
+     * 读取页，不在缓存中时从数据文件加载
+     */
+    ByteBuffer read(int pageId) throws IOException {
+        return fetch(pageId, true).buffer;
+    }
+
+    /**
+     * 读取页并标记为本次操作修改
+     */
+    ByteBuffer write(int pageId) throws IOException {
+        return markModified(fetch(pageId, true));
+    }
+
+    /**
+     * 新分配的页：不读文件，内容清零并标记为修改
+     */
+    ByteBuffer create(int pageId) throws IOException {
+        Frame frame = fetch(pageId, false);
+        Arrays.fill(frame.buffer.array(), (byte) 0);
+        return markModified(frame);
+    }
+
+    private ByteBuffer markModified(Frame frame) {
+        if (!frame.modified) {
+            frame.modified = true;
+            modified.add(frame);
+        }
+        frame.dirty = true;
+        return frame.buffer;
+    }
+
+    private Frame fetch(int pageId, boolean load) throws IOException {
+        Frame frame = table.get(pageId);
+        if (frame == null) {
+            frame = victim();
+            frame.pageId = pageId;
+            if (load) {
+                ByteBuffer buffer = frame.buffer;
+                Arrays.fill(buffer.array(), (byte) 0);
+                buffer.clear();
+                WriteAheadLog.readFully(file, buffer, (long) pageId * pageSize);
+                buffer.clear();
+            }
+            table.put(pageId, frame);
+        }
+        frame.referenced = true;
+        frame.operation = operation;
+        return frame;
+    }
+
+    /**
+     * CLOCK：跳过本次操作正在使用的页与尚未写入日志的页，访问位为1的清零后跳过，选中第一个访问位为0的页，脏页先写回
+     * <p>所有页都被本次操作使用时（树很高而缓存页数很少）扩容一倍
+     */
+    private Frame victim() throws IOException {
+        for (int scanned = 0; scanned <= 2 * frames.length; scanned++) {
+            Frame frame = frames[hand];
+            hand = hand + 1 == frames.length ? 0 : hand + 1;
+            if (frame.pageId < 0)
+                return frame;
+            if (frame.operation == operation || frame.modified)
+                continue;
+            if (frame.referenced) {
+                frame.referenced = false;
+                continue;
+            }
+            writeBack(frame);
+            table.remove(frame.pageId);
+            frame.pageId = -1;
+            return frame;
+        }
+        int n = frames.length;
+        frames = Arrays.copyOf(frames, n << 1);
+        for (int i = n; i < frames.length; i++)
+            frames[i] = new Frame(pageSize);
+        hand = n + 1;
+        return frames[n];
+    }
+
+    /**
+     * 脏页写回数据文件，写之前先保证日志已落盘
+     */
+    private void writeBack(Frame frame) throws IOException {
+        if (!frame.dirty)
+            return;
+        log.sync();
+        ByteBuffer buffer = frame.buffer.duplicate();
+        buffer.clear();
+        long position = (long) frame.pageId * pageSize;
+        while (buffer.hasRemaining())
+            position += file.write(buffer, position);
+        frame.dirty = false;
+    }
+
+    /**
+     * 把本次操作修改过的页作为一组写入日志
+     */
+    void commit() throws IOException {
+        if (modified.isEmpty())
+            return;
+        log.append(modified);
+        for (Frame frame : modified)
+            frame.modified = false;
+        modified.clear();
+    }
+
+    /**
+     * <p>丢弃本次操作修改过、尚未写入日志的页：这些页可能只改了一半
+     * <p>页中此前已提交的修改也随之丢失（它们可能还没写回数据文件），调用方之后不能再读写，只能重新打开由日志恢复
+     */
+    void abort() {
+        for (Frame frame : modified) {
+            table.remove(frame.pageId);
+            frame.pageId = -1;
+            frame.dirty = false;
+            frame.modified = false;
+        }
+        modified.clear();
+    }
+
+    /**
+     * 写回全部脏页
+     */
+    void flush() throws IOException {
+        for (Frame frame : frames)
+            if (frame.pageId >= 0)
+                writeBack(frame);
+    }
+}
@@ -0,0 +1,687 @@
+package top.noox.bptree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>保存在磁盘上的B+树，key与value均为定长的long，结构与 {@link BPlusTree} 一致：数据只在叶子中，叶子按key顺序链接
+ * <p>文件按固定大小的页读写，页经 {@link BufferPool} 缓存（CLOCK淘汰，脏页延迟写回），数据量可以远大于内存
+ * <p>每次修改作为一个原子操作：修改过的页先整体写入 {@link WriteAheadLog}，之后才可能写回数据文件；
+ * 打开文件时重放日志，崩溃后恢复到最后一次完整提交的状态
+ * <p>日志超过一定大小时做检查点：写回全部脏页、force数据文件、清空日志；{@link #close()} 同样会做一次检查点
+ * <p>修改或检查点中途抛出异常（读页失败、磁盘已满等）后，本次修改过的页被丢弃，树进入失败状态：
+ * 之后的调用都抛出 {@link IllegalStateException}，close()不再做检查点，重新打开时由日志恢复到最后一次完整提交的状态
+ * <p>
+ * <p>文件布局（页0为头部，其余为结点页或空闲页）：
+ * <pre>
+ *  头部：magic | version | pageSize | root | pages | free | size(long)
+ *  结点：type(int) | count(int) | next(int) | 保留(int) | keys ...
+ *  叶子：keys[leafCapacity] | values[leafCapacity]，next为右侧叶子，0表示没有
+ *  内部结点：keys[innerCapacity] | children[innerCapacity + 1]
+ * </pre>
+ * <p>空闲页通过next字段串成空闲链表；日志保存在数据文件旁的 "文件名.wal" 中
+ * <p>非线程安全
+ */
+public class DiskBTree implements Closeable {
+
+    private static final int MAGIC = 0x44425452;    //"DBTR"
+    private static final int VERSION = 1;
+
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    private static final int MIN_PAGE_SIZE = 64;
+    private static final int DEFAULT_POOL_PAGES = 1024;
+    private static final int MIN_POOL_PAGES = 16;
+    private static final long CHECKPOINT_LOG_SIZE = 64L << 20;
+
+    private static final int NONE = 0;
+
+    //头部字段偏移
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_PAGE_SIZE = 8;
+    private static final int H_ROOT = 12;
+    private static final int H_PAGES = 16;
+    private static final int H_FREE = 20;
+    private static final int H_SIZE = 24;
+
+    //结点字段偏移
+    private static final int N_TYPE = 0;
+    private static final int N_COUNT = 4;
+    private static final int N_NEXT = 8;
+    private static final int N_KEYS = 16;
+
+    private static final int FREE = 0;
+    private static final int LEAF = 1;
+    private static final int INNER = 2;
+
+    private final FileChannel data;
+    private final WriteAheadLog log;
+    private final BufferPool pool;
+
+    private final int pageSize;
+    private final int leafCapacity;
+    private final int innerCapacity;
+
+    //叶子values与内部结点children的起始偏移
+    private final int leafValues;
+    private final int innerChildren;
+
+    /**
+     * 内部结点分裂时提升到父结点的key，随分裂出的右侧页号一起返回给调用方
+     */
+    private long promoted;
+
+    /**
+     * 某次修改或检查点中途失败后置为true，内存中的页已不可信，只能关闭后重新打开
+     */
+    private boolean failed;
+
+
+    /**
+     * 打开（不存在时创建）数据文件，使用默认页大小与缓存页数，每次提交都force日志
+     * @param file 文件路径
+     * @throws IOException 文件读写失败，或文件不是本格式
+     */
+    public DiskBTree(Path file) throws IOException {
+        this(file, DEFAULT_PAGE_SIZE, DEFAULT_POOL_PAGES, true);
+    }
+
+    /**
+     * @param file 文件路径
+     * @param pageSize 新建文件时的页大小，打开已有文件时使用文件中记录的值
+     * @param poolPages 缓存的页数
+     * @param syncOnCommit 每次提交是否force日志；为false时崩溃可能丢失最近的若干次提交，但恢复后的树结构仍然完整
+     * @throws IOException 文件读写失败，或文件不是本格式
+     */
+    public DiskBTree(Path file, int pageSize, int poolPages, boolean syncOnCommit) throws IOException {
+        if (pageSize < MIN_PAGE_SIZE)
+            throw new IllegalArgumentException("pageSize must be at least " + MIN_PAGE_SIZE);
+        if (poolPages < MIN_POOL_PAGES)
+            throw new IllegalArgumentException("poolPages must be at least " + MIN_POOL_PAGES);
+
+        data = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = data.size() == 0;
+        if (!created) {
+            //magic、version与页大小建立后不再修改，可以在重放日志之前直接读取
+            ByteBuffer header = ByteBuffer.allocate(H_ROOT);
+            WriteAheadLog.readFully(data, header, 0);
+            if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION
+                    || header.getInt(H_PAGE_SIZE) < MIN_PAGE_SIZE) {
+                data.close();
+                throw new IOException("not a DiskBTree file: " + file);
+            }
+            pageSize = header.getInt(H_PAGE_SIZE);
+        }
+
+        this.pageSize = pageSize;
+        this.leafCapacity = (pageSize - N_KEYS) / 16;
+        this.innerCapacity = (pageSize - N_KEYS - 4) / 12;
+        this.leafValues = N_KEYS + 8 * leafCapacity;
+        this.innerChildren = N_KEYS + 8 * innerCapacity;
+
+        try {
+            log = new WriteAheadLog(Paths.get(file + ".wal"), pageSize, syncOnCommit);
+        } catch (IOException e) {
+            data.close();
+            throw e;
+        }
+        pool = new BufferPool(data, log, pageSize, poolPages);
+
+        if (created) {
+            begin();
+            ByteBuffer header = pool.create(0);
+            header.putInt(H_MAGIC, MAGIC);
+            header.putInt(H_VERSION, VERSION);
+            header.putInt(H_PAGE_SIZE, pageSize);
+            header.putInt(H_ROOT, 1);
+            header.putInt(H_PAGES, 2);
+            header.putInt(H_FREE, NONE);
+            header.putLong(H_SIZE, 0);
+            pool.create(1).putInt(N_TYPE, LEAF);
+            pool.commit();
+            checkpoint();
+        } else {
+            log.recover(data);
+        }
+    }
+
+    public long size() throws IOException {
+        begin();
+        return header().getLong(H_SIZE);
+    }
+
+    /**
+     * 树的高度，只有一个叶子时为1
+     */
+    public int height() throws IOException {
+        begin();
+        int height = 1;
+        ByteBuffer node = pool.read(root());
+        while (node.getInt(N_TYPE) == INNER) {
+            node = pool.read(child(node, 0));
+            height++;
+        }
+        return height;
+    }
+
+    /**
+     * 检查点：写回全部脏页并force数据文件，然后清空日志
+     */
+    public void checkpoint() throws IOException {
+        ensureUsable();
+        try {
+            pool.flush();
+            data.force(true);
+            log.truncate();
+        } catch (Throwable e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * 关闭前做一次检查点；处于失败状态时直接关闭文件，重新打开时由日志恢复
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!failed)
+                checkpoint();
+        } finally {
+            try {
+                log.close();
+            } finally {
+                data.close();
+            }
+        }
+    }
+
+
+    /**
+     * 根据key查找value
+     * @param key   key
+     * @param defaultValue key不存在时的返回值
+     * @return  找到返回value，否则返回defaultValue
+     */
+    public long get(long key, long defaultValue) throws IOException {
+        begin();
+        ByteBuffer leaf = findLeaf(key);
+        int i = search(leaf, key);
+        return i >= 0 ? value(leaf, i) : defaultValue;
+    }
+
+    public boolean contains(long key) throws IOException {
+        begin();
+        return search(findLeaf(key), key) >= 0;
+    }
+
+    private ByteBuffer findLeaf(long key) throws IOException {
+        ByteBuffer node = pool.read(root());
+        while (node.getInt(N_TYPE) == INNER)
+            node = pool.read(child(node, childIndex(node, key)));
+        return node;
+    }
+
+
+    /**
+     * 对外插入方法，key已存在时覆盖value
+     * @param key  key
+     * @param value value
+     * @throws IOException 读写数据文件或日志失败
+     */
+    public void insert(long key, long value) throws IOException {
+        begin();
+        try {
+            int root = root();
+            int sibling = insert(root, key, value);
+            if (sibling != NONE) {
+                int newRoot = allocate();
+                ByteBuffer node = pool.write(newRoot);
+                node.putInt(N_TYPE, INNER);
+                node.putInt(N_COUNT, 1);
+                setKey(node, 0, promoted);
+                setChild(node, 0, root);
+                setChild(node, 1, sibling);
+                pool.write(0).putInt(H_ROOT, newRoot);
+            }
+            commit();
+        } catch (Throwable e) {
+            abort();
+            throw e;
+        }
+    }
+
+    /**
+     * 插入到以page为根的子树
+     * @return 发生分裂时返回分裂出的右侧页号，分隔key保存在promoted中；否则返回NONE
+     */
+    private int insert(int page, long key, long value) throws IOException {
+        ByteBuffer node = pool.read(page);
+        if (node.getInt(N_TYPE) == LEAF) {
+            int i = search(node, key);
+            if (i >= 0) {
+                setValue(pool.write(page), i, value);
+                return NONE;
+            }
+            addSize(1);
+            i = -i - 1;
+            if (count(node) < leafCapacity) {
+                leafInsertAt(pool.write(page), i, key, value);
+                return NONE;
+            }
+            return splitLeaf(page, i, key, value);
+        }
+
+        int c = childIndex(node, key);
+        int sibling = insert(child(node, c), key, value);
+        if (sibling == NONE)
+            return NONE;
+        if (count(node) < innerCapacity) {
+            innerInsertAt(pool.write(page), c, promoted, sibling);
+            return NONE;
+        }
+        return splitInner(page, c, promoted, sibling);
+    }
+
+    /**
+     * 已满的叶子插入后一分为二，右半的第一个key作为分隔key
+     */
+    private int splitLeaf(int page, int i, long key, long value) throws IOException {
+        ByteBuffer node = pool.write(page);
+        int n = leafCapacity + 1;
+        long[] keys = new long[n], values = new long[n];
+        for (int j = 0, k = 0; j < n; j++) {
+            if (j == i) {
+                keys[j] = key;
+                values[j] = value;
+            } else {
+                keys[j] = key(node, k);
+                values[j] = value(node, k++);
+            }
+        }
+
+        int mid = n >>> 1;
+        int right = allocate();
+        ByteBuffer sibling = pool.write(right);
+        sibling.putInt(N_TYPE, LEAF);
+        sibling.putInt(N_NEXT, next(node));
+        node.putInt(N_NEXT, right);
+        writeLeaf(node, keys, values, 0, mid);
+        writeLeaf(sibling, keys, values, mid, n);
+        promoted = keys[mid];
+        return right;
+    }
+
+    /**
+     * 已满的内部结点插入后一分为二，中间的key提升到父结点，不保留在任何一半中
+     */
+    private int splitInner(int page, int c, long key, int child) throws IOException {
+        ByteBuffer node = pool.write(page);
+        int n = innerCapacity + 1;
+        long[] keys = new long[n];
+        int[] children = new int[n + 1];
+        children[0] = child(node, 0);
+        for (int j = 0, k = 0; j < n; j++) {
+            if (j == c) {
+                keys[j] = key;
+                children[j + 1] = child;
+            } else {
+                keys[j] = key(node, k);
+                children[j + 1] = child(node, ++k);
+            }
+        }
+
+        int mid = n >>> 1;
+        int right = allocate();
+        ByteBuffer sibling = pool.write(right);
+        sibling.putInt(N_TYPE, INNER);
+        writeInner(node, keys, children, 0, mid);
+        writeInner(sibling, keys, children, mid + 1, n);
+        promoted = keys[mid];
+        return right;
+    }
+
+
+    /**
+     * 删除key，不存在时什么也不做
+     * @param key key
+     * @throws IOException 读写数据文件或日志失败
+     */
+    public void delete(long key) throws IOException {
+        begin();
+        try {
+            int root = root();
+            if (!delete(root, key))
+                return;
+            ByteBuffer node = pool.read(root);
+            if (node.getInt(N_TYPE) == INNER && count(node) == 0) {
+                pool.write(0).putInt(H_ROOT, child(node, 0));
+                free(root);
+            }
+            commit();
+        } catch (Throwable e) {
+            abort();
+            throw e;
+        }
+    }
+
+    /**
+     * 从以page为根的子树中删除key，子结点不足半满时向兄弟借或与兄弟合并
+     * @return 是否删除了结点
+     */
+    private boolean delete(int page, long key) throws IOException {
+        ByteBuffer node = pool.read(page);
+        if (node.getInt(N_TYPE) == LEAF) {
+            int i = search(node, key);
+            if (i < 0)
+                return false;
+            leafRemoveAt(pool.write(page), i);
+            addSize(-1);
+            return true;
+        }
+
+        int c = childIndex(node, key);
+        if (!delete(child(node, c), key))
+            return false;
+        ByteBuffer child = pool.read(child(node, c));
+        int min = child.getInt(N_TYPE) == LEAF ? leafCapacity >>> 1 : innerCapacity >>> 1;
+        if (count(child) < min)
+            rebalance(page, c, min);
+        return true;
+    }
+
+    /**
+     * <p>父结点page的第c个子结点不足半满
+     * <p>情景1：左兄弟多于半满 <span style="color:#4f86cd"> => 从左兄弟借最后一个
+     * <p>情景2：右兄弟多于半满 <span style="color:#4f86cd"> => 从右兄弟借第一个
+     * <p>情景3：有左兄弟 <span style="color:#4f86cd"> => 并入左兄弟
+     * <p>情景4：只有右兄弟 <span style="color:#4f86cd"> => 右兄弟并入当前结点
+     * <p>借用时叶子直接移动键值并更新父结点的分隔key；内部结点经父结点的分隔key旋转
+     */
+    private void rebalance(int page, int c, int min) throws IOException {
+        ByteBuffer parent = pool.write(page);
+        int childPage = child(parent, c);
+        ByteBuffer child = pool.write(childPage);
+        boolean leaf = child.getInt(N_TYPE) == LEAF;
+
+        if (c > 0) {
+            int leftPage = child(parent, c - 1);
+            ByteBuffer left = pool.read(leftPage);
+            if (count(left) > min) {
+                left = pool.write(leftPage);
+                int last = count(left) - 1;
+                if (leaf) {
+                    leafInsertAt(child, 0, key(left, last), value(left, last));
+                    setKey(parent, c - 1, key(child, 0));
+                } else {
+                    innerInsertFirst(child, key(parent, c - 1), child(left, last + 1));
+                    setKey(parent, c - 1, key(left, last));
+                }
+                left.putInt(N_COUNT, last);
+                return;
+            }
+        }
+        if (c < count(parent)) {
+            int rightPage = child(parent, c + 1);
+            ByteBuffer right = pool.read(rightPage);
+            if (count(right) > min) {
+                right = pool.write(rightPage);
+                if (leaf) {
+                    leafInsertAt(child, count(child), key(right, 0), value(right, 0));
+                    leafRemoveAt(right, 0);
+                    setKey(parent, c, key(right, 0));
+                } else {
+                    innerInsertAt(child, count(child), key(parent, c), child(right, 0));
+                    setKey(parent, c, key(right, 0));
+                    innerRemoveFirst(right);
+                }
+                return;
+            }
+        }
+
+        if (c > 0) {
+            int leftPage = child(parent, c - 1);
+            merge(pool.write(leftPage), child, key(parent, c - 1), leaf);
+            innerRemoveAt(parent, c - 1);
+            free(childPage);
+        } else {
+            int rightPage = child(parent, c + 1);
+            merge(child, pool.write(rightPage), key(parent, c), leaf);
+            innerRemoveAt(parent, c);
+            free(rightPage);
+        }
+    }
+
+    /**
+     * 把right的全部内容追加到left，内部结点合并时父结点的分隔key下移到两者之间
+     */
+    private void merge(ByteBuffer left, ByteBuffer right, long separator, boolean leaf) {
+        byte[] l = left.array(), r = right.array();
+        int n = count(left), m = count(right);
+        if (leaf) {
+            System.arraycopy(r, N_KEYS, l, N_KEYS + 8 * n, 8 * m);
+            System.arraycopy(r, leafValues, l, leafValues + 8 * n, 8 * m);
+            left.putInt(N_NEXT, next(right));
+            left.putInt(N_COUNT, n + m);
+        } else {
+            setKey(left, n, separator);
+            System.arraycopy(r, N_KEYS, l, N_KEYS + 8 * (n + 1), 8 * m);
+            System.arraycopy(r, innerChildren, l, innerChildren + 4 * (n + 1), 4 * (m + 1));
+            left.putInt(N_COUNT, n + m + 1);
+        }
+    }
+
+
+    private void commit() throws IOException {
+        pool.commit();
+        if (log.size() > CHECKPOINT_LOG_SIZE)
+            checkpoint();
+    }
+
+    private void begin() {
+        ensureUsable();
+        pool.begin();
+    }
+
+    /**
+     * 修改中途失败：丢弃只改了一半的页，进入失败状态
+     */
+    private void abort() {
+        pool.abort();
+        failed = true;
+    }
+
+    private void ensureUsable() {
+        if (failed)
+            throw new IllegalStateException("an earlier update failed; reopen the tree to recover from the log");
+    }
+
+    /**
+     * 日志当前的长度，供崩溃恢复测试截断日志
+     */
+    long logSize() {
+        return log.size();
+    }
+
+    private ByteBuffer header() throws IOException {
+        return pool.read(0);
+    }
+
+    private int root() throws IOException {
+        return header().getInt(H_ROOT);
+    }
+
+    private void addSize(long delta) throws IOException {
+        ByteBuffer header = pool.write(0);
+        header.putLong(H_SIZE, header.getLong(H_SIZE) + delta);
+    }
+
+    /**
+     * 分配新页，优先复用空闲链表，内容清零
+     */
+    private int allocate() throws IOException {
+        ByteBuffer header = pool.write(0);
+        int page = header.getInt(H_FREE);
+        if (page != NONE) {
+            header.putInt(H_FREE, next(pool.read(page)));
+        } else {
+            page = header.getInt(H_PAGES);
+            header.putInt(H_PAGES, page + 1);
+        }
+        pool.create(page);
+        return page;
+    }
+
+    private void free(int page) throws IOException {
+        ByteBuffer header = pool.write(0);
+        ByteBuffer node = pool.write(page);
+        node.putInt(N_TYPE, FREE);
+        node.putInt(N_COUNT, 0);
+        node.putInt(N_NEXT, header.getInt(H_FREE));
+        header.putInt(H_FREE, page);
+    }
+
+
+    /**
+     * 二分查找key
+     * @return 找到返回下标，否则返回 -(插入位置) - 1
+     */
+    private static int search(ByteBuffer node, long key) {
+        int lo = 0, hi = count(node) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long k = node.getLong(N_KEYS + 8 * mid);
+            if (k < key)
+                lo = mid + 1;
+            else if (k > key)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -lo - 1;
+    }
+
+    /**
+     * 内部结点中key所在子结点的下标，等于分隔key时走右侧
+     */
+    private static int childIndex(ByteBuffer node, long key) {
+        int i = search(node, key);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    private static int count(ByteBuffer node) {
+        return node.getInt(N_COUNT);
+    }
+
+    private static int next(ByteBuffer node) {
+        return node.getInt(N_NEXT);
+    }
+
+    private static long key(ByteBuffer node, int i) {
+        return node.getLong(N_KEYS + 8 * i);
+    }
+
+    private static void setKey(ByteBuffer node, int i, long key) {
+        node.putLong(N_KEYS + 8 * i, key);
+    }
+
+    private long value(ByteBuffer node, int i) {
+        return node.getLong(leafValues + 8 * i);
+    }
+
+    private void setValue(ByteBuffer node, int i, long value) {
+        node.putLong(leafValues + 8 * i, value);
+    }
+
+    private int child(ByteBuffer node, int i) {
+        return node.getInt(innerChildren + 4 * i);
+    }
+
+    private void setChild(ByteBuffer node, int i, int child) {
+        node.putInt(innerChildren + 4 * i, child);
+    }
+
+    private void leafInsertAt(ByteBuffer node, int i, long key, long value) {
+        int n = count(node);
+        byte[] a = node.array();
+        System.arraycopy(a, N_KEYS + 8 * i, a, N_KEYS + 8 * (i + 1), 8 * (n - i));
+        System.arraycopy(a, leafValues + 8 * i, a, leafValues + 8 * (i + 1), 8 * (n - i));
+        setKey(node, i, key);
+        setValue(node, i, value);
+        node.putInt(N_COUNT, n + 1);
+    }
+
+    private void leafRemoveAt(ByteBuffer node, int i) {
+        int n = count(node);
+        byte[] a = node.array();
+        System.arraycopy(a, N_KEYS + 8 * (i + 1), a, N_KEYS + 8 * i, 8 * (n - i - 1));
+        System.arraycopy(a, leafValues + 8 * (i + 1), a, leafValues + 8 * i, 8 * (n - i - 1));
+        node.putInt(N_COUNT, n - 1);
+    }
+
+    /**
+     * 在第i个key处插入key，新子结点作为第i+1个子结点
+     */
+    private void innerInsertAt(ByteBuffer node, int i, long key, int child) {
+        int n = count(node);
+        byte[] a = node.array();
+        System.arraycopy(a, N_KEYS + 8 * i, a, N_KEYS + 8 * (i + 1), 8 * (n - i));
+        System.arraycopy(a, innerChildren + 4 * (i + 1), a, innerChildren + 4 * (i + 2), 4 * (n - i));
+        setKey(node, i, key);
+        setChild(node, i + 1, child);
+        node.putInt(N_COUNT, n + 1);
+    }
+
+    /**
+     * 删除第i个key与第i+1个子结点
+     */
+    private void innerRemoveAt(ByteBuffer node, int i) {
+        int n = count(node);
+        byte[] a = node.array();
+        System.arraycopy(a, N_KEYS + 8 * (i + 1), a, N_KEYS + 8 * i, 8 * (n - i - 1));
+        System.arraycopy(a, innerChildren + 4 * (i + 2), a, innerChildren + 4 * (i + 1), 4 * (n - i - 1));
+        node.putInt(N_COUNT, n - 1);
+    }
+
+    private void innerInsertFirst(ByteBuffer node, long key, int child) {
+        int n = count(node);
+        byte[] a = node.array();
+        System.arraycopy(a, N_KEYS, a, N_KEYS + 8, 8 * n);
+        System.arraycopy(a, innerChildren, a, innerChildren + 4, 4 * (n + 1));
+        setKey(node, 0, key);
+        setChild(node, 0, child);
+        node.putInt(N_COUNT, n + 1);
+    }
+
+    private void innerRemoveFirst(ByteBuffer node) {
+        int n = count(node);
+        byte[] a = node.array();
+        System.arraycopy(a, N_KEYS + 8, a, N_KEYS, 8 * (n - 1));
+        System.arraycopy(a, innerChildren + 4, a, innerChildren, 4 * n);
+        node.putInt(N_COUNT, n - 1);
+    }
+
+    private void writeLeaf(ByteBuffer node, long[] keys, long[] values, int from, int to) {
+        for (int i = from; i < to; i++) {
+            setKey(node, i - from, keys[i]);
+            setValue(node, i - from, values[i]);
+        }
+        node.putInt(N_COUNT, to - from);
+    }
+
+    /**
+     * 写入keys[from, to) 与 children[from, to]
+     */
+    private void writeInner(ByteBuffer node, long[] keys, int[] children, int from, int to) {
+        for (int i = from; i < to; i++)
+            setKey(node, i - from, keys[i]);
+        for (int i = from; i <= to; i++)
+            setChild(node, i - from, children[i]);
+        node.putInt(N_COUNT, to - from);
+    }
+}
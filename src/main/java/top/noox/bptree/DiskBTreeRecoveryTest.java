@@ -0,0 +1,194 @@
+package top.noox.bptree;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * <p>DiskBTree崩溃恢复的随机测试，以TreeMap为模型，直接运行main，任何一项检查失败都会抛出AssertionError
+ * <p>使用很小的页与缓存，使操作中频繁淘汰并写回脏页；每隔一段操作不调用close()直接复制数据文件与日志，模拟进程崩溃，
+ * 打开副本后与模型比较：
+ * <p>情景1：副本原样打开 <span style="color:#4f86cd"> => 等于最后一次操作之后的模型
+ * <p>情景2：日志截断在最后一组中间 <span style="color:#4f86cd"> => 等于最后一次操作之前的模型
+ * <p>情景3：最后一组中的一个字节被改写 <span style="color:#4f86cd"> => 等于最后一次操作之前的模型
+ * <p>最后关闭日志或数据文件的channel，使修改中途失败：之后的调用都必须抛出IllegalStateException，
+ * 关闭后重新打开必须等于失败前的模型
+ * <p>参数：操作次数（默认100000）、随机种子（默认0）
+ */
+public class DiskBTreeRecoveryTest {
+
+    private static final int PAGE_SIZE = 128;
+
+    private static final int POOL_PAGES = 16;
+
+    private static final int RANGE = 1 << 12;
+
+    private static final int CRASH_INTERVAL = 2000;
+
+    private static final long ABSENT = Long.MIN_VALUE;
+
+    public static void main(String[] args) throws Exception {
+        long operations = args.length > 0 ? Long.parseLong(args[0]) : 100_000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        Random random = new Random(seed);
+        Path dir = Files.createTempDirectory("disk-btree-recovery");
+        Path file = dir.resolve("tree.db");
+
+        TreeMap<Long, Long> model = new TreeMap<>();
+        DiskBTree tree = new DiskBTree(file, PAGE_SIZE, POOL_PAGES, false);
+        int crashes = 0;
+        for (long done = 0; done < operations; done++) {
+            if (done % CRASH_INTERVAL == CRASH_INTERVAL - 1) {
+                crash(tree, file, model, random, done);
+                crashes++;
+            } else {
+                update(tree, model, random, done);
+            }
+        }
+        tree = fail(tree, file, model, random, "log");
+        tree = fail(tree, file, model, random, "data");
+        compare(tree, model, "reopen after failures");
+        tree.close();
+
+        for (String name : new String[]{"tree.db", "tree.db.wal"})
+            Files.deleteIfExists(dir.resolve(name));
+        Files.delete(dir);
+        System.out.println("ok: " + operations + " operations, " + crashes + " crashes");
+    }
+
+    private static void update(DiskBTree tree, TreeMap<Long, Long> model, Random random, long value) throws IOException {
+        long key = random.nextInt(RANGE);
+        if (random.nextInt(100) < 60) {
+            tree.insert(key, value);
+            model.put(key, value);
+        } else {
+            tree.delete(key);
+            model.remove(key);
+        }
+    }
+
+    /**
+     * 执行一次必定写日志的插入，然后复制文件模拟崩溃，检查原样、截断与损坏的日志
+     */
+    private static void crash(DiskBTree tree, Path file, TreeMap<Long, Long> model, Random random, long done) throws IOException {
+        TreeMap<Long, Long> before = new TreeMap<>(model);
+        long logBefore = tree.logSize();
+        long key = random.nextInt(RANGE);
+        tree.insert(key, done);
+        model.put(key, done);
+        long logAfter = tree.logSize();
+
+        Path copy = Paths.get(file + ".crash");
+        Path copyLog = Paths.get(copy + ".wal");
+        Path log = Paths.get(file + ".wal");
+        copy(file, log, copy, copyLog);
+        reopen(copy, model, "crash after operation " + done);
+
+        //提交时恰好做了检查点，日志已被清空，没有可以截断的最后一组
+        if (logAfter > logBefore) {
+            copy(file, log, copy, copyLog);
+            long length = logBefore + (long) (random.nextDouble() * (logAfter - logBefore));
+            try (FileChannel channel = FileChannel.open(copyLog, StandardOpenOption.WRITE)) {
+                channel.truncate(length);
+            }
+            reopen(copy, before, "log truncated to " + length + " after operation " + done);
+
+            copy(file, log, copy, copyLog);
+            long position = logBefore + (long) (random.nextDouble() * (logAfter - logBefore));
+            try (FileChannel channel = FileChannel.open(copyLog, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer b = ByteBuffer.allocate(1);
+                channel.read(b, position);
+                b.put(0, (byte) (b.get(0) ^ (1 << random.nextInt(8))));
+                b.clear();
+                channel.write(b, position);
+            }
+            reopen(copy, before, "log corrupted at " + position + " after operation " + done);
+        }
+        Files.delete(copy);
+        Files.delete(copyLog);
+    }
+
+    /**
+     * 关闭树内部的日志或数据文件channel，随机操作直到某次修改失败，检查失败状态与重新打开后的内容
+     */
+    private static DiskBTree fail(DiskBTree tree, Path file, TreeMap<Long, Long> model, Random random, String channel) throws Exception {
+        Object owner = tree;
+        if (channel.equals("log"))
+            owner = field(DiskBTree.class, "log").get(tree);
+        ((FileChannel) field(owner.getClass(), channel.equals("log") ? "channel" : "data").get(owner)).close();
+
+        boolean failed = false;
+        for (long value = 0; !failed; value++) {
+            TreeMap<Long, Long> before = new TreeMap<>(model);
+            try {
+                update(tree, model, random, value);
+            } catch (IOException e) {
+                model.clear();
+                model.putAll(before);
+                failed = true;
+            }
+        }
+        try {
+            tree.get(0, ABSENT);
+            throw new AssertionError("get succeeded after a failed update on the " + channel + " channel");
+        } catch (IllegalStateException expected) {
+            //失败后只能重新打开
+        }
+        try {
+            tree.insert(0, 0);
+            throw new AssertionError("insert succeeded after a failed update on the " + channel + " channel");
+        } catch (IllegalStateException expected) {
+            //失败后只能重新打开
+        }
+        tree.close();
+
+        tree = new DiskBTree(file, PAGE_SIZE, POOL_PAGES, false);
+        compare(tree, model, "reopen after a failed update on the " + channel + " channel");
+        return tree;
+    }
+
+    private static Field field(Class<?> type, String name) throws NoSuchFieldException {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+
+    private static void copy(Path file, Path log, Path copy, Path copyLog) throws IOException {
+        Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+        if (Files.exists(log))
+            Files.copy(log, copyLog, StandardCopyOption.REPLACE_EXISTING);
+        else
+            Files.deleteIfExists(copyLog);
+    }
+
+    private static void reopen(Path copy, TreeMap<Long, Long> expected, String when) throws IOException {
+        try (DiskBTree recovered = new DiskBTree(copy, PAGE_SIZE, POOL_PAGES, false)) {
+            compare(recovered, expected, when);
+        }
+    }
+
+    /**
+     * size相等且模型中的每个键值对都能查到，树的内容就与模型相同
+     */
+    private static void compare(DiskBTree tree, TreeMap<Long, Long> expected, String when) throws IOException {
+        check(tree.size() == expected.size(), "size " + tree.size() + " != " + expected.size() + ", " + when);
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            long actual = tree.get(entry.getKey(), ABSENT);
+            check(actual == entry.getValue(), "get(" + entry.getKey() + ") = " + actual + " != " + entry.getValue() + ", " + when);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,156 @@
+package top.noox.bptree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * <p>{@link DiskBTree} 的预写日志，按页记录物理redo：一次操作修改过的所有页的完整新内容作为一组追加到日志末尾
+ * <p>组的格式：magic(int) | 页数(int) | 若干个 [页号(int) | 页内容] | CRC32(long)；CRC覆盖组内其余全部字节
+ * <p>恢复时按顺序把完整且校验通过的组中的页写回数据文件，遇到不完整或校验失败的组即停止（崩溃时写到一半的组），
+ * 所以一次操作要么全部恢复，要么完全不恢复
+ * <p>数据页写回数据文件之前必须先 {@link #sync()}，保证日志先于数据落盘；检查点把脏页全部写回后截断日志
+ */
+final class WriteAheadLog implements Closeable {
+
+    private static final int GROUP_MAGIC = 0x57414C47;  //"WALG"
+
+    private final FileChannel channel;
+
+    private final int pageSize;
+
+    /**
+     * 每次提交后是否立即force；为false时提交只写入OS缓存，崩溃可能丢失最近的提交，
+     * 但写回数据页与检查点前的sync仍保证日志先于数据落盘，不会破坏树的结构
+     */
+    private final boolean syncOnCommit;
+
+    /**
+     * 是否有已写入但尚未force的日志
+     */
+    private boolean unsynced;
+
+    /**
+     * 日志末尾的位置，避免每次提交都查询文件大小
+     */
+    private long end;
+
+    private ByteBuffer group = ByteBuffer.allocate(0);
+
+
+    WriteAheadLog(Path file, int pageSize, boolean syncOnCommit) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.pageSize = pageSize;
+        this.syncOnCommit = syncOnCommit;
+        this.end = channel.size();
+    }
+
+    long size() {
+        return end;
+    }
+
+    /**
+     * 把一次操作修改过的页作为一组追加到日志
+     */
+    void append(List<BufferPool.Frame> pages) throws IOException {
+        int length = 8 + pages.size() * (4 + pageSize) + 8;
+        if (group.capacity() < length)
+            group = ByteBuffer.allocate(Math.max(length, group.capacity() << 1));
+        group.clear();
+        group.putInt(GROUP_MAGIC).putInt(pages.size());
+        for (BufferPool.Frame frame : pages) {
+            group.putInt(frame.pageId);
+            group.put(frame.buffer.array(), 0, pageSize);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(group.array(), 0, group.position());
+        group.putLong(crc.getValue());
+        group.flip();
+
+        while (group.hasRemaining())
+            end += channel.write(group, end);
+        unsynced = true;
+        if (syncOnCommit)
+            sync();
+    }
+
+    /**
+     * 把已写入的日志force到磁盘
+     */
+    void sync() throws IOException {
+        if (unsynced) {
+            channel.force(false);
+            unsynced = false;
+        }
+    }
+
+    /**
+     * 检查点完成后清空日志
+     */
+    void truncate() throws IOException {
+        channel.truncate(0);
+        channel.force(true);
+        end = 0;
+        unsynced = false;
+    }
+
+    /**
+     * 把日志中完整的组重放到数据文件，然后清空日志
+     * @param data 数据文件
+     */
+    void recover(FileChannel data) throws IOException {
+        long position = 0, size = channel.size();
+        ByteBuffer head = ByteBuffer.allocate(8);
+        while (position + 8 <= size) {
+            head.clear();
+            readFully(channel, head, position);
+            int magic = head.getInt(0), count = head.getInt(4);
+            if (magic != GROUP_MAGIC || count <= 0)
+                break;
+            long length = 8 + (long) count * (4 + pageSize) + 8;
+            if (position + length > size)
+                break;
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            readFully(channel, buffer, position);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, (int) length - 8);
+            if (crc.getValue() != buffer.getLong((int) length - 8))
+                break;
+
+            for (int i = 0; i < count; i++) {
+                int offset = 8 + i * (4 + pageSize);
+                int pageId = buffer.getInt(offset);
+                ByteBuffer page = ByteBuffer.wrap(buffer.array(), offset + 4, pageSize);
+                long target = (long) pageId * pageSize;
+                while (page.hasRemaining())
+                    target += data.write(page, target);
+            }
+            position += length;
+        }
+        data.force(true);
+        truncate();
+    }
+
+    /**
+     * 从position开始读满buffer，文件不够长时剩余部分保持为0
+     */
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0)
+                break;
+            position += n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
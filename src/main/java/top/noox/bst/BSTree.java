@@ -1,43 +1,222 @@
 package top.noox.bst;
 
-
-
-public class BSTree<K extends Comparable<K>, V> {
+import top.noox.metrics.TreeMetrics;
+import top.noox.snapshot.Codec;
+import top.noox.snapshot.Codecs;
+import top.noox.snapshot.SnapshotInput;
+import top.noox.snapshot.SnapshotOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+public class BSTree<K extends Comparable<K>, V> implements Iterable<Map.Entry<K, V>> {
 
     private BSNode<K,V> root;
 
+    /**
+     * 热点路径计数，默认为空实现，JIT内联后没有开销
+     */
+    private TreeMetrics metrics = TreeMetrics.NOOP;
+
     public BSNode<K,V> getRoot() {
         return root;
     }
 
+    /**
+     * <p>设置热点路径计数，传入null恢复为不记录
+     * <p>记录比较、旋转、每次插入删除回溯检查的祖先个数与insert/delete/find耗时；AVL树没有变色
+     * @param metrics 计数实现
+     */
+    public void setMetrics(TreeMetrics metrics) {
+        this.metrics = metrics == null ? TreeMetrics.NOOP : metrics;
+    }
+
+
+
+
+    /**
+     * <p>由升序数组直接构建AVL树，替换当前内容，时间复杂度O(n)
+     * <p>按中序位置取中点递归建成完全平衡的树，不做旋转，结点高度在回溯时由左右子树得出
+     * @param keys 严格升序的key
+     * @param values 与keys一一对应的value，为null时全部value为null
+     */
+    public void buildFromSorted(K[] keys, V[] values) {
+        if (values != null && values.length != keys.length)
+            throw new IllegalArgumentException("keys and values differ in length");
+        for (int i = 1; i < keys.length; i++)
+            if (keys[i].compareTo(keys[i - 1]) <= 0)
+                throw new IllegalArgumentException("keys are not strictly ascending: " + keys[i]);
+        this.root = buildFromSorted(0, keys.length - 1, keys, values);
+    }
+
+    /**
+     * 按中序位置取中点递归构建 [lo, hi] 区间
+     * @return 子树的根结点
+     */
+    private BSNode<K,V> buildFromSorted(int lo, int hi, K[] keys, V[] values) {
+        if (lo > hi)
+            return null;
+
+        int mid = (lo + hi) >>> 1;
+        BSNode<K,V> node = new BSNode<>(keys[mid], values == null ? null : values[mid]);
+        link(node, buildFromSorted(lo, mid - 1, keys, values), buildFromSorted(mid + 1, hi, keys, values));
+        return node;
+    }
+
+    /**
+     * 由升序迭代器直接构建AVL树，替换当前内容，时间复杂度O(n)
+     * @param size 迭代器中的元素个数
+     * @param entries 按key严格升序的键值对
+     */
+    public void buildFromSorted(int size, Iterator<? extends Map.Entry<K, V>> entries) {
+        BSNode[] last = new BSNode[1];
+        this.root = buildFromSorted(0, size - 1, entries, last);
+    }
+
+    /**
+     * 按中序递归构建 [lo, hi] 区间，迭代器恰好按中序顺序被消费
+     * @param last 上一个构建出的结点，用于检查key是否严格升序
+     * @return 子树的根结点
+     */
+    @SuppressWarnings("unchecked")
+    private BSNode<K,V> buildFromSorted(int lo, int hi, Iterator<? extends Map.Entry<K, V>> entries,
+                                        BSNode[] last) {
+        if (lo > hi)
+            return null;
+
+        int mid = (lo + hi) >>> 1;
+        BSNode<K,V> left = buildFromSorted(lo, mid - 1, entries, last);
+
+        Map.Entry<K, V> entry = entries.next();
+        if (last[0] != null && entry.getKey().compareTo((K) last[0].key) <= 0)
+            throw new IllegalArgumentException("keys are not strictly ascending: " + entry.getKey());
+        BSNode<K,V> node = new BSNode<>(entry.getKey(), entry.getValue());
+        last[0] = node;
+
+        link(node, left, buildFromSorted(mid + 1, hi, entries, last));
+        return node;
+    }
+
+    /**
+     * <p>把全部结点按key升序写成紧凑的二进制快照，不关闭流
+     * <p>key相对前一个key编码（数值写差值的变长整数、字符串写公共前缀），可用 {@link #readFrom} 以O(n)重建
+     * @param keyCodec key的编码，见 {@link Codecs}
+     * @param valueCodec value的编码，value可能为null时用 {@link Codecs#nullable}
+     */
+    public void writeTo(OutputStream out, Codec<? super K> keyCodec, Codec<? super V> valueCodec) throws IOException {
+        new SnapshotOutput(out).writeEntries(count(), iterator(), keyCodec, valueCodec);
+    }
+
+    public void writeTo(WritableByteChannel channel, Codec<? super K> keyCodec, Codec<? super V> valueCodec) throws IOException {
+        writeTo(Channels.newOutputStream(channel), keyCodec, valueCodec);
+    }
+
+    /**
+     * 结点个数，不维护size字段，遍历一次得出
+     */
+    private int count() {
+        int n = 0;
+        for (Iterator<Map.Entry<K, V>> it = iterator(); it.hasNext(); it.next())
+            n++;
+        return n;
+    }
+
+    /**
+     * <p>读取 {@link #writeTo} 写出的快照，替换当前内容，边解码边用 {@link #buildFromSorted(int, Iterator)} 构建，时间复杂度O(n)
+     * <p>读取失败时当前内容不变；输入带缓冲，会从流中预读
+     * @param keyCodec 与写出时相同的key编码
+     * @param valueCodec 与写出时相同的value编码
+     * @throws IOException 读取失败、快照不完整、被损坏（长度越界、key不严格升序等）或不是本格式
+     */
+    public void readFrom(InputStream in, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        SnapshotInput input = new SnapshotInput(in);
+        long count = input.readHeader();
+        if (count < 0 || count > Integer.MAX_VALUE)
+            throw new IOException("invalid entry count: " + count);
+        try {
+            buildFromSorted((int) count, input.entries(count, keyCodec, valueCodec));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("corrupt snapshot: " + e.getMessage(), e);
+        }
+    }
 
+    public void readFrom(ReadableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        readFrom(Channels.newInputStream(channel), keyCodec, valueCodec);
+    }
 
+    /**
+     * 挂上左右子树并由子树高度得出当前结点高度
+     */
+    private void link(BSNode<K,V> node, BSNode<K,V> left, BSNode<K,V> right) {
+        node.left = left;
+        if (left != null)
+            left.parent = node;
+        node.right = right;
+        if (right != null)
+            right.parent = node;
+        updateHeight(node);
+    }
 
     public void insert(K key, V value) {
+        long start = metrics.startTimer();
         insert(new BSNode<>(key, value));
+        metrics.record(TreeMetrics.Operation.INSERT, start);
     }
 
     private void insert(BSNode<K,V> node) {
+        insert(this.root, node);
+    }
+
+    /**
+     * 从start开始向下寻找插入位置
+     * @param start 开始查找的结点，调用方保证key落在该子树的范围内；为null时说明树为空
+     * @param node 新结点
+     * @return 保存该key的结点（key已存在时为原结点）
+     */
+    private BSNode<K,V> insert(BSNode<K,V> start, BSNode<K,V> node) {
         if (root == null) {
             root = node;
             root.height = 1;
-            return;
+            return node;
         }
         //x：记录要插入的位置  parent
-        BSNode<K,V> x = this.root, parent = null;
+        BSNode<K,V> x = start, parent = null;
+        int comparisons = 0;
         while (x != null) {
             parent = x;
 
             int cmp = node.key.compareTo(x.key);
+            comparisons++;
             if (cmp > 0)
                 x = x.right;
             else if (cmp < 0)
                 x = x.left;
             else {
                 x.value = node.value;
-                return;
+                metrics.comparisons(comparisons);
+                return x;
             }
         }
+        metrics.comparisons(comparisons + 1);
 
         node.parent = parent;
         if (node.key.compareTo(parent.key) > 0)
@@ -48,12 +227,78 @@ public class BSTree<K extends Comparable<K>, V> {
         node.height = 1;
 
         balanceInsertion(node);
+        return node;
+    }
+
+    /**
+     * <p>批量插入，结果与按原顺序逐个insert相同（同一key以最后一次为准）
+     * <p>先将批次按key稳定排序，之后每个key从上一个key所在结点回溯到包含它的最小子树再向下查找（finger search）
+     * @param keys  key
+     * @param values 与keys一一对应的value
+     */
+    @SuppressWarnings("unchecked")
+    public void insertAll(K[] keys, V[] values) {
+        if (values.length != keys.length)
+            throw new IllegalArgumentException("keys and values differ in length");
+
+        Map.Entry<K, V>[] batch = new Map.Entry[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            batch[i] = new AbstractMap.SimpleImmutableEntry<>(keys[i], values[i]);
+        Arrays.sort(batch, Map.Entry.comparingByKey());
+
+        BSNode<K,V> finger = null;
+        for (Map.Entry<K, V> entry : batch) {
+            BSNode<K,V> start = finger == null ? this.root : climb(finger, entry.getKey());
+            finger = insert(start, new BSNode<>(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * 批量删除，不存在的key会被忽略；与insertAll一样排序后按finger search查找
+     * @param keys  key
+     */
+    public void deleteAll(K[] keys) {
+        K[] batch = Arrays.copyOf(keys, keys.length);
+        Arrays.sort(batch);
+
+        BSNode<K,V> finger = null;
+        for (K key : batch) {
+            BSNode<K,V> node = find(finger == null ? this.root : climb(finger, key), key);
+            if (node == null)
+                continue;
+
+            BSNode<K,V> parent = node.parent;
+            delete(node);
+            //结点若被摘除，其原父结点仍在树中，且所在子树覆盖被删key的位置
+            if (node == this.root || parent != null && (parent.left == node || parent.right == node))
+                finger = node;
+            else
+                finger = parent;
+        }
+    }
+
+    /**
+     * 从上一次操作的结点向上回溯，直到key落在当前子树的范围内，见 RBTree.climb
+     * @param finger 上一次操作的结点，必须仍在树中
+     * @param key 下一个key（不小于上一个key）
+     * @return 可以从它开始向下查找的结点
+     */
+    private BSNode<K,V> climb(BSNode<K,V> finger, K key) {
+        BSNode<K,V> x = finger;
+        while (x.parent != null) {
+            if (x == x.parent.left && key.compareTo(x.parent.key) < 0)
+                break;
+            x = x.parent;
+        }
+        return x;
     }
 
     public void delete(K key) {
-        BSNode<K,V> node = find(key);
+        long start = metrics.startTimer();
+        BSNode<K,V> node = find(this.root, key);
         if (node != null)
             delete(node);
+        metrics.record(TreeMetrics.Operation.DELETE, start);
     }
 
     //能进来说明node不为null
@@ -105,170 +350,485 @@ public class BSTree<K extends Comparable<K>, V> {
 
     }
 
+    /**
+     * 插入后自底向上修复高度与平衡，只沿插入路径回溯
+     * <p>某个祖先高度不变时上方结点都不受影响，直接返回；插入最多只需一次（单/双）旋转
+     * @param node 新插入的结点
+     */
     private void balanceInsertion(BSNode<K,V> node) {
 
         //新插入结点的父节点
         BSNode<K,V> parent = node.parent;
+        int rounds = 0;
         while (parent != null) {
-            parent.height = getHeight(parent);
-
-            if (Math.abs(getHeight(parent.left) - getHeight(parent.right)) == 2) {
-
-                if (getHeight(parent.left) - getHeight(parent.right) == 2) {
-                    //LL
-                    if (isParent(node, parent.left.left))
-                        rightRotate(parent);
-                        //LR
-                    else {
-                        leftRotate(parent.left);
-                        rightRotate(parent);
-                    }
-                    fixUpHeight(parent);
-                    return;
-                } else if (getHeight(parent.left) - getHeight(parent.right) == -2) {
-                    //RR
-                    if (isParent(node, parent.right.right))
-                        leftRotate(parent);
-                        //RL
-                    else {
-                        rightRotate(parent.right);
-                        leftRotate(parent);
-                    }
-                    fixUpHeight(parent);
-                    return;
-                }
+            rounds++;
+            int oldHeight = parent.height;
+            updateHeight(parent);
+
+            int balanceFactor = getBalanceFactor(parent);
+            if (balanceFactor == 2 || balanceFactor == -2) {
+                rebalance(parent, balanceFactor);
+                break;
             }
+            //高度没有变化，祖先结点无需处理
+            if (parent.height == oldHeight)
+                break;
 
             parent = parent.parent;
         }
+        metrics.fixedUp(rounds);
     }
 
+    /**
+     * 删除后自底向上修复高度与平衡，只沿删除路径回溯
+     * <p>删除时旋转可能使子树变矮，所以旋转后仍要继续向上检查，直到高度不再变化
+     * @param node 被删除的结点（已从树中摘除，但parent引用仍保留）
+     */
     private void balanceDeletion(BSNode<K,V> node) {
 
         BSNode<K,V> parent = node.parent;
+        int rounds = 0;
         while (parent != null) {
-            parent.height = getHeight(parent);
+            rounds++;
+            int oldHeight = parent.height;
+            updateHeight(parent);
 
             int balanceFactor = getBalanceFactor(parent);
+            if (balanceFactor == 2 || balanceFactor == -2)
+                parent = rebalance(parent, balanceFactor);
 
-
-            if (balanceFactor == -2) {
-                int rFactor = getBalanceFactor(parent.right);
-                if (rFactor == -1 || rFactor == 0)
-                    leftRotate(parent);
-                else {
-                    rightRotate(parent.right);
-                    leftRotate(parent);
-                }
-                fixUpHeight(parent);
-                return;
-            }
-            if (balanceFactor == 2) {
-                int lFactor = getBalanceFactor(parent.left);
-                if (lFactor == 1 || lFactor == 0)
-                    rightRotate(parent);
-                else {
-                    leftRotate(parent.left);
-                    rightRotate(parent);
-                }
-                fixUpHeight(parent);
-                return;
-            }
+            //以parent为根的子树高度没有变化，祖先结点无需处理
+            if (parent.height == oldHeight)
+                break;
 
             parent = parent.parent;
         }
+        metrics.fixedUp(rounds);
     }
 
-    private int getBalanceFactor(BSNode<K,V> node) {
-        if (node.left == null && node.right == null)
-            return 0;
+    /**
+     * 对失衡结点做单旋或双旋
+     * @param node 失衡结点
+     * @param balanceFactor 失衡结点的平衡因子（2或-2）
+     * @return 旋转后该子树新的根结点
+     */
+    private BSNode<K,V> rebalance(BSNode<K,V> node, int balanceFactor) {
+        if (balanceFactor == 2) {
+            //LR
+            if (getBalanceFactor(node.left) < 0)
+                leftRotate(node.left);
+            //LL
+            rightRotate(node);
+        } else {
+            //RL
+            if (getBalanceFactor(node.right) > 0)
+                rightRotate(node.right);
+            //RR
+            leftRotate(node);
+        }
+        return node.parent;
+    }
 
+    private int getBalanceFactor(BSNode<K,V> node) {
         return getHeight(node.left) - getHeight(node.right);
     }
 
-    private BSNode<K,V> find(K key) {
-        if (this.root == null)
-            return null;
+    public BSNode<K,V> find(K key) {
+        long start = metrics.startTimer();
+        BSNode<K,V> node = find(this.root, key);
+        metrics.record(TreeMetrics.Operation.FIND, start);
+        return node;
+    }
 
-        BSNode<K,V> x = this.root;
+    /**
+     * 从start开始向下查找key
+     */
+    private BSNode<K,V> find(BSNode<K,V> start, K key) {
+        BSNode<K,V> x = start;
+        int comparisons = 0;
         while (x != null) {
             int cmp = key.compareTo(x.key);
+            comparisons++;
             if (cmp > 0)
                 x = x.right;
             else if (cmp < 0)
                 x = x.left;
             else
-                return x;
+                break;
         }
-        return null;
+        metrics.comparisons(comparisons);
+        return x;
     }
 
+    /**
+     * 前驱结点，没有时返回null
+     */
     private BSNode<K,V> precursor(BSNode<K,V> node){
 
-        BSNode<K,V> pre = node.left;
-        while (pre.right != null) {
-            pre = pre.right;
+        if (node.left != null) {
+            BSNode<K,V> pre = node.left;
+            while (pre.right != null) {
+                pre = pre.right;
+            }
+            return pre;
+        }
+        //左子树为空：向上找到第一个以当前分支为右子树的祖先
+        BSNode<K,V> child = node, parent = node.parent;
+        while (parent != null && child == parent.left) {
+            child = parent;
+            parent = parent.parent;
         }
-        return pre;
+        return parent;
     }
 
+    /**
+     * 后继结点，没有时返回null
+     */
+    private BSNode<K,V> successor(BSNode<K,V> node){
+
+        if (node.right != null) {
+            BSNode<K,V> next = node.right;
+            while (next.left != null) {
+                next = next.left;
+            }
+            return next;
+        }
+        //右子树为空：向上找到第一个以当前分支为左子树的祖先
+        BSNode<K,V> child = node, parent = node.parent;
+        while (parent != null && child == parent.right) {
+            child = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    /**
+     * 中序遍历，借助父指针逐个找后继，不递归
+     */
     public void inOrderPrint() {
-        inOrderPrint(root);
+        for (Map.Entry<K, V> entry : this)
+            System.out.println(entry);
     }
 
-    private void inOrderPrint(BSNode<K,V> root) {
-        if (root != null) {
-            inOrderPrint(root.left);
-            System.out.println(root);
-            inOrderPrint(root.right);
+    /**
+     * 按key升序遍历，返回的Entry即树中结点，遍历过程不递归且不分配额外对象
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator(first(), null, false);
+    }
+
+    /**
+     * 按key降序遍历
+     */
+    public Iterator<Map.Entry<K, V>> descendingIterator() {
+        return new EntryIterator(last(), null, true);
+    }
+
+    /**
+     * 按key升序遍历 [lo, hi) 范围内的结点
+     * @param lo 下界（包含）
+     * @param hi 上界（不包含）
+     */
+    public Iterator<Map.Entry<K, V>> iterator(K lo, K hi) {
+        return new EntryIterator(ceilingNode(lo, true), hi, false);
+    }
+
+    /**
+     * 借助父指针逐个找后继（或前驱）的迭代器
+     */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+        private BSNode<K,V> next;
+
+        /**
+         * 升序遍历的上界（不包含），null表示不限
+         */
+        private final K hi;
+
+        private final boolean descending;
+
+        EntryIterator(BSNode<K,V> first, K hi, boolean descending) {
+            this.hi = hi;
+            this.descending = descending;
+            this.next = bounded(first);
+        }
+
+        private BSNode<K,V> bounded(BSNode<K,V> node) {
+            if (node != null && hi != null && node.key.compareTo(hi) >= 0)
+                return null;
+            return node;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            BSNode<K,V> node = next;
+            if (node == null)
+                throw new NoSuchElementException();
+            next = bounded(descending ? precursor(node) : successor(node));
+            return node;
         }
     }
 
     /**
-     * 修复以root为根节点的子树的高度
-     * @param root GEN
+     * <p>可拆分的遍历，供 {@link #parallelStream()} 使用
+     * <p>第一次拆分以根为界分成左右两半，之后左半以界结点的左孩子、右半以起点的右孩子继续拆分，AVL树平衡，每次大致对半
      */
+    @Override
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        return new EntrySpliterator(null, null, 0, -1);
+    }
 
-    public void fixUpHeight(BSNode<K,V> root) {
-        if (root != null) {
-            fixUpHeight(root.left);
-            root.height = getHeight(root);
-            fixUpHeight(root.right);
+    public Stream<Map.Entry<K, V>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<Map.Entry<K, V>> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * 遍历 [current, fence) 范围内结点的Spliterator，结点数没有维护，大小只按高度估计
+     */
+    private class EntrySpliterator implements Spliterator<Map.Entry<K, V>> {
+
+        private BSNode<K,V> current;
+
+        /**
+         * 范围的上界结点（不包含），null表示直到最后
+         */
+        private final BSNode<K,V> fence;
+
+        /**
+         * 0：尚未拆分，1：右半，-1：左半
+         */
+        private int side;
+
+        /**
+         * 估计的结点数，-1表示尚未初始化
+         */
+        private long est;
+
+        EntrySpliterator(BSNode<K,V> current, BSNode<K,V> fence, int side, long est) {
+            this.current = current;
+            this.fence = fence;
+            this.side = side;
+            this.est = est;
+        }
+
+        /**
+         * 延迟到第一次使用时才定位起点
+         */
+        private long getEstimate() {
+            if (est < 0) {
+                current = first();
+                est = root == null ? 0 : (1L << Math.min(getHeight(root), 62)) - 1;
+            }
+            return est;
+        }
+
+        @Override
+        public Spliterator<Map.Entry<K, V>> trySplit() {
+            getEstimate();
+            BSNode<K,V> e = current, f = fence;
+            BSNode<K,V> s = (e == null || e == f) ? null
+                    : side == 0 ? root
+                    : side > 0 ? e.right
+                    : f != null ? f.left : null;
+            //s必须落在 (e, f) 之间
+            if (s != null && s != e && s != f && e.key.compareTo(s.key) < 0) {
+                side = 1;
+                current = s;
+                return new EntrySpliterator(e, s, -1, est >>>= 1);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+            Objects.requireNonNull(action);
+            getEstimate();
+            BSNode<K,V> node = current;
+            if (node == null || node == fence)
+                return false;
+            current = successor(node);
+            action.accept(node);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Map.Entry<K, V>> action) {
+            Objects.requireNonNull(action);
+            getEstimate();
+            BSNode<K,V> node = current, f = fence;
+            current = f;
+            for (; node != null && node != f; node = successor(node))
+                action.accept(node);
+        }
+
+        @Override
+        public long estimateSize() {
+            return getEstimate();
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SORTED | Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+
+        @Override
+        public Comparator<? super Map.Entry<K, V>> getComparator() {
+            return Map.Entry.comparingByKey();
         }
     }
 
+    private BSNode<K,V> first() {
+        BSNode<K,V> node = this.root;
+        if (node != null)
+            while (node.left != null)
+                node = node.left;
+        return node;
+    }
 
+    private BSNode<K,V> last() {
+        BSNode<K,V> node = this.root;
+        if (node != null)
+            while (node.right != null)
+                node = node.right;
+        return node;
+    }
 
+    /**
+     * 不大于key的最大结点
+     */
+    public Map.Entry<K, V> floor(K key) {
+        return floorNode(key, true);
+    }
 
+    /**
+     * 小于key的最大结点
+     */
+    public Map.Entry<K, V> lower(K key) {
+        return floorNode(key, false);
+    }
 
+    /**
+     * 不小于key的最小结点
+     */
+    public Map.Entry<K, V> ceiling(K key) {
+        return ceilingNode(key, true);
+    }
+
+    /**
+     * 大于key的最小结点
+     */
+    public Map.Entry<K, V> higher(K key) {
+        return ceilingNode(key, false);
+    }
 
+    /**
+     * 向下查找时记录最后一次向左走的结点，见 RBTree.ceilingNode
+     */
+    private BSNode<K,V> ceilingNode(K key, boolean inclusive) {
+        BSNode<K,V> x = this.root, candidate = null;
+        while (x != null) {
+            int cmp = key.compareTo(x.key);
+            if (cmp == 0 && inclusive)
+                return x;
+            if (cmp < 0) {
+                candidate = x;
+                x = x.left;
+            } else {
+                x = x.right;
+            }
+        }
+        return candidate;
+    }
 
+    /**
+     * 向下查找时记录最后一次向右走的结点，见 RBTree.floorNode
+     */
+    private BSNode<K,V> floorNode(K key, boolean inclusive) {
+        BSNode<K,V> x = this.root, candidate = null;
+        while (x != null) {
+            int cmp = key.compareTo(x.key);
+            if (cmp == 0 && inclusive)
+                return x;
+            if (cmp > 0) {
+                candidate = x;
+                x = x.right;
+            } else {
+                x = x.left;
+            }
+        }
+        return candidate;
+    }
 
-    private boolean isParent(BSNode<K,V> sun, BSNode<K,V> parent) {
+    /**
+     * 修复以root为根节点的子树的高度（后序遍历，仅在结构被外部改动后使用）
+     * @param root GEN
+     */
 
-        BSNode<K,V> p = sun;
-        while (p != null) {
-            if (p == parent) return true;
-            p = p.parent;
+    public void fixUpHeight(BSNode<K,V> root) {
+        if (root != null) {
+            fixUpHeight(root.left);
+            fixUpHeight(root.right);
+            updateHeight(root);
         }
+    }
+
+    /**
+     * 结点高度直接读取缓存的height字段，空结点高度为0
+     */
+    private int getHeight(BSNode<K,V> node) {
+        return node == null ? 0 : node.height;
+    }
 
-        return false;
+    /**
+     * 根据左右孩子缓存的高度重新计算当前结点高度
+     */
+    private void updateHeight(BSNode<K,V> node) {
+        node.height = Math.max(getHeight(node.left), getHeight(node.right)) + 1;
     }
 
-    private  int getHeight(BSNode<K,V> node) {
+    /**
+     * <p>检查全部不变式，O(n)，供差分测试在修改后调用
+     * <p>根没有父结点；每个结点缓存的height等于左右子树高度的较大值加1；平衡因子在 [-1, 1] 内；
+     * 子结点的parent指向自身；中序严格升序
+     * @throws IllegalStateException 被破坏的不变式
+     */
+    void checkInvariants() {
+        if (root != null && root.parent != null)
+            throw new IllegalStateException("root " + root.key + " has a parent");
+        checkInvariants(root, null, null);
+    }
 
-        if (node == null) return 0;
-        //左右子树都为空
-        if (node.left == null && node.right == null)
-            return 1;
-        //走到这里说明左右子树不全为空
-        if (node.left == null)
-            return getHeight(node.right) + 1;
-        if (node.right == null)
-            return getHeight(node.left) + 1;
+    /**
+     * 检查以node为根的子树，key必须落在 (lo, hi) 内，null表示不设界
+     * @return 子树的实际高度
+     */
+    private int checkInvariants(BSNode<K,V> node, K lo, K hi) {
+        if (node == null)
+            return 0;
 
-        //左右子树都存在
-        return Math.max(getHeight(node.left), getHeight(node.right)) + 1;
+        K key = node.key;
+        if (lo != null && key.compareTo(lo) <= 0 || hi != null && key.compareTo(hi) >= 0)
+            throw new IllegalStateException("key " + key + " is out of order, expected in (" + lo + ", " + hi + ")");
+        if (node.left != null && node.left.parent != node || node.right != null && node.right.parent != node)
+            throw new IllegalStateException("child of " + key + " has a wrong parent pointer");
+
+        int left = checkInvariants(node.left, lo, key);
+        int right = checkInvariants(node.right, key, hi);
+        if (node.height != Math.max(left, right) + 1)
+            throw new IllegalStateException("cached height of " + key + " is " + node.height + ", actual " + (Math.max(left, right) + 1));
+        if (Math.abs(left - right) > 1)
+            throw new IllegalStateException("balance factor of " + key + " is " + (left - right));
+        return node.height;
     }
 
 
@@ -315,6 +875,11 @@ public class BSTree<K extends Comparable<K>, V> {
         //3
         y.left = x;
         x.parent = y;
+
+        //4.x成为y的孩子，先更新x再更新y
+        updateHeight(x);
+        updateHeight(y);
+        metrics.rotated(true);
     }
 
 
@@ -363,10 +928,15 @@ public class BSTree<K extends Comparable<K>, V> {
 
         x.right = y;
         y.parent = x;
+
+        //y成为x的孩子，先更新y再更新x
+        updateHeight(y);
+        updateHeight(x);
+        metrics.rotated(false);
     }
 
 
-    static class BSNode<K extends Comparable<K>, V> {
+    static class BSNode<K extends Comparable<K>, V> implements Map.Entry<K, V> {
 
         BSNode<K,V> left;
 
@@ -400,6 +970,31 @@ public class BSTree<K extends Comparable<K>, V> {
             return key;
         }
 
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
 
         public BSNode(K key, V value) {
             this.key = key;
@@ -0,0 +1,58 @@
+package top.noox.bst;
+
+import top.noox.check.DifferentialDriver;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>BSTree（AVL）与TreeMap的随机差分测试，直接运行main，过程见 {@link DifferentialDriver}
+ * <p>BSTree没有维护size，阶段结束时按中序比较全部键值对
+ * <p>参数：操作次数（默认10^8）、随机种子（默认0）
+ */
+public class BSTreeDifferentialTest {
+
+    public static void main(String[] args) {
+        BSTree<Integer, Integer> tree = new BSTree<>();
+        long[] parsed = DifferentialDriver.parse(args, 0);
+
+        new DifferentialDriver<>(new DifferentialDriver.Subject<Integer>() {
+            @Override
+            public void insert(Integer key, Integer value) {
+                tree.insert(key, value);
+            }
+
+            @Override
+            public void delete(Integer key) {
+                tree.delete(key);
+            }
+
+            @Override
+            public Integer get(Integer key) {
+                BSTree.BSNode<Integer, Integer> node = tree.find(key);
+                return node == null ? null : node.getValue();
+            }
+
+            @Override
+            public void checkInvariants() {
+                tree.checkInvariants();
+            }
+
+            @Override
+            public Iterator<Map.Entry<Integer, Integer>> iterator() {
+                return tree.iterator();
+            }
+
+            @Override
+            public void insertAll(List<Integer> keys, List<Integer> values) {
+                tree.insertAll(keys.toArray(new Integer[0]), values.toArray(new Integer[0]));
+            }
+
+            @Override
+            public void deleteAll(List<Integer> keys) {
+                tree.deleteAll(keys.toArray(new Integer[0]));
+            }
+        }, Integer::valueOf, null).run(parsed[0], parsed[1]);
+    }
+}
@@ -0,0 +1,252 @@
+package top.noox.check;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+
+/**
+ * <p>各棵树共用的随机差分测试：以TreeMap为模型，发现不一致或不变式被破坏时抛出AssertionError
+ * <p>随机混合insert、delete、get与少量insertAll/deleteAll批次，每次get比较结果，树维护size时每次操作后比较size；
+ * 每个阶段结束时按中序逐个比较全部键值对（树不能遍历时逐个get模型中的key）
+ * <p>不变式由 {@link Subject#checkInvariants()} 检查：树较小时每次修改后都检查，较大时每隔一段操作及阶段结束时检查
+ * <p>各阶段轮换key的范围与插入比例：小范围时反复命中已有key并频繁删空，大范围时树较高、修复上溯较长，
+ * 插入比例低的阶段把树逐渐删小，使插入与删除修复的各个情景都被覆盖
+ * <p>被测的树通过 {@link Subject} 适配，适配器写在树所在的包里，以便调用包内可见的checkInvariants；
+ * 只有增删查、size与checkInvariants的树直接用 {@link #subject} 由方法引用组装
+ * <p>
+ * @param <K> key
+ */
+public final class DifferentialDriver<K> {
+
+    private static final int PHASE = 1 << 20;
+
+    private static final int[] RANGES = {16, 1 << 10, 1 << 16, 1 << 22};
+
+    private static final int[] INSERT_PERCENTS = {50, 70, 30};
+
+    /**
+     * 不超过这个规模时每次修改后都检查不变式
+     */
+    private static final int SMALL = 1 << 10;
+
+    private static final int CHECK_INTERVAL = 1 << 16;
+
+    private static final int BATCH = 8;
+
+    /**
+     * 被测的树，value统一为Integer
+     * @param <K> key
+     */
+    public interface Subject<K> {
+
+        /**
+         * 插入，key已存在时覆盖value
+         */
+        void insert(K key, Integer value);
+
+        void delete(K key);
+
+        /**
+         * @return key对应的value，不存在时为null
+         */
+        Integer get(K key);
+
+        /**
+         * 检查全部不变式
+         * @throws IllegalStateException 被破坏的不变式
+         */
+        void checkInvariants();
+
+        /**
+         * size与iterator至少实现一个，否则阶段结束时发现不了树中多出的key
+         * @return 结点总数，树不维护时返回-1
+         */
+        default int size() {
+            return -1;
+        }
+
+        /**
+         * 按key升序的遍历，树不能遍历时返回null
+         */
+        default Iterator<? extends Map.Entry<K, Integer>> iterator() {
+            return null;
+        }
+
+        /**
+         * 批量插入，结果须与按顺序逐个insert相同；默认逐个insert
+         */
+        default void insertAll(List<K> keys, List<Integer> values) {
+            for (int i = 0; i < keys.size(); i++)
+                insert(keys.get(i), values.get(i));
+        }
+
+        /**
+         * 批量删除；默认逐个delete
+         */
+        default void deleteAll(List<K> keys) {
+            for (K key : keys)
+                delete(key);
+        }
+    }
+
+    /**
+     * 由方法引用组装Subject，例如 subject(tree::insert, tree::delete, tree::get, tree::size, tree::checkInvariants)
+     * @param size 结点总数，树不维护时传入 () -> -1，此时阶段结束时逐个get比较
+     */
+    public static <K> Subject<K> subject(BiConsumer<K, Integer> insert, Consumer<K> delete, Function<K, Integer> get,
+                                         IntSupplier size, Runnable checkInvariants) {
+        return new Subject<K>() {
+            @Override
+            public void insert(K key, Integer value) {
+                insert.accept(key, value);
+            }
+
+            @Override
+            public void delete(K key) {
+                delete.accept(key);
+            }
+
+            @Override
+            public Integer get(K key) {
+                return get.apply(key);
+            }
+
+            @Override
+            public void checkInvariants() {
+                checkInvariants.run();
+            }
+
+            @Override
+            public int size() {
+                return size.getAsInt();
+            }
+        };
+    }
+
+    private final Subject<K> subject;
+
+    private final IntFunction<K> keyOf;
+
+    private final Comparator<? super K> order;
+
+    private final TreeMap<K, Integer> model;
+
+    /**
+     * @param subject 被测的树，必须为空
+     * @param keyOf 由 [0, range) 内的随机数生成key，相同的数必须生成相同的key
+     * @param order key的顺序，须与被测的树一致，为null时按自然顺序
+     */
+    public DifferentialDriver(Subject<K> subject, IntFunction<K> keyOf, Comparator<? super K> order) {
+        this.subject = subject;
+        this.keyOf = keyOf;
+        this.order = order;
+        this.model = new TreeMap<>(order);
+    }
+
+    /**
+     * 解析命令行参数：操作次数（默认10^8）、随机种子（默认0），从args[from]开始
+     */
+    public static long[] parse(String[] args, int from) {
+        long operations = args.length > from ? Long.parseLong(args[from]) : 100_000_000L;
+        long seed = args.length > from + 1 ? Long.parseLong(args[from + 1]) : 0;
+        return new long[]{operations, seed};
+    }
+
+    public void run(long operations, long seed) {
+        Random random = new Random(seed);
+        long begin = System.nanoTime();
+
+        for (long done = 0, phase = 0; done < operations; phase++) {
+            int range = RANGES[(int) (phase % RANGES.length)];
+            int insertPercent = INSERT_PERCENTS[(int) (phase % INSERT_PERCENTS.length)];
+            long end = Math.min(operations, done + PHASE);
+            for (; done < end; done++) {
+                K key = keyOf.apply(random.nextInt(range));
+                int dice = random.nextInt(100);
+                if (dice < insertPercent) {
+                    subject.insert(key, (int) done);
+                    model.put(key, (int) done);
+                } else if (dice < 90) {
+                    subject.delete(key);
+                    model.remove(key);
+                } else if (dice < 99) {
+                    Integer actual = subject.get(key);
+                    check(Objects.equals(actual, model.get(key)), "get(" + key + ") = " + actual + " at operation " + done);
+                } else {
+                    batch(random, range, (int) done);
+                }
+                int size = subject.size();
+                check(size < 0 || size == model.size(), "size " + size + " != " + model.size() + " at operation " + done);
+                if (model.size() <= SMALL || done % CHECK_INTERVAL == 0)
+                    checkInvariants(done);
+            }
+            checkInvariants(done);
+            compare(done);
+        }
+        System.out.println("ok: " + operations + " operations in " + (System.nanoTime() - begin) / 1_000_000 + " ms");
+    }
+
+    /**
+     * 随机的insertAll或deleteAll，批次内可能有重复key
+     */
+    private void batch(Random random, int range, int value) {
+        List<K> keys = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++)
+            keys.add(keyOf.apply(random.nextInt(range)));
+        if (random.nextBoolean()) {
+            List<Integer> values = new ArrayList<>(BATCH);
+            for (int i = 0; i < BATCH; i++) {
+                values.add(value + i);
+                model.put(keys.get(i), value + i);
+            }
+            subject.insertAll(keys, values);
+        } else {
+            for (K key : keys)
+                model.remove(key);
+            subject.deleteAll(keys);
+        }
+    }
+
+    private void checkInvariants(long done) {
+        try {
+            subject.checkInvariants();
+        } catch (IllegalStateException e) {
+            throw new AssertionError(e.getMessage() + " after operation " + done, e);
+        }
+    }
+
+    private void compare(long done) {
+        Iterator<? extends Map.Entry<K, Integer>> actual = subject.iterator();
+        if (actual == null) {
+            for (Map.Entry<K, Integer> expected : model.entrySet())
+                check(expected.getValue().equals(subject.get(expected.getKey())),
+                        "entry " + expected.getKey() + " differs after operation " + done);
+            return;
+        }
+        for (Map.Entry<K, Integer> expected : model.entrySet()) {
+            check(actual.hasNext(), "missing " + expected.getKey() + " after operation " + done);
+            Map.Entry<K, Integer> entry = actual.next();
+            check(model.comparator() == null ? entry.getKey().equals(expected.getKey())
+                            : order.compare(entry.getKey(), expected.getKey()) == 0,
+                    "entry " + entry.getKey() + " != " + expected.getKey() + " after operation " + done);
+            check(entry.getValue().equals(expected.getValue()),
+                    "value of " + entry.getKey() + " is " + entry.getValue() + " after operation " + done);
+        }
+        check(!actual.hasNext(), "extra entries after operation " + done);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
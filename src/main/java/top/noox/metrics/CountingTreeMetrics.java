@@ -0,0 +1,179 @@
+package top.noox.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>线程安全的计数实现，计数用 {@link LongAdder}，耗时与修复轮数按2的幂分桶计入直方图
+ * <p>同一个实例可以被多棵树共用（如分段加锁的各段），计数合在一起
+ * <p>拉取方式：{@link #snapshot()}；或 {@link #register(String)} 注册到平台MBeanServer，通过JMX查看
+ */
+public class CountingTreeMetrics implements TreeMetrics, CountingTreeMetricsMXBean {
+
+    private static final int BUCKETS = 64;
+
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder leftRotations = new LongAdder();
+    private final LongAdder rightRotations = new LongAdder();
+    private final LongAdder recolorings = new LongAdder();
+    private final AtomicLongArray fixUpRounds = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray[] latencies = new AtomicLongArray[TreeMetrics.Operation.values().length];
+
+    public CountingTreeMetrics() {
+        for (int i = 0; i < latencies.length; i++)
+            latencies[i] = new AtomicLongArray(BUCKETS);
+    }
+
+
+    @Override
+    public void comparisons(int count) {
+        comparisons.add(count);
+    }
+
+    @Override
+    public void rotated(boolean left) {
+        (left ? leftRotations : rightRotations).increment();
+    }
+
+    @Override
+    public void recolored(int nodes) {
+        recolorings.add(nodes);
+    }
+
+    @Override
+    public void fixedUp(int rounds) {
+        fixUpRounds.incrementAndGet(bucket(rounds));
+    }
+
+    @Override
+    public long startTimer() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void record(Operation operation, long start) {
+        latencies[operation.ordinal()].incrementAndGet(bucket(System.nanoTime() - start));
+    }
+
+    /**
+     * 值所在的桶：0在第0个桶，[2^(i-1), 2^i) 在第i个桶
+     */
+    private static int bucket(long value) {
+        return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+    }
+
+
+    /**
+     * 当前计数的快照
+     */
+    public MetricsSnapshot snapshot() {
+        long[][] copies = new long[latencies.length][];
+        for (int i = 0; i < latencies.length; i++)
+            copies[i] = toArray(latencies[i]);
+        return new MetricsSnapshot(comparisons.sum(), leftRotations.sum(), rightRotations.sum(), recolorings.sum(),
+                toArray(fixUpRounds), copies);
+    }
+
+    /**
+     * 以 top.noox:type=TreeMetrics,name=name 注册到平台MBeanServer
+     * @param name 区分不同的树
+     * @return 注册使用的ObjectName，用于 {@link #unregister(ObjectName)}
+     * @throws JMException name不合法或已被注册
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("top.noox:type=TreeMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    public void unregister(ObjectName objectName) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+
+
+    @Override
+    public long getComparisons() {
+        return comparisons.sum();
+    }
+
+    @Override
+    public long getLeftRotations() {
+        return leftRotations.sum();
+    }
+
+    @Override
+    public long getRightRotations() {
+        return rightRotations.sum();
+    }
+
+    @Override
+    public long getRecolorings() {
+        return recolorings.sum();
+    }
+
+    @Override
+    public long getMaxFixUpRounds() {
+        return snapshot().getMaxFixUpRounds();
+    }
+
+    @Override
+    public long[] getFixUpRoundsHistogram() {
+        return toArray(fixUpRounds);
+    }
+
+    @Override
+    public long getInsertCount() {
+        return snapshot().getCount(Operation.INSERT);
+    }
+
+    @Override
+    public long getDeleteCount() {
+        return snapshot().getCount(Operation.DELETE);
+    }
+
+    @Override
+    public long getFindCount() {
+        return snapshot().getCount(Operation.FIND);
+    }
+
+    @Override
+    public long[] getInsertLatencyHistogram() {
+        return toArray(latencies[Operation.INSERT.ordinal()]);
+    }
+
+    @Override
+    public long[] getDeleteLatencyHistogram() {
+        return toArray(latencies[Operation.DELETE.ordinal()]);
+    }
+
+    @Override
+    public long[] getFindLatencyHistogram() {
+        return toArray(latencies[Operation.FIND.ordinal()]);
+    }
+
+    /**
+     * 清零全部计数，与并发的记录之间不保证原子性
+     */
+    @Override
+    public void reset() {
+        comparisons.reset();
+        leftRotations.reset();
+        rightRotations.reset();
+        recolorings.reset();
+        for (int i = 0; i < BUCKETS; i++) {
+            fixUpRounds.set(i, 0);
+            for (AtomicLongArray latency : latencies)
+                latency.set(i, 0);
+        }
+    }
+
+    private static long[] toArray(AtomicLongArray array) {
+        long[] copy = new long[array.length()];
+        for (int i = 0; i < copy.length; i++)
+            copy[i] = array.get(i);
+        return copy;
+    }
+}
@@ -0,0 +1,33 @@
+package top.noox.metrics;
+
+/**
+ * {@link CountingTreeMetrics} 的JMX接口，直方图第i个桶统计 [2^(i-1), 2^i) 范围内的值，第0个桶统计0
+ */
+public interface CountingTreeMetricsMXBean {
+
+    long getComparisons();
+
+    long getLeftRotations();
+
+    long getRightRotations();
+
+    long getRecolorings();
+
+    long getMaxFixUpRounds();
+
+    long[] getFixUpRoundsHistogram();
+
+    long getInsertCount();
+
+    long getDeleteCount();
+
+    long getFindCount();
+
+    long[] getInsertLatencyHistogram();
+
+    long[] getDeleteLatencyHistogram();
+
+    long[] getFindLatencyHistogram();
+
+    void reset();
+}
@@ -0,0 +1,120 @@
+package top.noox.metrics;
+
+import java.util.Arrays;
+
+/**
+ * <p>{@link CountingTreeMetrics} 某一时刻的计数，不可变
+ * <p>各计数分别读取，并发更新时不是同一时刻的精确值
+ */
+public final class MetricsSnapshot {
+
+    private final long comparisons;
+    private final long leftRotations;
+    private final long rightRotations;
+    private final long recolorings;
+    private final long[] fixUpRounds;
+    private final long[][] latencies;
+
+    MetricsSnapshot(long comparisons, long leftRotations, long rightRotations, long recolorings,
+                    long[] fixUpRounds, long[][] latencies) {
+        this.comparisons = comparisons;
+        this.leftRotations = leftRotations;
+        this.rightRotations = rightRotations;
+        this.recolorings = recolorings;
+        this.fixUpRounds = fixUpRounds;
+        this.latencies = latencies;
+    }
+
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    public long getLeftRotations() {
+        return leftRotations;
+    }
+
+    public long getRightRotations() {
+        return rightRotations;
+    }
+
+    public long getRecolorings() {
+        return recolorings;
+    }
+
+    /**
+     * 修复轮数的直方图，分桶方式见 {@link CountingTreeMetricsMXBean}
+     */
+    public long[] getFixUpRoundsHistogram() {
+        return fixUpRounds.clone();
+    }
+
+    /**
+     * 操作耗时（纳秒）的直方图
+     */
+    public long[] getLatencyHistogram(TreeMetrics.Operation operation) {
+        return latencies[operation.ordinal()].clone();
+    }
+
+    public long getCount(TreeMetrics.Operation operation) {
+        return sum(latencies[operation.ordinal()]);
+    }
+
+    /**
+     * 耗时的分位数，按直方图估算，返回所在桶的上界
+     * @param quantile 0到1之间，如0.99
+     * @return 纳秒，没有记录时为0
+     */
+    public long getLatencyPercentile(TreeMetrics.Operation operation, double quantile) {
+        return percentile(latencies[operation.ordinal()], quantile);
+    }
+
+    public long getMaxFixUpRounds() {
+        for (int i = fixUpRounds.length - 1; i >= 0; i--)
+            if (fixUpRounds[i] != 0)
+                return upperBound(i);
+        return 0;
+    }
+
+    static long percentile(long[] histogram, double quantile) {
+        if (quantile < 0 || quantile > 1)
+            throw new IllegalArgumentException("quantile must be in [0, 1]: " + quantile);
+        long total = sum(histogram);
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * total)), seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank)
+                return upperBound(i);
+        }
+        return upperBound(histogram.length - 1);
+    }
+
+    /**
+     * 第i个桶的上界（包含）
+     */
+    static long upperBound(int bucket) {
+        return bucket == 0 ? 0 : bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    private static long sum(long[] histogram) {
+        long total = 0;
+        for (long count : histogram)
+            total += count;
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot{" +
+                "comparisons=" + comparisons +
+                ", leftRotations=" + leftRotations +
+                ", rightRotations=" + rightRotations +
+                ", recolorings=" + recolorings +
+                ", fixUpRounds=" + Arrays.toString(fixUpRounds) +
+                ", insert p99=" + getLatencyPercentile(TreeMetrics.Operation.INSERT, 0.99) +
+                "ns, delete p99=" + getLatencyPercentile(TreeMetrics.Operation.DELETE, 0.99) +
+                "ns, find p99=" + getLatencyPercentile(TreeMetrics.Operation.FIND, 0.99) +
+                "ns}";
+    }
+}
@@ -0,0 +1,78 @@
+package top.noox.metrics;
+
+/**
+ * <p>树内部热点路径的计数：比较次数、左右旋转、变色、每次修复的轮数与操作耗时
+ * <p>树默认使用 {@link #NOOP}，各方法都是空实现、{@link #startTimer()} 不读时钟，JIT内联后相当于没有插桩；
+ * 需要观察时通过树的 setMetrics 换成 {@link CountingTreeMetrics}
+ * <p>比较次数由树在局部变量中累加，每次查找或插入结束时汇报一次，不在每次比较时调用
+ */
+public interface TreeMetrics {
+
+    enum Operation {
+        INSERT, DELETE, FIND
+    }
+
+    /**
+     * 不做任何记录的实现
+     */
+    TreeMetrics NOOP = new TreeMetrics() {
+        @Override
+        public void comparisons(int count) {
+        }
+
+        @Override
+        public void rotated(boolean left) {
+        }
+
+        @Override
+        public void recolored(int nodes) {
+        }
+
+        @Override
+        public void fixedUp(int rounds) {
+        }
+
+        @Override
+        public long startTimer() {
+            return 0;
+        }
+
+        @Override
+        public void record(Operation operation, long start) {
+        }
+    };
+
+    /**
+     * 一次查找路径上的key比较次数
+     */
+    void comparisons(int count);
+
+    /**
+     * 一次旋转
+     * @param left 是否左旋
+     */
+    void rotated(boolean left);
+
+    /**
+     * 修复过程中一次改变了若干个结点的颜色
+     */
+    void recolored(int nodes);
+
+    /**
+     * 一次插入或删除的修复结束
+     * @param rounds 修复的轮数：红黑树为修复循环执行的轮数，AVL树为回溯检查的祖先个数
+     */
+    void fixedUp(int rounds);
+
+    /**
+     * 开始计时
+     * @return 传给 {@link #record} 的起点
+     */
+    long startTimer();
+
+    /**
+     * 一次操作结束
+     * @param start {@link #startTimer()} 的返回值
+     */
+    void record(Operation operation, long start);
+}
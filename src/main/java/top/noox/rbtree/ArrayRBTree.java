@@ -0,0 +1,537 @@
+package top.noox.rbtree;
+
+import java.util.Arrays;
+
+/**
+ * <p>结点存放在并列数组中的红黑树，插入、删除的语义与 {@link RBTree} 一致
+ * <p>每个结点是一个int下标：父、左、右用int数组保存，颜色按位压缩在long数组中，key与value分别放在两个Object数组里
+ * <p>不再为每个结点创建对象，省去对象头和引用的开销，也减少GC扫描的对象数
+ * <p>下标0保留为nil结点（黑色），删除后空出的下标串成空闲链表，插入时优先复用
+ * <p>
+ * @param <K> key
+ * @param <V> value
+ */
+@SuppressWarnings("unchecked")
+public class ArrayRBTree<K extends Comparable<K>, V> {
+
+    private static final int NIL = 0;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int root = NIL;
+
+    private int[] parent;
+    private int[] left;
+    private int[] right;
+    /**
+     * 颜色位图，第i位为1表示结点i为红色
+     */
+    private long[] red;
+    private Object[] keys;
+    private Object[] values;
+
+    /**
+     * 下一个从未使用过的下标
+     */
+    private int next = 1;
+    /**
+     * 空闲链表头，链表通过left数组串联
+     */
+    private int free = NIL;
+
+    private int size;
+
+
+    public ArrayRBTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 预分配的结点数，已知规模时可避免扩容
+     */
+    public ArrayRBTree(int capacity) {
+        int length = Math.max(capacity, 1) + 1;
+        parent = new int[length];
+        left = new int[length];
+        right = new int[length];
+        red = new long[(length + 63) >>> 6];
+        keys = new Object[length];
+        values = new Object[length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * 中序遍历
+     */
+    public void inOrderPrint() {
+        inOrderPrint(root);
+    }
+
+    private void inOrderPrint(int node) {
+        if (node != NIL) {
+            inOrderPrint(left[node]);
+            System.out.println("Node{color=" + isRed(node) + ", key=" + keys[node] + ", value=" + values[node] + '}');
+            inOrderPrint(right[node]);
+        }
+    }
+
+
+    /**
+     * 对外插入方法，key已存在时覆盖value
+     * @param key  key
+     * @param value value
+     */
+    public void insert(K key, V value) {
+
+        int p = NIL, x = root;
+        int cmp = 0;
+
+        while (x != NIL) {
+            p = x;
+            cmp = key.compareTo((K) keys[x]);
+            if (cmp == 0) {
+                values[x] = value;
+                return;
+            }
+            x = cmp > 0 ? right[x] : left[x];
+        }
+
+        int node = allocate(key, value);
+        parent[node] = p;
+        if (p == NIL)   //首次插入
+            root = node;
+        else if (cmp > 0)
+            right[p] = node;
+        else
+            left[p] = node;
+
+        insertFixUp(node);
+    }
+
+    /**
+     * 插入后修复红黑树平衡，各情景见 RBTree.insertFixUp，同样以循环实现：只有叔父双红时上溯到爷爷结点
+     * @param node 当前新插入结点
+     */
+    private void insertFixUp(int node) {
+        while (true) {
+            //情景1：当前结点为根
+            int p = parent[node];
+            if (p == NIL) {
+                setBlack(node);
+                return;
+            }
+            //情景3：父结点为黑色
+            if (!isRed(p))
+                return;
+
+            //情景4：父结点为红色，爷爷结点存在
+            int g = parent[p];
+            //父为爷的左孩子
+            if (p == left[g]) {
+                int uncle = right[g];
+
+                //叔父双红
+                if (isRed(uncle)) {
+                    setBlack(p);
+                    setBlack(uncle);
+                    setRed(g);
+                    node = g;
+                    continue;
+                }
+                //LR：父左旋转为LL
+                if (node == right[p]) {
+                    leftRotate(p);
+                    p = node;
+                }
+                //LL
+                setBlack(p);
+                setRed(g);
+                rightRotate(g);
+
+            //父为爷的右孩子
+            } else {
+                int uncle = left[g];
+
+                //叔父双红
+                if (isRed(uncle)) {
+                    setBlack(p);
+                    setBlack(uncle);
+                    setRed(g);
+                    node = g;
+                    continue;
+                }
+                //RL：父右旋转为RR
+                if (node == left[p]) {
+                    rightRotate(p);
+                    p = node;
+                }
+                //RR
+                setBlack(p);
+                setRed(g);
+                leftRotate(g);
+            }
+            return;
+        }
+    }
+
+    public void delete(K key) {
+        int node = find(key);
+        if (node == NIL) return;
+        delete(node);
+    }
+
+    /**
+     * 删除结点，各情景见 RBTree.delete
+     * @param node 要删除的结点
+     */
+    private void delete(int node) {
+
+        int p = parent[node];
+
+        //带有两个子树的结点：与前驱交换后转为删除前驱
+        if (left[node] != NIL && right[node] != NIL) {
+            int precursor = left[node];
+            while (right[precursor] != NIL)
+                precursor = right[precursor];
+
+            keys[node] = keys[precursor];
+            values[node] = values[precursor];
+
+            delete(precursor);
+            return;
+        }
+
+        //带有一个子树的结点（必是黑父红子）：交换后删除红子
+        int sun = left[node] != NIL ? left[node] : right[node];
+        if (sun != NIL) {
+            keys[node] = keys[sun];
+            values[node] = values[sun];
+            if (sun == left[node])
+                left[node] = NIL;
+            else
+                right[node] = NIL;
+            release(sun);
+            return;
+        }
+
+        //叶子结点
+        if (p == NIL) {
+            root = NIL;
+            release(node);
+            return;
+        }
+        boolean isLeftChild = node == left[p];
+        if (isLeftChild)
+            left[p] = NIL;
+        else
+            right[p] = NIL;
+
+        //单个黑结点删除后需要调整，单个红结点直接删除即可
+        if (!isRed(node))
+            deleteFixUp(node, isLeftChild);
+        release(node);
+    }
+
+    /**
+     * 修复删除后造成的可能的红黑树失衡，各情景见 RBTree.deleteFixUp，同样以循环实现
+     * @param node  当前被删除结点（已摘除，parent下标仍保留）
+     * @param isLeftChild    被删除结点是否是左孩子
+     */
+    private void deleteFixUp(int node, boolean isLeftChild) {
+        while (true) {
+            int p = parent[node];
+            int brother, nephew;
+
+            if (isLeftChild) {
+
+                brother = right[p];
+                //红兄弟：左旋父后兄弟变为黑色，node不变进入下一轮
+                if (isRed(brother)) {
+                    leftRotate(p);
+                    setRed(p);
+                    setBlack(brother);
+                    continue;
+                }
+
+                //黑兄弟，双黑侄：兄弟染红，父结点为红色或根时染黑结束，否则以父结点进入下一轮
+                if (!isRed(right[brother]) && !isRed(left[brother])) {
+                    setRed(brother);
+                    if (p == root || isRed(p)) {
+                        setBlack(p);
+                        return;
+                    }
+                    node = p;
+                    isLeftChild = left[parent[p]] == p;
+                    continue;
+                }
+
+                //黑兄弟，左红侄：右旋兄，转为右红侄
+                if (!isRed(right[brother])) {
+                    nephew = left[brother];
+                    rightRotate(brother);
+                    setRed(brother);
+                    setBlack(nephew);
+                    brother = nephew;
+                }
+                //黑兄弟，右红侄
+                nephew = right[brother];
+                leftRotate(p);
+                setColor(brother, isRed(p));
+                setBlack(p);
+                setBlack(nephew);
+                return;
+
+            } else {
+
+                brother = left[p];
+                //红兄弟：右旋父后兄弟变为黑色，node不变进入下一轮
+                if (isRed(brother)) {
+                    rightRotate(p);
+                    setRed(p);
+                    setBlack(brother);
+                    continue;
+                }
+
+                //黑兄弟，双黑侄
+                if (!isRed(left[brother]) && !isRed(right[brother])) {
+                    setRed(brother);
+                    if (p == root || isRed(p)) {
+                        setBlack(p);
+                        return;
+                    }
+                    node = p;
+                    isLeftChild = left[parent[p]] == p;
+                    continue;
+                }
+
+                //黑兄弟，右红侄：左旋兄，转为左红侄
+                if (!isRed(left[brother])) {
+                    nephew = right[brother];
+                    leftRotate(brother);
+                    setRed(brother);
+                    setBlack(nephew);
+                    brother = nephew;
+                }
+                //黑兄弟，左红侄
+                nephew = left[brother];
+                rightRotate(p);
+                setColor(brother, isRed(p));
+                setBlack(p);
+                setBlack(nephew);
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * 根据key查找结点下标
+     * @param key   key
+     * @return  找到返回下标，否则返回NIL
+     */
+    private int find(K key) {
+        int node = root;
+        while (node != NIL) {
+            int cmp = key.compareTo((K) keys[node]);
+            if (cmp == 0)
+                return node;
+            node = cmp > 0 ? right[node] : left[node];
+        }
+        return NIL;
+    }
+
+    /**
+     * 根据key查找value
+     * @param key   key
+     * @return  找到返回value，否则返回null
+     */
+    public V get(K key) {
+        return (V) values[find(key)];
+    }
+
+    public boolean contains(K key) {
+        return find(key) != NIL;
+    }
+
+
+    /**
+     * 左旋，见 RBTree.leftRotate
+     * @param x : 要进行左旋的结点
+     */
+    private void leftRotate(int x) {
+        int y = right[x];
+        right[x] = left[y];
+        if (left[y] != NIL)
+            parent[left[y]] = x;
+
+        int p = parent[x];
+        parent[y] = p;
+        if (p == NIL)
+            root = y;
+        else if (x == left[p])
+            left[p] = y;
+        else
+            right[p] = y;
+
+        left[y] = x;
+        parent[x] = y;
+    }
+
+    /**
+     * 右旋，见 RBTree.rightRotate
+     * @param y : 要进行右旋的结点
+     */
+    private void rightRotate(int y) {
+        int x = left[y];
+        left[y] = right[x];
+        if (right[x] != NIL)
+            parent[right[x]] = y;
+
+        int p = parent[y];
+        parent[x] = p;
+        if (p == NIL)
+            root = x;
+        else if (y == left[p])
+            left[p] = x;
+        else
+            right[p] = x;
+
+        right[x] = y;
+        parent[y] = x;
+    }
+
+
+    /**
+     * 分配一个红色结点，优先从空闲链表中取
+     */
+    private int allocate(K key, V value) {
+        int node;
+        if (free != NIL) {
+            node = free;
+            free = left[node];
+        } else {
+            if (next == keys.length)
+                grow();
+            node = next++;
+        }
+        left[node] = right[node] = parent[node] = NIL;
+        keys[node] = key;
+        values[node] = value;
+        setRed(node);
+        size++;
+        return node;
+    }
+
+    /**
+     * 回收结点下标，清空key和value引用以免阻止GC
+     */
+    private void release(int node) {
+        keys[node] = null;
+        values[node] = null;
+        setBlack(node);
+        left[node] = free;
+        free = node;
+        size--;
+    }
+
+    private void grow() {
+        int length = keys.length << 1;
+        parent = Arrays.copyOf(parent, length);
+        left = Arrays.copyOf(left, length);
+        right = Arrays.copyOf(right, length);
+        red = Arrays.copyOf(red, (length + 63) >>> 6);
+        keys = Arrays.copyOf(keys, length);
+        values = Arrays.copyOf(values, length);
+    }
+
+
+    /**
+     * <p>检查全部不变式，O(capacity)，供差分测试在修改后调用
+     * <p>nil为黑色且未被改写；根为黑色且parent为nil；没有连续的红结点；黑高相同；parent下标正确；中序严格升序；
+     * <p>空闲链表无环，链上的下标都在已用范围内、为黑色且已清空key与value；树中结点与空闲结点恰好覆盖全部已用下标，
+     * 从未使用过的下标颜色位为0；size正确
+     * @throws IllegalStateException 被破坏的不变式
+     */
+    void checkInvariants() {
+        if (isRed(NIL) || parent[NIL] != NIL || left[NIL] != NIL || right[NIL] != NIL || keys[NIL] != null)
+            throw new IllegalStateException("nil slot was modified");
+        if (root != NIL && parent[root] != NIL)
+            throw new IllegalStateException("root " + keys[root] + " has a parent");
+        if (isRed(root))
+            throw new IllegalStateException("root " + keys[root] + " is red");
+
+        boolean[] used = new boolean[next];
+        int[] count = new int[1];
+        checkInvariants(root, null, null, used, count);
+        if (count[0] != size)
+            throw new IllegalStateException("size is " + size + " but the tree has " + count[0] + " nodes");
+
+        int freeCount = 0;
+        for (int node = free; node != NIL; node = left[node]) {
+            if (node < 0 || node >= next)
+                throw new IllegalStateException("free index " + node + " is out of the used range " + next);
+            if (used[node])
+                throw new IllegalStateException("index " + node + " is both in the tree and free, or the free list has a cycle");
+            used[node] = true;
+            if (isRed(node) || keys[node] != null || values[node] != null)
+                throw new IllegalStateException("free index " + node + " was not cleared");
+            freeCount++;
+        }
+        if (size + freeCount != next - 1)
+            throw new IllegalStateException(size + " nodes and " + freeCount + " free indexes do not cover " + (next - 1) + " used indexes");
+        for (int node = next; node < red.length << 6; node++)
+            if (isRed(node))
+                throw new IllegalStateException("unused index " + node + " has its color bit set");
+    }
+
+    /**
+     * 检查以node为根的子树，key必须落在 (lo, hi) 内，null表示不设界
+     * @return 子树的黑高（nil为1）
+     */
+    private int checkInvariants(int node, K lo, K hi, boolean[] used, int[] count) {
+        if (node == NIL)
+            return 1;
+        if (node < 0 || node >= next || used[node])
+            throw new IllegalStateException("index " + node + " is out of range or reachable twice");
+        used[node] = true;
+        count[0]++;
+
+        K key = (K) keys[node];
+        if (lo != null && key.compareTo(lo) <= 0 || hi != null && key.compareTo(hi) >= 0)
+            throw new IllegalStateException("key " + key + " is out of order, expected in (" + lo + ", " + hi + ")");
+        if (left[node] != NIL && parent[left[node]] != node || right[node] != NIL && parent[right[node]] != node)
+            throw new IllegalStateException("child of " + key + " has a wrong parent index");
+        if (isRed(node) && (isRed(left[node]) || isRed(right[node])))
+            throw new IllegalStateException("red node " + key + " has a red child");
+
+        int l = checkInvariants(left[node], lo, key, used, count);
+        int r = checkInvariants(right[node], key, hi, used, count);
+        if (l != r)
+            throw new IllegalStateException("black height differs under " + key + ": " + l + " vs " + r);
+        return isRed(node) ? l : l + 1;
+    }
+
+
+    private boolean isRed(int node) {
+        return (red[node >>> 6] & (1L << node)) != 0;
+    }
+
+    private void setRed(int node) {
+        red[node >>> 6] |= 1L << node;
+    }
+
+    private void setBlack(int node) {
+        red[node >>> 6] &= ~(1L << node);
+    }
+
+    private void setColor(int node, boolean isRed) {
+        if (isRed)
+            setRed(node);
+        else
+            setBlack(node);
+    }
+
+}
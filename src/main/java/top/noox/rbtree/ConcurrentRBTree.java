@@ -0,0 +1,104 @@
+package top.noox.rbtree;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * <p>线程安全的红黑树，内部使用 {@link RBTree}，由 {@link StampedLock} 保护
+ * <p>写操作（插入、删除）持有写锁，互相排斥
+ * <p>查找先以乐观读方式无锁遍历，结束后校验期间是否有写入；校验失败再退化为读锁重新查找
+ * <p>乐观遍历可能看到旋转到一半的结构，因此遍历步数设有上限，超过上限同样按失败处理；遍历中抛出的异常也按失败处理
+ * <p>
+ * @param <K> key
+ * @param <V> value
+ */
+@SuppressWarnings("unchecked")
+public class ConcurrentRBTree<K extends Comparable<K>, V> {
+
+    /**
+     * 乐观遍历的最大步数，红黑树高度不超过2log(n+1)，int范围内的规模远小于此值
+     */
+    private static final int MAX_OPTIMISTIC_STEPS = 128;
+
+    /**
+     * 查找不到时的标记，用于区分value为null的结点
+     */
+    private static final Object ABSENT = new Object();
+
+    private final RBTree<K, V> tree = new RBTree<>();
+
+    private final StampedLock lock = new StampedLock();
+
+
+    public void insert(K key, V value) {
+        long stamp = lock.writeLock();
+        try {
+            tree.insert(key, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void delete(K key) {
+        long stamp = lock.writeLock();
+        try {
+            tree.delete(key);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 根据key查找value
+     * @param key   key
+     * @return  找到返回value，否则返回null
+     */
+    public V get(K key) {
+        Object value = lookup(key);
+        return value == ABSENT ? null : (V) value;
+    }
+
+    public boolean contains(K key) {
+        return lookup(key) != ABSENT;
+    }
+
+    /**
+     * <p>先乐观读，失败后加读锁查找
+     * <p>乐观遍历读到的结点可能正在被写线程修改（删除时在结点间复制key、新结点尚未安全发布），
+     * 每次调用compareTo前先校验，校验失败立即放弃；校验与读取之间仍有窗口，期间抛出的任何异常同样按失败处理
+     * @return  找到返回value（可能为null），否则返回ABSENT
+     */
+    private Object lookup(K key) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                RBTree.RBNode<K, V> node = tree.getRoot();
+                Object value = ABSENT;
+                int steps = 0;
+                while (node != null && steps++ < MAX_OPTIMISTIC_STEPS) {
+                    K nodeKey = node.getKey();
+                    if (!lock.validate(stamp))
+                        break;
+                    int cmp = key.compareTo(nodeKey);
+                    if (cmp == 0) {
+                        value = node.getValue();
+                        break;
+                    }
+                    node = cmp > 0 ? node.getRight() : node.getLeft();
+                }
+                //校验通过说明遍历期间没有写入，结果一致
+                if (steps <= MAX_OPTIMISTIC_STEPS && lock.validate(stamp))
+                    return value;
+            } catch (RuntimeException e) {
+                //读到了不一致的结点，退化为读锁
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            RBTree.RBNode<K, V> node = tree.find(key);
+            return node == null ? ABSENT : node.getValue();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package top.noox.rbtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>ConcurrentRBTree的并发压力测试，直接运行main，任何一项检查失败都会抛出AssertionError
+ * <p>写线程各自写不相交的key，反复删除与插入，使删除时在结点间复制key、旋转与新结点发布持续发生；
+ * 读线程同时以乐观读查找，检查：
+ * <p>1. 查找不抛出异常
+ * <p>2. 读到的value属于被查的key（value的低位编码了key），不会读到另一个结点的value
+ * <p>3. 预先插入且只被覆盖、从不删除的key总能查到
+ * <p>结束后逐个查找，树的内容必须等于各写线程本地模型的并集
+ * <p>参数：写线程数（默认2）、读线程数（默认2）、轮数（默认20）
+ */
+public class ConcurrentRBTreeStressTest {
+
+    /**
+     * value = 序号 &lt;&lt; KEY_BITS | key
+     */
+    private static final int KEY_BITS = 16;
+
+    private static final int KEYS = 1 << 12;
+
+    public static void main(String[] args) throws InterruptedException {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        for (int round = 0; round < rounds; round++)
+            round(writers, readers, round);
+        System.out.println("ok: " + rounds + " rounds, " + writers + " writers, " + readers + " readers");
+    }
+
+    private static void round(int writers, int readers, long seed) throws InterruptedException {
+        ConcurrentRBTree<Integer, Integer> tree = new ConcurrentRBTree<>();
+        //偶数key为稳定key：预先插入，之后只覆盖不删除
+        for (int key = 0; key < KEYS; key += 2)
+            tree.insert(key, key);
+
+        List<TreeMap<Integer, Integer>> models = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(writers);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        for (int t = 0; t < writers; t++) {
+            int id = t;
+            TreeMap<Integer, Integer> model = new TreeMap<>();
+            models.add(model);
+            workers.add(worker(failure, () -> {
+                Random random = new Random(seed * 31 + id);
+                await(start);
+                try {
+                    for (int i = 1; i <= 200000; i++) {
+                        //按线程号划分key，各线程互不相交
+                        int key = (random.nextInt(KEYS / writers) * writers + id);
+                        int value = (i << KEY_BITS) | key;
+                        if ((key & 1) == 1 && random.nextInt(2) == 0) {
+                            tree.delete(key);
+                            model.remove(key);
+                        } else {
+                            tree.insert(key, value);
+                            model.put(key, value);
+                        }
+                    }
+                } finally {
+                    writing.countDown();
+                }
+            }));
+        }
+        for (int t = 0; t < readers; t++) {
+            int id = t;
+            workers.add(worker(failure, () -> {
+                Random random = new Random(seed * 17 + id + 1000);
+                await(start);
+                while (writing.getCount() > 0) {
+                    int key = random.nextInt(KEYS);
+                    Integer value = tree.get(key);
+                    check(value == null || (value & ((1 << KEY_BITS) - 1)) == key,
+                            "get(" + key + ") returned the value of key " + (value == null ? -1 : value & ((1 << KEY_BITS) - 1)));
+                    check(value != null || (key & 1) == 1, "stable key " + key + " not found");
+                }
+            }));
+        }
+
+        for (Thread worker : workers)
+            worker.start();
+        start.countDown();
+        for (Thread worker : workers)
+            worker.join();
+        if (failure.get() != null)
+            throw new AssertionError("round " + seed + ": " + failure.get(), failure.get());
+
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for (int key = 0; key < KEYS; key += 2)
+            expected.put(key, key);
+        for (TreeMap<Integer, Integer> model : models)
+            expected.putAll(model);
+        for (int key = 0; key < KEYS; key++)
+            check(Objects.equals(expected.get(key), tree.get(key)), "get " + key + " after round " + seed);
+    }
+
+    private static Thread worker(AtomicReference<Throwable> failure, Runnable body) {
+        return new Thread(() -> {
+            try {
+                body.run();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,59 @@
+package top.noox.rbtree;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>写时复制的线程安全红黑树，当前版本是一棵 {@link PersistentRBTree}，通过 {@link AtomicReference} 发布
+ * <p>写操作在当前版本上路径复制出新树，再原子地替换根；读操作只读取一次引用，之后在不可变的树上查找，不加锁也不会重试
+ * <p>{@link #snapshot()} 返回当前版本本身，O(1)，之后的写入对快照不可见
+ * <p>面向单写多读：单个写线程时compareAndSet总是一次成功；多个写线程同时写入时，失败的一方基于最新版本重做，结果仍然正确
+ * <p>
+ * @param <K> key
+ * @param <V> value
+ */
+public class CopyOnWriteRBTree<K extends Comparable<K>, V> {
+
+    private final AtomicReference<PersistentRBTree<K, V>> root = new AtomicReference<>(PersistentRBTree.empty());
+
+
+    public void insert(K key, V value) {
+        root.updateAndGet(tree -> tree.insert(key, value));
+    }
+
+    public void delete(K key) {
+        root.updateAndGet(tree -> tree.delete(key));
+    }
+
+    /**
+     * 根据key查找value
+     * @param key   key
+     * @return  找到返回value，否则返回null
+     */
+    public V get(K key) {
+        return root.get().get(key);
+    }
+
+    public boolean contains(K key) {
+        return root.get().contains(key);
+    }
+
+    public int size() {
+        return root.get().size();
+    }
+
+    /**
+     * 当前版本的只读快照，O(1)
+     */
+    public PersistentRBTree<K, V> snapshot() {
+        return root.get();
+    }
+
+    /**
+     * 检查当前版本的全部不变式，见 PersistentRBTree.checkInvariants
+     * @throws IllegalStateException 被破坏的不变式
+     */
+    void checkInvariants() {
+        root.get().checkInvariants();
+    }
+
+}
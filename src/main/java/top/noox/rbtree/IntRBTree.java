@@ -0,0 +1,75 @@
+package top.noox.rbtree;
+
+/**
+ * <p>key为int的红黑树，插入、删除、查找的语义与 {@link RBTree} 一致
+ * <p>int扩展为long后顺序不变，直接委托给 {@link LongRBTree}：在压缩指针下结点对齐到同样大小，
+ * 单独保存int key并不省内存，不必再维护一份相同的实现
+ * <p>
+ * @param <V> value
+ */
+public class IntRBTree<V> {
+
+    private final LongRBTree<V> tree = new LongRBTree<>();
+
+
+    /**
+     * 中序遍历
+     */
+    public void inOrderPrint() {
+        tree.inOrderPrint();
+    }
+
+    /**
+     * 对外插入方法，key已存在时覆盖value
+     * @param key  key
+     * @param value value
+     */
+    public void insert(int key, V value) {
+        tree.insert(key, value);
+    }
+
+    public void delete(int key) {
+        tree.delete(key);
+    }
+
+    /**
+     * 根据key查找红黑树中结点
+     * @param key   key
+     * @return  找到返回结点，否则返回null
+     */
+    public LongRBTree.Node<V> find(int key) {
+        return tree.find(key);
+    }
+
+    /**
+     * 根据key查找value
+     * @param key   key
+     * @return  找到返回value，否则返回null
+     */
+    public V get(int key) {
+        return tree.get(key);
+    }
+
+    public boolean contains(int key) {
+        return tree.contains(key);
+    }
+
+    /**
+     * 结点总数，O(1)
+     */
+    public int size() {
+        return tree.size();
+    }
+
+    public LongRBTree.Node<V> getRoot() {
+        return tree.getRoot();
+    }
+
+    /**
+     * 检查全部不变式，见 LongRBTree.checkInvariants
+     * @throws IllegalStateException 被破坏的不变式
+     */
+    void checkInvariants() {
+        tree.checkInvariants();
+    }
+}
@@ -0,0 +1,38 @@
+package top.noox.rbtree;
+
+/**
+ * <p>key的前缀，按无符号long比较，供 {@link RBTree} 缓存在结点中
+ * <p>前缀必须与树的排序一致：a &lt; b 时 prefix(a) 无符号不大于 prefix(b)；
+ * 两个前缀不相等时它们的大小关系就是key的大小关系，相等时再回退到完整比较
+ * <p>
+ * @param <K> key
+ */
+@FunctionalInterface
+public interface KeyPrefix<K> {
+
+    /**
+     * <p>String自然顺序的前缀：前4个char（8字节）按大端拼成long，不足4个时低位补0
+     * <p>String.compareTo按char的无符号值逐个比较，较短的串是较长串的前缀时更小，补0的前缀与之一致
+     */
+    KeyPrefix<String> STRING = key -> {
+        long prefix = 0;
+        int n = Math.min(key.length(), 4);
+        for (int i = 0; i < n; i++)
+            prefix |= (long) key.charAt(i) << (48 - 16 * i);
+        return prefix;
+    };
+
+    /**
+     * <p>byte[]按无符号字节逐个比较（较短的串是较长串的前缀时更小）的前缀：前8个字节按大端拼成long，不足8个时低位补0
+     * <p>byte[]不是Comparable，树需要同时传入按同样顺序比较的Comparator
+     */
+    KeyPrefix<byte[]> BYTES = key -> {
+        long prefix = 0;
+        int n = Math.min(key.length, 8);
+        for (int i = 0; i < n; i++)
+            prefix |= (key[i] & 0xFFL) << (56 - 8 * i);
+        return prefix;
+    };
+
+    long prefix(K key);
+}
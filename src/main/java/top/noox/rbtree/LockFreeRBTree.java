@@ -0,0 +1,273 @@
+package top.noox.rbtree;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * <p>无锁（lock-free）的线程安全有序树，读多写少与写竞争激烈的场景都不阻塞
+ * <p>两层结构：上层是按key范围切分的不可变目录，下层每个叶子是一棵 {@link PersistentRBTree}，由CAS替换叶子的根来完成更新
+ * <p>不同叶子上的写入互不干扰，写吞吐量随线程数增长；同一叶子上的冲突只会使失败的一方在新版本上重做
+ * <p>查找是wait-free的：读一次目录、二分定位叶子、读一次叶子的根，然后在不可变的树上查找，步数有上界
+ * <p>叶子超过maxLeafSize时分裂：先用CAS把叶子冻结，此后任何线程遇到冻结的叶子都会协助完成分裂（建出两半并CAS替换目录），
+ * 所以分裂线程被挂起也不会阻塞其他线程
+ * <p>平衡保证：目录二分O(log 叶子数)，叶子是红黑树，高度不超过2log(maxLeafSize+1)，整体仍是O(log n)；叶子只分裂不合并，删空的叶子在目录中占一个位置
+ * <p>
+ * @param <K> key
+ * @param <V> value
+ */
+@SuppressWarnings("unchecked")
+public class LockFreeRBTree<K extends Comparable<K>, V> {
+
+    private static final int DEFAULT_MAX_LEAF_SIZE = 1 << 10;
+
+    private final int maxLeafSize;
+
+    private final AtomicReference<Directory<K, V>> directory;
+
+
+    public LockFreeRBTree() {
+        this(DEFAULT_MAX_LEAF_SIZE);
+    }
+
+    /**
+     * @param maxLeafSize 叶子的最大结点数，越小冲突越少但目录越大
+     */
+    public LockFreeRBTree(int maxLeafSize) {
+        if (maxLeafSize < 2)
+            throw new IllegalArgumentException("maxLeafSize must be at least 2");
+        this.maxLeafSize = maxLeafSize;
+        Leaf<K, V> leaf = new Leaf<>(null, PersistentRBTree.<K, V>empty());
+        this.directory = new AtomicReference<>(new Directory<>((K[]) new Comparable[]{null}, new Leaf[]{leaf}));
+    }
+
+
+    /**
+     * 根据key查找value，wait-free
+     * @param key   key
+     * @return  找到返回value，否则返回null
+     */
+    public V get(K key) {
+        return leafOf(key).tree().get(key);
+    }
+
+    public boolean contains(K key) {
+        return leafOf(key).tree().contains(key);
+    }
+
+    private Leaf<K, V> leafOf(K key) {
+        Directory<K, V> dir = directory.get();
+        return dir.leaves[dir.indexOf(key)];
+    }
+
+    /**
+     * 结点总数，各叶子分别读取，并发修改时不是同一时刻的精确值
+     */
+    public int size() {
+        int size = 0;
+        for (Leaf<K, V> leaf : directory.get().leaves)
+            size += leaf.tree().size();
+        return size;
+    }
+
+    /**
+     * 叶子个数
+     */
+    public int leafCount() {
+        return directory.get().leaves.length;
+    }
+
+    /**
+     * 按key升序遍历所有结点
+     * <p>每个叶子内部是一致的快照，不同叶子之间不是同一时刻的快照；遍历期间一直存在的key一定会被访问到，且只访问一次
+     * @param action 对每个key、value的处理
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Leaf<K, V> leaf : directory.get().leaves)
+            for (Map.Entry<K, V> entry : leaf.tree())
+                action.accept(entry.getKey(), entry.getValue());
+    }
+
+
+    /**
+     * 对外插入方法，key已存在时覆盖value
+     * @param key  key
+     * @param value value
+     */
+    public void insert(K key, V value) {
+        update(key, tree -> tree.insert(key, value));
+    }
+
+    public void delete(K key) {
+        update(key, tree -> tree.delete(key));
+    }
+
+    /**
+     * <p>在key所在叶子上执行更新，CAS失败时基于叶子的新版本重做
+     * <p>CAS成功即线性化点：叶子未冻结说明它仍在当前目录中；树没有变化时以读取叶子根的时刻为线性化点
+     */
+    private void update(K key, UnaryOperator<PersistentRBTree<K, V>> operation) {
+        while (true) {
+            Leaf<K, V> leaf = leafOf(key);
+            Object state = leaf.state.get();
+            if (state instanceof Split) {
+                help((Split<K, V>) state);
+                continue;
+            }
+
+            PersistentRBTree<K, V> tree = (PersistentRBTree<K, V>) state;
+            PersistentRBTree<K, V> updated = operation.apply(tree);
+            if (updated == tree)
+                return;
+            if (leaf.state.compareAndSet(tree, updated)) {
+                if (updated.size() > maxLeafSize)
+                    split(leaf, updated);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 冻结叶子并完成分裂；冻结失败说明叶子已被其他线程修改，由那个线程判断是否需要分裂
+     */
+    private void split(Leaf<K, V> leaf, PersistentRBTree<K, V> tree) {
+        Split<K, V> split = new Split<>(leaf, tree);
+        if (leaf.state.compareAndSet(tree, split))
+            help(split);
+    }
+
+    /**
+     * 协助完成分裂：用两半替换目录中被冻结的叶子，目录已不含该叶子时说明其他线程已完成
+     */
+    private void help(Split<K, V> split) {
+        Halves<K, V> halves = split.halves();
+        Leaf<K, V> leaf = split.leaf;
+        while (true) {
+            Directory<K, V> dir = directory.get();
+            int i = leaf.low == null ? 0 : dir.indexOf(leaf.low);
+            if (dir.leaves[i] != leaf)
+                return;
+            if (directory.compareAndSet(dir, dir.replace(i, halves)))
+                return;
+        }
+    }
+
+
+    /**
+     * 不可变的目录：leaves[i] 保存 [lows[i], lows[i+1]) 内的key，lows[0]为null表示不设下界
+     */
+    private static final class Directory<K extends Comparable<K>, V> {
+
+        private final K[] lows;
+
+        private final Leaf<K, V>[] leaves;
+
+        Directory(K[] lows, Leaf<K, V>[] leaves) {
+            this.lows = lows;
+            this.leaves = leaves;
+        }
+
+        /**
+         * 二分查找key所在叶子：除lows[0]外不大于key的下界个数
+         */
+        int indexOf(K key) {
+            int lo = 1, hi = lows.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (lows[mid].compareTo(key) <= 0)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            return lo - 1;
+        }
+
+        /**
+         * 把第i个叶子替换为两半，返回新目录
+         */
+        Directory<K, V> replace(int i, Halves<K, V> halves) {
+            int n = leaves.length;
+            K[] newLows = Arrays.copyOf(lows, n + 1);
+            Leaf<K, V>[] newLeaves = Arrays.copyOf(leaves, n + 1);
+            System.arraycopy(lows, i + 1, newLows, i + 2, n - i - 1);
+            System.arraycopy(leaves, i + 1, newLeaves, i + 2, n - i - 1);
+            newLows[i + 1] = halves.right.low;
+            newLeaves[i] = halves.left;
+            newLeaves[i + 1] = halves.right;
+            return new Directory<>(newLows, newLeaves);
+        }
+    }
+
+    private static final class Leaf<K extends Comparable<K>, V> {
+
+        /**
+         * 叶子的下界（包含），null表示不设下界
+         */
+        private final K low;
+
+        /**
+         * 当前的 {@link PersistentRBTree}，冻结后换成 {@link Split}，不再改变
+         */
+        private final AtomicReference<Object> state;
+
+        Leaf(K low, PersistentRBTree<K, V> tree) {
+            this.low = low;
+            this.state = new AtomicReference<>(tree);
+        }
+
+        /**
+         * 叶子当前的树；已冻结时返回冻结时的树，替换完成前该范围内不会有新的写入
+         */
+        PersistentRBTree<K, V> tree() {
+            Object state = this.state.get();
+            return state instanceof Split ? ((Split<K, V>) state).frozen : (PersistentRBTree<K, V>) state;
+        }
+    }
+
+    /**
+     * 分裂描述：被冻结的叶子与冻结时的树，两半由第一个完成计算的线程发布，其余线程直接使用
+     */
+    private static final class Split<K extends Comparable<K>, V> {
+
+        private final Leaf<K, V> leaf;
+
+        private final PersistentRBTree<K, V> frozen;
+
+        private final AtomicReference<Halves<K, V>> halves = new AtomicReference<>();
+
+        Split(Leaf<K, V> leaf, PersistentRBTree<K, V> frozen) {
+            this.leaf = leaf;
+            this.frozen = frozen;
+        }
+
+        Halves<K, V> halves() {
+            Halves<K, V> h = halves.get();
+            if (h != null)
+                return h;
+
+            Map.Entry<K, V>[] entries = new Map.Entry[frozen.size()];
+            int n = 0;
+            for (Map.Entry<K, V> entry : frozen)
+                entries[n++] = entry;
+            int mid = n >>> 1;
+            h = new Halves<>(new Leaf<>(leaf.low, PersistentRBTree.buildFromSorted(entries, 0, mid)),
+                    new Leaf<>(entries[mid].getKey(), PersistentRBTree.buildFromSorted(entries, mid, n)));
+            return halves.compareAndSet(null, h) ? h : halves.get();
+        }
+    }
+
+    private static final class Halves<K extends Comparable<K>, V> {
+
+        private final Leaf<K, V> left;
+
+        private final Leaf<K, V> right;
+
+        Halves(Leaf<K, V> left, Leaf<K, V> right) {
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+}
@@ -0,0 +1,193 @@
+package top.noox.rbtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>LockFreeRBTree的并发压力测试，直接运行main，任何一项检查失败都会抛出AssertionError
+ * <p>1. 各线程写不相交的key，结束后树的内容必须等于各线程本地模型的并集
+ * <p>2. 线性一致性：少量key上并发插入（value全局唯一）、删除、查找，记录每个操作的开始与结束时间，
+ * 按寄存器语义检查每次查找读到的值：写入它的操作必须在查找结束前开始，且两者之间不能夹着另一个完整的写操作
+ * <p>两项都用很小的maxLeafSize，使分裂及协助分裂频繁发生
+ * <p>参数：线程数（默认4）、轮数（默认20）
+ */
+public class LockFreeRBTreeStressTest {
+
+    private static final int INSERT = 0, DELETE = 1, GET = 2;
+
+    /**
+     * 一次操作的记录，删除视为写入null
+     */
+    private static final class Op {
+        final int type;
+        final int key;
+        final Integer value;
+        final long start, end;
+
+        Op(int type, int key, Integer value, long start, long end) {
+            this.type = type;
+            this.key = key;
+            this.value = value;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        for (int round = 0; round < rounds; round++) {
+            disjointWriters(threads, round);
+            linearizability(threads, round);
+        }
+        System.out.println("ok: " + rounds + " rounds, " + threads + " threads");
+    }
+
+    private static void disjointWriters(int threads, long seed) throws InterruptedException {
+        LockFreeRBTree<Integer, Integer> tree = new LockFreeRBTree<>(8);
+        List<TreeMap<Integer, Integer>> models = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            TreeMap<Integer, Integer> model = new TreeMap<>();
+            models.add(model);
+            workers.add(new Thread(() -> {
+                Random random = new Random(seed * 31 + id);
+                await(start);
+                for (int i = 0; i < 20000; i++) {
+                    int key = random.nextInt(5000) * threads + id;
+                    if (random.nextInt(4) == 0) {
+                        tree.delete(key);
+                        model.remove(key);
+                    } else {
+                        tree.insert(key, i);
+                        model.put(key, i);
+                    }
+                }
+            }));
+        }
+        run(workers, start);
+
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for (TreeMap<Integer, Integer> model : models)
+            expected.putAll(model);
+        TreeMap<Integer, Integer> actual = new TreeMap<>();
+        Integer[] last = {null};
+        tree.forEach((key, value) -> {
+            check(last[0] == null || last[0] < key, "forEach out of order at " + key);
+            last[0] = key;
+            actual.put(key, value);
+        });
+        check(actual.equals(expected), "content differs from the per-thread models");
+        check(tree.size() == expected.size(), "size " + tree.size() + " != " + expected.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet())
+            check(entry.getValue().equals(tree.get(entry.getKey())), "get " + entry.getKey());
+    }
+
+    private static void linearizability(int threads, long seed) throws InterruptedException {
+        int keys = 32;
+        LockFreeRBTree<Integer, Integer> tree = new LockFreeRBTree<>(4);
+        AtomicInteger values = new AtomicInteger();
+        List<List<Op>> histories = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            List<Op> history = new ArrayList<>();
+            histories.add(history);
+            workers.add(new Thread(() -> {
+                Random random = new Random(seed * 17 + id);
+                await(start);
+                for (int i = 0; i < 5000; i++) {
+                    int key = random.nextInt(keys);
+                    int type = random.nextInt(3);
+                    long begin = System.nanoTime();
+                    Integer value = null;
+                    if (type == INSERT) {
+                        value = values.incrementAndGet();
+                        tree.insert(key, value);
+                    } else if (type == DELETE) {
+                        tree.delete(key);
+                    } else {
+                        value = tree.get(key);
+                    }
+                    history.add(new Op(type, key, value, begin, System.nanoTime()));
+                }
+            }));
+        }
+        run(workers, start);
+
+        for (int key = 0; key < keys; key++) {
+            List<Op> writes = new ArrayList<>(), reads = new ArrayList<>();
+            for (List<Op> history : histories)
+                for (Op op : history)
+                    if (op.key == key)
+                        (op.type == GET ? reads : writes).add(op);
+            for (Op read : reads)
+                check(explains(read, writes), "get(" + key + ") = " + read.value + " is not linearizable");
+        }
+    }
+
+    /**
+     * 是否存在一个写操作w能解释read读到的值：w与read值相同、w在read结束前开始、且没有另一个写操作完整地落在w结束与read开始之间
+     * <p>初始状态视为一次在所有操作之前完成的写入null
+     */
+    private static boolean explains(Op read, List<Op> writes) {
+        //在read开始前已经完成的写操作中，开始时间最晚的两个，用于排除w自身
+        long latest = Long.MIN_VALUE, second = Long.MIN_VALUE;
+        Op latestOp = null;
+        for (Op w : writes) {
+            if (w.end < read.start) {
+                if (w.start > latest) {
+                    second = latest;
+                    latest = w.start;
+                    latestOp = w;
+                } else if (w.start > second) {
+                    second = w.start;
+                }
+            }
+        }
+
+        if (read.value == null && latestOp == null)
+            return true;
+        for (Op w : writes) {
+            if (w.start > read.end || (w.value == null ? read.value != null : !w.value.equals(read.value)))
+                continue;
+            long between = w == latestOp ? second : latest;
+            if (between <= w.end)
+                return true;
+        }
+        return false;
+    }
+
+
+    private static void run(List<Thread> workers, CountDownLatch start) throws InterruptedException {
+        for (Thread worker : workers)
+            worker.start();
+        start.countDown();
+        for (Thread worker : workers)
+            worker.join();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,482 @@
+package top.noox.rbtree;
+
+/**
+ * <p>key为long的红黑树，插入、删除、查找的语义与 {@link RBTree} 一致
+ * <p>key直接以基本类型保存在结点中，比较时不装箱，也不经过compareTo的虚调用
+ * <p>{@link IntRBTree} 委托给本类
+ * <p>
+ * @param <V> value
+ */
+public class LongRBTree<V> {
+
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
+    private Node<V> root;
+
+    private int size;
+
+
+    /**
+     * 中序遍历
+     */
+    public void inOrderPrint() {
+        inOrderPrint(root);
+    }
+
+    private void inOrderPrint(Node<V> root) {
+        if (root != null) {
+            inOrderPrint(root.left);
+            System.out.println(root);
+            inOrderPrint(root.right);
+        }
+    }
+
+
+    /**
+     * 对外插入方法，key已存在时覆盖value
+     * @param key  key
+     * @param value value
+     */
+    public void insert(long key, V value) {
+
+        Node<V> parent = null, x = this.root;
+
+        while (x != null) {
+            parent = x;
+            if (key == x.key) {
+                x.value = value;
+                return;
+            }
+            x = key > x.key ? x.right : x.left;
+        }
+
+        Node<V> node = new Node<>(key, value, RED);
+        size++;
+        node.parent = parent;
+        if (parent != null)
+            if (key > parent.key)
+                parent.right = node;
+            else
+                parent.left = node;
+        else    //首次插入
+            this.root = node;
+
+        insertFixUp(node);
+    }
+
+    /**
+     * 插入后修复红黑树平衡，各情景见 RBTree.insertFixUp，同样以循环实现：只有叔父双红时上溯到爷爷结点
+     * @param node 当前新插入结点
+     */
+    private void insertFixUp(Node<V> node) {
+        while (true) {
+            //情景1：当前结点为根
+            if (node.parent == null) {
+                node.color = BLACK;
+                return;
+            }
+
+            Node<V> parent = node.parent;
+            //情景3：父结点为黑色
+            if (parent.color == BLACK)
+                return;
+
+            //情景4：父结点为红色，爷爷结点存在
+            Node<V> gParent = parent.parent;
+            //父为爷的左孩子
+            if (parent == gParent.left) {
+                Node<V> uncle = gParent.right;
+
+                //叔父双红
+                if (isRed(uncle)) {
+                    parent.color = BLACK;
+                    uncle.color = BLACK;
+                    gParent.color = RED;
+                    node = gParent;
+                    continue;
+                }
+                //LR：父左旋转为LL
+                if (node == parent.right) {
+                    leftRotate(parent);
+                    parent = node;
+                }
+                //LL
+                parent.color = BLACK;
+                gParent.color = RED;
+                rightRotate(gParent);
+
+            //父为爷的右孩子
+            } else {
+                Node<V> uncle = gParent.left;
+
+                //叔父双红
+                if (isRed(uncle)) {
+                    parent.color = BLACK;
+                    uncle.color = BLACK;
+                    gParent.color = RED;
+                    node = gParent;
+                    continue;
+                }
+                //RL：父右旋转为RR
+                if (node == parent.left) {
+                    rightRotate(parent);
+                    parent = node;
+                }
+                //RR
+                parent.color = BLACK;
+                gParent.color = RED;
+                leftRotate(gParent);
+            }
+            return;
+        }
+    }
+
+    public void delete(long key) {
+        Node<V> node = find(key);
+        if (node == null) return;
+        delete(node);
+        size--;
+    }
+
+    /**
+     * 删除结点，各情景见 RBTree.delete
+     * @param node 要删除的结点
+     */
+    private void delete(Node<V> node) {
+
+        Node<V> parent = node.parent;
+
+        //单个红结点：直接清空父结点引用然后返回即可
+        if (isRed(node) && node.left == null && node.right == null) {
+            if (node == parent.left)
+                parent.left = null;
+            else
+                parent.right = null;
+            return;
+        }
+
+        //带有两个子树的结点：与前驱交换后删除前驱（前驱至多有一个左子，不会再走到这里）
+        if (node.left != null && node.right != null) {
+            Node<V> precursor = node.left;
+            while (precursor.right != null)
+                precursor = precursor.right;
+
+            node.key = precursor.key;
+            node.value = precursor.value;
+
+            delete(precursor);
+            return;
+        }
+
+        //带有一个子树的结点（必是黑父红子）：交换后删除红子
+        if (node.left != null) {
+            node.key = node.left.key;
+            node.value = node.left.value;
+            node.left = null;
+            return;
+        }
+        if (node.right != null) {
+            node.key = node.right.key;
+            node.value = node.right.value;
+            node.right = null;
+            return;
+        }
+
+        //单个黑结点：直接删除，删除后需要调整
+        if (parent == null) {
+            this.root = null;
+            return;
+        }
+        boolean isLeftChild = node == parent.left;
+        if (isLeftChild)
+            parent.left = null;
+        else
+            parent.right = null;
+
+        deleteFixUp(node, isLeftChild);
+    }
+
+    /**
+     * 修复删除后造成的可能的红黑树失衡，各情景见 RBTree.deleteFixUp，同样以循环实现
+     * @param node  当前被删除结点
+     * @param isLeftChild    被删除结点是否是左孩子
+     */
+    private void deleteFixUp(Node<V> node, boolean isLeftChild) {
+        while (true) {
+            //parent一定不为null且node一定为黑
+            Node<V> parent = node.parent;
+            Node<V> brother, nephew;
+
+            if (isLeftChild) {
+
+                brother = parent.right;
+                //红兄弟：左旋父后兄弟变为黑色，node不变进入下一轮
+                if (!isBlack(brother)) {
+                    leftRotate(parent);
+                    parent.color = RED;
+                    brother.color = BLACK;
+                    continue;
+                }
+
+                //黑兄弟，双黑侄：兄弟染红，父结点为红色或根时染黑结束，否则以父结点进入下一轮
+                if (!isRed(brother.right) && !isRed(brother.left)) {
+                    brother.color = RED;
+                    if (parent == this.root || isRed(parent)) {
+                        parent.color = BLACK;
+                        return;
+                    }
+                    node = parent;
+                    isLeftChild = parent.parent.left == parent;
+                    continue;
+                }
+
+                //黑兄弟，左红侄：右旋兄，转为右红侄
+                if (!isRed(brother.right)) {
+                    nephew = brother.left;
+                    rightRotate(brother);
+                    brother.color = RED;
+                    nephew.color = BLACK;
+                    brother = nephew;
+                }
+                //黑兄弟，右红侄
+                nephew = brother.right;
+                leftRotate(parent);
+                brother.color = parent.color;
+                parent.color = nephew.color = BLACK;
+                return;
+
+            } else {
+
+                brother = parent.left;
+                //红兄弟：右旋父后兄弟变为黑色，node不变进入下一轮
+                if (!isBlack(brother)) {
+                    rightRotate(parent);
+                    parent.color = RED;
+                    brother.color = BLACK;
+                    continue;
+                }
+
+                //黑兄弟，双黑侄
+                if (!isRed(brother.left) && !isRed(brother.right)) {
+                    brother.color = RED;
+                    if (parent == this.root || isRed(parent)) {
+                        parent.color = BLACK;
+                        return;
+                    }
+                    node = parent;
+                    isLeftChild = parent.parent.left == parent;
+                    continue;
+                }
+
+                //黑兄弟，右红侄：左旋兄，转为左红侄
+                if (!isRed(brother.left)) {
+                    nephew = brother.right;
+                    leftRotate(brother);
+                    brother.color = RED;
+                    nephew.color = BLACK;
+                    brother = nephew;
+                }
+                //黑兄弟，左红侄
+                nephew = brother.left;
+                rightRotate(parent);
+                brother.color = parent.color;
+                parent.color = nephew.color = BLACK;
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * 根据key查找红黑树中结点
+     * @param key   key
+     * @return  找到返回结点，否则返回null
+     */
+    public Node<V> find(long key) {
+
+        Node<V> node = this.root;
+
+        while (node != null) {
+            if (key == node.key)
+                return node;
+            node = key > node.key ? node.right : node.left;
+        }
+
+        return null;
+    }
+
+    /**
+     * 根据key查找value
+     * @param key   key
+     * @return  找到返回value，否则返回null
+     */
+    public V get(long key) {
+        Node<V> node = find(key);
+        return node == null ? null : node.value;
+    }
+
+    public boolean contains(long key) {
+        return find(key) != null;
+    }
+
+    /**
+     * 结点总数，O(1)
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * 左旋，见 RBTree.leftRotate
+     * @param x : 要进行左旋的结点
+     */
+    private void leftRotate(Node<V> x) {
+        Node<V> y = x.right;
+        x.right = y.left;
+        if (y.left != null)
+            y.left.parent = x;
+
+        y.parent = x.parent;
+        if (x.parent == null)
+            this.root = y;
+        else if (x == x.parent.left)
+            x.parent.left = y;
+        else
+            x.parent.right = y;
+
+        y.left = x;
+        x.parent = y;
+    }
+
+    /**
+     * 右旋，见 RBTree.rightRotate
+     * @param y : 要进行右旋的结点
+     */
+    private void rightRotate(Node<V> y) {
+        Node<V> x = y.left;
+        y.left = x.right;
+        if (x.right != null)
+            x.right.parent = y;
+
+        x.parent = y.parent;
+        if (y.parent == null)
+            this.root = x;
+        else if (y == y.parent.left)
+            y.parent.left = x;
+        else
+            y.parent.right = x;
+
+        x.right = y;
+        y.parent = x;
+    }
+
+
+    static class Node<V> {
+
+        private Node<V> parent;
+        private Node<V> left;
+        private Node<V> right;
+
+        private boolean color;
+        private long key;
+        private V value;
+
+
+        Node(long key, V value, boolean color) {
+            this.key = key;
+            this.value = value;
+            this.color = color;
+        }
+
+        @Override
+        public String toString() {
+            return "Node{" +
+                    "color=" + color +
+                    ", key=" + key +
+                    ", value=" + value +
+                    '}';
+        }
+
+        public Node<V> getLeft() {
+            return left;
+        }
+
+        public Node<V> getRight() {
+            return right;
+        }
+
+        public boolean isColor() {
+            return color;
+        }
+
+        public long getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+    }
+
+
+    private boolean isRed(Node<V> node) {
+        return node != null && node.color == RED;
+    }
+
+    //nil结点与黑结点都为false
+    private boolean isBlack(Node<V> node) {
+        return node != null && node.color == BLACK;
+    }
+
+    public Node<V> getRoot() {
+        return this.root;
+    }
+
+    /**
+     * <p>检查全部不变式，O(n)，供差分测试在修改后调用
+     * <p>根为黑色且没有父结点；没有连续的红结点；黑高相同；parent指针正确；中序严格升序；size正确
+     * @throws IllegalStateException 被破坏的不变式
+     */
+    void checkInvariants() {
+        if (this.root == null) {
+            if (size != 0)
+                throw new IllegalStateException("size is " + size + " but the tree is empty");
+            return;
+        }
+        if (this.root.parent != null)
+            throw new IllegalStateException("root " + this.root.key + " has a parent");
+        if (isRed(this.root))
+            throw new IllegalStateException("root " + this.root.key + " is red");
+        int[] count = new int[1];
+        checkInvariants(this.root, false, 0, false, 0, count);
+        if (count[0] != size)
+            throw new IllegalStateException("size is " + size + " but the tree has " + count[0] + " nodes");
+    }
+
+    /**
+     * 检查以node为根的子树，key必须落在 (lo, hi) 内，hasLo/hasHi为false时该方向不设界
+     * @return 子树的黑高（空结点为1）
+     */
+    private int checkInvariants(Node<V> node, boolean hasLo, long lo, boolean hasHi, long hi, int[] count) {
+        if (node == null)
+            return 1;
+        count[0]++;
+
+        long key = node.key;
+        if (hasLo && key <= lo || hasHi && key >= hi)
+            throw new IllegalStateException("key " + key + " is out of order");
+        if (node.left != null && node.left.parent != node || node.right != null && node.right.parent != node)
+            throw new IllegalStateException("child of " + key + " has a wrong parent pointer");
+        if (isRed(node) && (isRed(node.left) || isRed(node.right)))
+            throw new IllegalStateException("red node " + key + " has a red child");
+
+        int left = checkInvariants(node.left, hasLo, lo, true, key, count);
+        int right = checkInvariants(node.right, true, key, hasHi, hi, count);
+        if (left != right)
+            throw new IllegalStateException("black height differs under " + key + ": " + left + " vs " + right);
+        return isBlack(node) ? left + 1 : left;
+    }
+
+}
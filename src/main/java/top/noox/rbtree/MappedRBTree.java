@@ -0,0 +1,752 @@
+package top.noox.rbtree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>结点保存在内存映射文件中的红黑树，key与value均为定长的long，旋转与修复逻辑与 {@link RBTree} 一致
+ * <p>数据不占用Java堆，重启后直接重新映射文件即可使用，无需重建；查找直接读取映射区域，不做拷贝
+ * <p>
+ * <p>文件布局：
+ * <pre>
+ *  头部(64字节)：magic | version | root | next | free | size | capacity
+ *  结点(32字节)：parent(int) | left(int) | right(int) | color(int) | key(long) | value(long)
+ * </pre>
+ * <p>结点以下标引用，下标0保留为nil结点；删除后空出的下标通过left字段串成空闲链表
+ * <p>单个映射最大2GB，因此最多约6700万个结点
+ * <p>映射区的页何时写回由操作系统决定，进程崩溃或断电后文件可能只包含部分修改。
+ * 因此头部记录文件是否有未落盘的修改：第一次修改前标记为使用中并force，{@link #force()} 与 {@link #close()}
+ * 先force全部数据再标记为已关闭；只读的实例不改动标记，崩溃后文件仍可正常打开
+ * <p>打开仍标记为使用中的文件（上次修改后未正常关闭）时抛出IOException，可以改用 {@link #openAfterCrash(Path)}：
+ * 不变式成立时接受该文件
+ * <p>打开时对文件加锁，同一文件已被另一个实例（本进程或其他进程）打开时抛出IOException
+ */
+public class MappedRBTree implements Closeable {
+
+    private static final int NIL = 0;
+    private static final int RED = 1;
+    private static final int BLACK = 0;
+
+    private static final int MAGIC = 0x52425446;    //"RBTF"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int NODE_SIZE = 32;
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / NODE_SIZE;
+
+    //头部字段偏移
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_ROOT = 8;
+    private static final int H_NEXT = 12;
+    private static final int H_FREE = 16;
+    private static final int H_SIZE = 20;
+    private static final int H_CAPACITY = 24;
+    private static final int H_STATE = 28;
+
+    //头部的文件状态，旧文件此处为0，视为已正常关闭
+    private static final int STATE_CLOSED = 0;
+    private static final int STATE_OPEN = 1;
+
+    //结点字段偏移
+    private static final int N_PARENT = 0;
+    private static final int N_LEFT = 4;
+    private static final int N_RIGHT = 8;
+    private static final int N_COLOR = 12;
+    private static final int N_KEY = 16;
+    private static final int N_VALUE = 24;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    /**
+     * 本实例打开以来是否有修改尚未force，为true时头部标记为使用中
+     */
+    private boolean dirty;
+
+    private boolean closed;
+
+
+    /**
+     * 打开（不存在时创建）映射文件
+     * @param file 文件路径
+     * @throws IOException 文件读写失败，文件不是本格式，或上次未正常关闭
+     */
+    public MappedRBTree(Path file) throws IOException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param file 文件路径
+     * @param capacity 新建文件时预留的结点数，打开已有文件时忽略
+     * @throws IOException 文件读写失败，文件不是本格式，或上次未正常关闭
+     */
+    public MappedRBTree(Path file, int capacity) throws IOException {
+        this(file, capacity, false);
+    }
+
+    /**
+     * <p>打开上次修改后未正常关闭的文件：检查全部不变式，成立时接受该文件并标记为已关闭，否则抛出IOException
+     * <p>不变式只说明结构完整，最后一次force之后的修改可能只有一部分落盘，value也可能是旧值；
+     * 文件正常关闭时与普通的打开相同
+     * @param file 文件路径
+     * @throws IOException 文件读写失败，文件不是本格式，不变式不成立，或正被另一个实例使用
+     */
+    public static MappedRBTree openAfterCrash(Path file) throws IOException {
+        return new MappedRBTree(file, DEFAULT_CAPACITY, true);
+    }
+
+    private MappedRBTree(Path file, int capacity, boolean afterCrash) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            lock(file);
+            if (channel.size() == 0) {
+                int slots = Math.min(Math.max(capacity, 1) + 1, MAX_CAPACITY);
+                map(slots);
+                buffer.putInt(H_MAGIC, MAGIC);
+                buffer.putInt(H_VERSION, VERSION);
+                buffer.putInt(H_ROOT, NIL);
+                buffer.putInt(H_NEXT, 1);
+                buffer.putInt(H_FREE, NIL);
+                buffer.putInt(H_SIZE, 0);
+                buffer.putInt(H_CAPACITY, slots);
+                buffer.putInt(H_STATE, STATE_CLOSED);
+                buffer.force();
+            } else {
+                open(file, afterCrash);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 对整个文件加排他锁，同一进程内重复加锁抛出OverlappingFileLockException，也视为正被使用；锁随channel关闭释放
+     */
+    private void lock(Path file) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null)
+            throw new IOException("MappedRBTree file is in use by another instance: " + file);
+    }
+
+    /**
+     * 映射已有文件并检查头部，capacity与next必须落在映射的结点数之内
+     */
+    private void open(Path file, boolean afterCrash) throws IOException {
+        long slots = (channel.size() - HEADER_SIZE) / NODE_SIZE;
+        if (channel.size() < HEADER_SIZE + NODE_SIZE || slots > MAX_CAPACITY)
+            throw new IOException("not a MappedRBTree file: " + file);
+        map((int) slots);
+        if (buffer.getInt(H_MAGIC) != MAGIC || buffer.getInt(H_VERSION) != VERSION)
+            throw new IOException("not a MappedRBTree file: " + file);
+        int capacity = buffer.getInt(H_CAPACITY), next = buffer.getInt(H_NEXT);
+        if (capacity < 1 || capacity > slots || next < 1 || next > capacity)
+            throw new IOException("corrupt MappedRBTree header: capacity " + capacity + ", next " + next
+                    + ", " + slots + " slots mapped: " + file);
+
+        if (buffer.getInt(H_STATE) == STATE_CLOSED)
+            return;
+        if (!afterCrash)
+            throw new IOException("MappedRBTree file was not closed cleanly, use openAfterCrash to check and accept it: " + file);
+        try {
+            checkInvariants();
+        } catch (IllegalStateException | IndexOutOfBoundsException e) {
+            throw new IOException("MappedRBTree file is damaged: " + e.getMessage() + ": " + file, e);
+        }
+        buffer.putInt(H_STATE, STATE_CLOSED);
+        buffer.force();
+    }
+
+    private void map(int slots) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * NODE_SIZE);
+    }
+
+    public int size() {
+        ensureOpen();
+        return buffer.getInt(H_SIZE);
+    }
+
+    /**
+     * 将修改刷到磁盘，再把文件标记为已正常关闭，下一次修改前重新标记为使用中
+     */
+    public void force() {
+        ensureOpen();
+        buffer.force();
+        if (dirty) {
+            buffer.putInt(H_STATE, STATE_CLOSED);
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * 先force全部数据并标记为已正常关闭，再关闭文件；关闭后其他方法抛出IllegalStateException，重复关闭没有副作用
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        try {
+            force();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed)
+            throw new IllegalStateException("MappedRBTree is closed");
+    }
+
+    /**
+     * 第一次修改前把文件标记为使用中并落盘，保证崩溃后留下的部分修改能被发现
+     */
+    private void beginUpdate() {
+        ensureOpen();
+        if (!dirty) {
+            buffer.putInt(H_STATE, STATE_OPEN);
+            buffer.force();
+            dirty = true;
+        }
+    }
+
+
+    /**
+     * 中序遍历
+     */
+    public void inOrderPrint() {
+        ensureOpen();
+        inOrderPrint(root());
+    }
+
+    private void inOrderPrint(int node) {
+        if (node != NIL) {
+            inOrderPrint(left(node));
+            System.out.println("Node{color=" + isRed(node) + ", key=" + key(node) + ", value=" + value(node) + '}');
+            inOrderPrint(right(node));
+        }
+    }
+
+
+    /**
+     * 对外插入方法，key已存在时覆盖value
+     * @param key  key
+     * @param value value
+     * @throws IOException 扩容时重新映射失败
+     */
+    public void insert(long key, long value) throws IOException {
+        beginUpdate();
+
+        int p = NIL, x = root();
+
+        while (x != NIL) {
+            p = x;
+            long k = key(x);
+            if (key == k) {
+                setValue(x, value);
+                return;
+            }
+            x = key > k ? right(x) : left(x);
+        }
+
+        int node = allocate(key, value);
+        setParent(node, p);
+        if (p == NIL)   //首次插入
+            setRoot(node);
+        else if (key > key(p))
+            setRight(p, node);
+        else
+            setLeft(p, node);
+
+        insertFixUp(node);
+    }
+
+    /**
+     * 插入后修复红黑树平衡，各情景见 RBTree.insertFixUp，同样以循环实现：只有叔父双红时上溯到爷爷结点
+     * @param node 当前新插入结点
+     */
+    private void insertFixUp(int node) {
+        while (true) {
+            //情景1：当前结点为根
+            int p = parent(node);
+            if (p == NIL) {
+                setColor(node, BLACK);
+                return;
+            }
+            //情景3：父结点为黑色
+            if (!isRed(p))
+                return;
+
+            //情景4：父结点为红色，爷爷结点存在
+            int g = parent(p);
+            //父为爷的左孩子
+            if (p == left(g)) {
+                int uncle = right(g);
+
+                //叔父双红
+                if (isRed(uncle)) {
+                    setColor(p, BLACK);
+                    setColor(uncle, BLACK);
+                    setColor(g, RED);
+                    node = g;
+                    continue;
+                }
+                //LR：父左旋转为LL
+                if (node == right(p)) {
+                    leftRotate(p);
+                    p = node;
+                }
+                //LL
+                setColor(p, BLACK);
+                setColor(g, RED);
+                rightRotate(g);
+
+            //父为爷的右孩子
+            } else {
+                int uncle = left(g);
+
+                //叔父双红
+                if (isRed(uncle)) {
+                    setColor(p, BLACK);
+                    setColor(uncle, BLACK);
+                    setColor(g, RED);
+                    node = g;
+                    continue;
+                }
+                //RL：父右旋转为RR
+                if (node == left(p)) {
+                    rightRotate(p);
+                    p = node;
+                }
+                //RR
+                setColor(p, BLACK);
+                setColor(g, RED);
+                leftRotate(g);
+            }
+            return;
+        }
+    }
+
+    public void delete(long key) {
+        ensureOpen();
+        int node = find(key);
+        if (node == NIL) return;
+        beginUpdate();
+        delete(node);
+    }
+
+    /**
+     * 删除结点，各情景见 RBTree.delete
+     * @param node 要删除的结点
+     */
+    private void delete(int node) {
+
+        int p = parent(node);
+
+        //带有两个子树的结点：与前驱交换后转为删除前驱
+        if (left(node) != NIL && right(node) != NIL) {
+            int precursor = left(node);
+            while (right(precursor) != NIL)
+                precursor = right(precursor);
+
+            setKey(node, key(precursor));
+            setValue(node, value(precursor));
+
+            delete(precursor);
+            return;
+        }
+
+        //带有一个子树的结点（必是黑父红子）：交换后删除红子
+        int sun = left(node) != NIL ? left(node) : right(node);
+        if (sun != NIL) {
+            setKey(node, key(sun));
+            setValue(node, value(sun));
+            if (sun == left(node))
+                setLeft(node, NIL);
+            else
+                setRight(node, NIL);
+            release(sun);
+            return;
+        }
+
+        //叶子结点
+        if (p == NIL) {
+            setRoot(NIL);
+            release(node);
+            return;
+        }
+        boolean isLeftChild = node == left(p);
+        if (isLeftChild)
+            setLeft(p, NIL);
+        else
+            setRight(p, NIL);
+
+        //单个黑结点删除后需要调整，单个红结点直接删除即可
+        if (!isRed(node))
+            deleteFixUp(node, isLeftChild);
+        release(node);
+    }
+
+    /**
+     * 修复删除后造成的可能的红黑树失衡，各情景见 RBTree.deleteFixUp，同样以循环实现
+     * @param node  当前被删除结点（已摘除，parent字段仍保留）
+     * @param isLeftChild    被删除结点是否是左孩子
+     */
+    private void deleteFixUp(int node, boolean isLeftChild) {
+        while (true) {
+            int p = parent(node);
+            int brother, nephew;
+
+            if (isLeftChild) {
+
+                brother = right(p);
+                //红兄弟：左旋父后兄弟变为黑色，node不变进入下一轮
+                if (isRed(brother)) {
+                    leftRotate(p);
+                    setColor(p, RED);
+                    setColor(brother, BLACK);
+                    continue;
+                }
+
+                //黑兄弟，双黑侄：兄弟染红，父结点为红色或根时染黑结束，否则以父结点进入下一轮
+                if (!isRed(right(brother)) && !isRed(left(brother))) {
+                    setColor(brother, RED);
+                    if (p == root() || isRed(p)) {
+                        setColor(p, BLACK);
+                        return;
+                    }
+                    node = p;
+                    isLeftChild = left(parent(p)) == p;
+                    continue;
+                }
+
+                //黑兄弟，左红侄：右旋兄，转为右红侄
+                if (!isRed(right(brother))) {
+                    nephew = left(brother);
+                    rightRotate(brother);
+                    setColor(brother, RED);
+                    setColor(nephew, BLACK);
+                    brother = nephew;
+                }
+                //黑兄弟，右红侄
+                nephew = right(brother);
+                leftRotate(p);
+                setColor(brother, color(p));
+                setColor(p, BLACK);
+                setColor(nephew, BLACK);
+                return;
+
+            } else {
+
+                brother = left(p);
+                //红兄弟：右旋父后兄弟变为黑色，node不变进入下一轮
+                if (isRed(brother)) {
+                    rightRotate(p);
+                    setColor(p, RED);
+                    setColor(brother, BLACK);
+                    continue;
+                }
+
+                //黑兄弟，双黑侄
+                if (!isRed(left(brother)) && !isRed(right(brother))) {
+                    setColor(brother, RED);
+                    if (p == root() || isRed(p)) {
+                        setColor(p, BLACK);
+                        return;
+                    }
+                    node = p;
+                    isLeftChild = left(parent(p)) == p;
+                    continue;
+                }
+
+                //黑兄弟，右红侄：左旋兄，转为左红侄
+                if (!isRed(left(brother))) {
+                    nephew = right(brother);
+                    leftRotate(brother);
+                    setColor(brother, RED);
+                    setColor(nephew, BLACK);
+                    brother = nephew;
+                }
+                //黑兄弟，左红侄
+                nephew = left(brother);
+                rightRotate(p);
+                setColor(brother, color(p));
+                setColor(p, BLACK);
+                setColor(nephew, BLACK);
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * 根据key查找结点下标
+     * @param key   key
+     * @return  找到返回下标，否则返回NIL
+     */
+    private int find(long key) {
+        int node = root();
+        while (node != NIL) {
+            long k = key(node);
+            if (key == k)
+                return node;
+            node = key > k ? right(node) : left(node);
+        }
+        return NIL;
+    }
+
+    /**
+     * 根据key查找value
+     * @param key   key
+     * @param defaultValue  key不存在时的返回值
+     * @return  找到返回value，否则返回defaultValue
+     */
+    public long get(long key, long defaultValue) {
+        ensureOpen();
+        int node = find(key);
+        return node == NIL ? defaultValue : value(node);
+    }
+
+    public boolean contains(long key) {
+        ensureOpen();
+        return find(key) != NIL;
+    }
+
+
+    /**
+     * 左旋，见 RBTree.leftRotate
+     * @param x : 要进行左旋的结点
+     */
+    private void leftRotate(int x) {
+        int y = right(x);
+        int ly = left(y);
+        setRight(x, ly);
+        if (ly != NIL)
+            setParent(ly, x);
+
+        int p = parent(x);
+        setParent(y, p);
+        if (p == NIL)
+            setRoot(y);
+        else if (x == left(p))
+            setLeft(p, y);
+        else
+            setRight(p, y);
+
+        setLeft(y, x);
+        setParent(x, y);
+    }
+
+    /**
+     * 右旋，见 RBTree.rightRotate
+     * @param y : 要进行右旋的结点
+     */
+    private void rightRotate(int y) {
+        int x = left(y);
+        int rx = right(x);
+        setLeft(y, rx);
+        if (rx != NIL)
+            setParent(rx, y);
+
+        int p = parent(y);
+        setParent(x, p);
+        if (p == NIL)
+            setRoot(x);
+        else if (y == left(p))
+            setLeft(p, x);
+        else
+            setRight(p, x);
+
+        setRight(x, y);
+        setParent(y, x);
+    }
+
+
+    /**
+     * 分配一个红色结点，优先从空闲链表中取，没有空位时将文件扩大一倍并重新映射
+     */
+    private int allocate(long key, long value) throws IOException {
+        int node = buffer.getInt(H_FREE);
+        if (node != NIL) {
+            buffer.putInt(H_FREE, left(node));
+        } else {
+            node = buffer.getInt(H_NEXT);
+            int capacity = buffer.getInt(H_CAPACITY);
+            if (node == capacity) {
+                if (capacity == MAX_CAPACITY)
+                    throw new IOException("MappedRBTree is full: " + capacity + " nodes");
+                capacity = (int) Math.min((long) capacity << 1, MAX_CAPACITY);
+                map(capacity);
+                buffer.putInt(H_CAPACITY, capacity);
+            }
+            buffer.putInt(H_NEXT, node + 1);
+        }
+        setParent(node, NIL);
+        setLeft(node, NIL);
+        setRight(node, NIL);
+        setColor(node, RED);
+        setKey(node, key);
+        setValue(node, value);
+        buffer.putInt(H_SIZE, buffer.getInt(H_SIZE) + 1);
+        return node;
+    }
+
+    /**
+     * 回收结点下标，挂到空闲链表头
+     */
+    private void release(int node) {
+        setColor(node, BLACK);
+        setLeft(node, buffer.getInt(H_FREE));
+        buffer.putInt(H_FREE, node);
+        buffer.putInt(H_SIZE, buffer.getInt(H_SIZE) - 1);
+    }
+
+
+    /**
+     * <p>检查全部不变式，O(capacity)，供测试在修改后或重新打开后调用
+     * <p>nil为黑色且未被改写；根为黑色且parent为nil；颜色只取两种值；没有连续的红结点；黑高相同；parent下标正确；
+     * 中序严格升序；空闲链表无环且都在已用范围内；树中结点与空闲结点恰好覆盖全部已用下标；size正确
+     * @throws IllegalStateException 被破坏的不变式
+     */
+    void checkInvariants() {
+        ensureOpen();
+        int next = buffer.getInt(H_NEXT), capacity = buffer.getInt(H_CAPACITY);
+        if (next < 1 || next > capacity || (long) HEADER_SIZE + (long) capacity * NODE_SIZE > buffer.capacity())
+            throw new IllegalStateException("next " + next + " or capacity " + capacity + " is out of range");
+        if (isRed(NIL) || parent(NIL) != NIL || left(NIL) != NIL || right(NIL) != NIL)
+            throw new IllegalStateException("nil slot was modified");
+        int root = root();
+        if (root != NIL && parent(root) != NIL)
+            throw new IllegalStateException("root " + key(root) + " has a parent");
+        if (isRed(root))
+            throw new IllegalStateException("root " + key(root) + " is red");
+
+        boolean[] used = new boolean[next];
+        int[] count = new int[1];
+        checkInvariants(root, false, 0, false, 0, used, count);
+        if (count[0] != size())
+            throw new IllegalStateException("size is " + size() + " but the tree has " + count[0] + " nodes");
+
+        int freeCount = 0;
+        for (int node = buffer.getInt(H_FREE); node != NIL; node = left(node)) {
+            if (node < 0 || node >= next)
+                throw new IllegalStateException("free index " + node + " is out of the used range " + next);
+            if (used[node])
+                throw new IllegalStateException("index " + node + " is both in the tree and free, or the free list has a cycle");
+            used[node] = true;
+            freeCount++;
+        }
+        if (count[0] + freeCount != next - 1)
+            throw new IllegalStateException(count[0] + " nodes and " + freeCount + " free indexes do not cover " + (next - 1) + " used indexes");
+    }
+
+    /**
+     * 检查以node为根的子树，key必须落在 (lo, hi) 内，hasLo/hasHi为false时该方向不设界
+     * @return 子树的黑高（nil为1）
+     */
+    private int checkInvariants(int node, boolean hasLo, long lo, boolean hasHi, long hi, boolean[] used, int[] count) {
+        if (node == NIL)
+            return 1;
+        if (node < 0 || node >= used.length || used[node])
+            throw new IllegalStateException("index " + node + " is out of range or reachable twice");
+        used[node] = true;
+        count[0]++;
+
+        long key = key(node);
+        if (hasLo && key <= lo || hasHi && key >= hi)
+            throw new IllegalStateException("key " + key + " is out of order");
+        if (color(node) != RED && color(node) != BLACK)
+            throw new IllegalStateException("node " + key + " has color " + color(node));
+        if (left(node) != NIL && parent(left(node)) != node || right(node) != NIL && parent(right(node)) != node)
+            throw new IllegalStateException("child of " + key + " has a wrong parent index");
+        if (isRed(node) && (isRed(left(node)) || isRed(right(node))))
+            throw new IllegalStateException("red node " + key + " has a red child");
+
+        int l = checkInvariants(left(node), hasLo, lo, true, key, used, count);
+        int r = checkInvariants(right(node), true, key, hasHi, hi, used, count);
+        if (l != r)
+            throw new IllegalStateException("black height differs under " + key + ": " + l + " vs " + r);
+        return isRed(node) ? l : l + 1;
+    }
+
+
+    private static int offset(int node) {
+        return HEADER_SIZE + node * NODE_SIZE;
+    }
+
+    private int root() {
+        return buffer.getInt(H_ROOT);
+    }
+
+    private void setRoot(int node) {
+        buffer.putInt(H_ROOT, node);
+    }
+
+    private int parent(int node) {
+        return buffer.getInt(offset(node) + N_PARENT);
+    }
+
+    private void setParent(int node, int parent) {
+        buffer.putInt(offset(node) + N_PARENT, parent);
+    }
+
+    private int left(int node) {
+        return buffer.getInt(offset(node) + N_LEFT);
+    }
+
+    private void setLeft(int node, int left) {
+        buffer.putInt(offset(node) + N_LEFT, left);
+    }
+
+    private int right(int node) {
+        return buffer.getInt(offset(node) + N_RIGHT);
+    }
+
+    private void setRight(int node, int right) {
+        buffer.putInt(offset(node) + N_RIGHT, right);
+    }
+
+    private int color(int node) {
+        return buffer.getInt(offset(node) + N_COLOR);
+    }
+
+    private void setColor(int node, int color) {
+        buffer.putInt(offset(node) + N_COLOR, color);
+    }
+
+    //nil结点（下标0）始终为黑色
+    private boolean isRed(int node) {
+        return color(node) == RED;
+    }
+
+    private long key(int node) {
+        return buffer.getLong(offset(node) + N_KEY);
+    }
+
+    private void setKey(int node, long key) {
+        buffer.putLong(offset(node) + N_KEY, key);
+    }
+
+    private long value(int node) {
+        return buffer.getLong(offset(node) + N_VALUE);
+    }
+
+    private void setValue(int node, long value) {
+        buffer.putLong(offset(node) + N_VALUE, value);
+    }
+
+}
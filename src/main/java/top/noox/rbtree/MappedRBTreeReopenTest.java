@@ -0,0 +1,211 @@
+package top.noox.rbtree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * <p>MappedRBTree与TreeMap的随机差分测试，直接运行main，发现不一致或不变式被破坏时抛出AssertionError
+ * <p>从容量1开始，使扩容时的重新映射被覆盖；随机插入与删除，树较小时每次修改后检查不变式，
+ * 每隔一段操作close后重新打开，检查不变式并与模型比较：
+ * <p>情景1：正常关闭后重新打开 <span style="color:#4f86cd"> => 等于关闭前的模型，可以继续修改
+ * <p>情景2：有未force的修改时复制的文件（模拟崩溃） <span style="color:#4f86cd"> => 普通打开抛出IOException，
+ * openAfterCrash检查不变式后接受，内容等于模型
+ * <p>情景3：崩溃时的文件结构被破坏、头部的capacity超出文件 <span style="color:#4f86cd"> => openAfterCrash也抛出IOException，
+ * 失败的打开释放了文件锁，修好后可以打开
+ * <p>情景4：force之后、或重新打开后只读时复制的文件 <span style="color:#4f86cd"> => 可以正常打开
+ * <p>情景5：同一个文件已被打开时再次打开 <span style="color:#4f86cd"> => 抛出IOException
+ * <p>情景6：关闭之后 <span style="color:#4f86cd"> => 读写都抛出IllegalStateException，重复close没有副作用
+ * <p>参数：操作次数（默认2000000）、随机种子（默认0）
+ */
+public class MappedRBTreeReopenTest {
+
+    private static final int[] RANGES = {16, 1 << 10, 1 << 16};
+
+    private static final int[] INSERT_PERCENTS = {50, 70, 30};
+
+    private static final int PHASE = 1 << 16;
+
+    private static final int REOPEN_INTERVAL = 1 << 13;
+
+    private static final int SMALL = 1 << 8;
+
+    private static final long ABSENT = Long.MIN_VALUE;
+
+    public static void main(String[] args) throws IOException {
+        long operations = args.length > 0 ? Long.parseLong(args[0]) : 2_000_000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        Random random = new Random(seed);
+        Path dir = Files.createTempDirectory("mapped-rbtree");
+        Path file = dir.resolve("tree.rbt");
+        Path copy = dir.resolve("copy.rbt");
+
+        TreeMap<Long, Long> model = new TreeMap<>();
+        MappedRBTree tree = new MappedRBTree(file, 1);
+        int reopens = 0;
+        for (long done = 0; done < operations; done++) {
+            long phase = done / PHASE;
+            int range = RANGES[(int) (phase % RANGES.length)];
+            //乘以奇数打散为正负交错的long，检查有符号比较
+            long key = random.nextInt(range) * 0x9E3779B97F4A7C15L;
+            if (random.nextInt(100) < INSERT_PERCENTS[(int) (phase % INSERT_PERCENTS.length)]) {
+                tree.insert(key, done);
+                model.put(key, done);
+            } else {
+                tree.delete(key);
+                model.remove(key);
+            }
+            check(tree.size() == model.size(), "size " + tree.size() + " != " + model.size() + " at operation " + done);
+            if (model.size() <= SMALL)
+                checkInvariants(tree, "operation " + done);
+
+            if (done % REOPEN_INTERVAL == REOPEN_INTERVAL - 1) {
+                String when = "operation " + done;
+                Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+                rejected(copy, "a copy taken with unflushed changes");
+                MappedRBTree recovered = MappedRBTree.openAfterCrash(copy);
+                checkInvariants(recovered, "recovery after " + when);
+                compare(recovered, model, "recovery after " + when);
+                recovered.close();
+                new MappedRBTree(copy).close();
+
+                damage(file, copy, random, when);
+                rejected(file, "a file that is already open");
+
+                tree.force();
+                Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+                new MappedRBTree(copy).close();
+
+                tree.close();
+                tree.close();
+                closed(tree, when);
+                tree = new MappedRBTree(file);
+                reopens++;
+                checkInvariants(tree, "reopen after " + when);
+                compare(tree, model, "reopen after " + when);
+                //只读的实例崩溃不影响下次打开
+                Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+                new MappedRBTree(copy).close();
+                Files.delete(copy);
+            }
+        }
+        tree.close();
+        tree = new MappedRBTree(file);
+        compare(tree, model, "final reopen");
+        tree.close();
+
+        Files.delete(file);
+        Files.delete(dir);
+        System.out.println("ok: " + operations + " operations, " + reopens + " reopens");
+    }
+
+    private static void rejected(Path file, String what) {
+        try {
+            new MappedRBTree(file).close();
+        } catch (IOException expected) {
+            return;
+        }
+        throw new AssertionError("opened " + what + ": " + file);
+    }
+
+    /**
+     * 在崩溃时的副本上破坏结构或头部，检查openAfterCrash拒绝它，改回后又能打开（失败的打开没有留下文件锁）
+     */
+    private static void damage(Path file, Path copy, Random random, String when) throws IOException {
+        Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+        //头部的root在偏移8，capacity在偏移24；根为黑色，染红后不变式不成立
+        boolean header = random.nextBoolean();
+        int root = readInt(copy, 8);
+        if (!header && root == 0)
+            return;
+        int offset = header ? 24 : 64 + root * 32 + 12;
+        int original = readInt(copy, offset);
+        writeInt(copy, offset, header ? Integer.MAX_VALUE : 1);
+        boolean accepted = true;
+        try {
+            MappedRBTree.openAfterCrash(copy).close();
+        } catch (IOException expected) {
+            accepted = false;
+        }
+        check(!accepted, "accepted a damaged " + (header ? "header" : "tree") + " after " + when);
+        writeInt(copy, offset, original);
+        MappedRBTree.openAfterCrash(copy).close();
+    }
+
+    private static int readInt(Path file, int offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            channel.read(buffer, offset);
+            buffer.flip();
+            return buffer.order(ByteOrder.BIG_ENDIAN).getInt();
+        }
+    }
+
+    private static void writeInt(Path file, int offset, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4).putInt(value);
+            buffer.flip();
+            channel.write(buffer, offset);
+        }
+    }
+
+    /**
+     * 关闭后的读写都抛出IllegalStateException
+     */
+    private static void closed(MappedRBTree tree, String when) throws IOException {
+        int rejected = 0;
+        try {
+            tree.insert(1, 1);
+        } catch (IllegalStateException expected) {
+            rejected++;
+        }
+        try {
+            tree.delete(1);
+        } catch (IllegalStateException expected) {
+            rejected++;
+        }
+        try {
+            tree.get(1, ABSENT);
+        } catch (IllegalStateException expected) {
+            rejected++;
+        }
+        try {
+            tree.size();
+        } catch (IllegalStateException expected) {
+            rejected++;
+        }
+        check(rejected == 4, "only " + rejected + " of 4 calls were rejected after close at " + when);
+    }
+
+    private static void checkInvariants(MappedRBTree tree, String when) {
+        try {
+            tree.checkInvariants();
+        } catch (IllegalStateException e) {
+            throw new AssertionError(e.getMessage() + " after " + when, e);
+        }
+    }
+
+    /**
+     * size相等且模型中的每个键值对都能查到，树的内容就与模型相同
+     */
+    private static void compare(MappedRBTree tree, TreeMap<Long, Long> expected, String when) {
+        check(tree.size() == expected.size(), "size " + tree.size() + " != " + expected.size() + " after " + when);
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            long actual = tree.get(entry.getKey(), ABSENT);
+            check(actual == entry.getValue(), "get(" + entry.getKey() + ") = " + actual + " != " + entry.getValue() + " after " + when);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
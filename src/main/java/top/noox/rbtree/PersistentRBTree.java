@@ -0,0 +1,457 @@
+package top.noox.rbtree;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * <p>不可变（持久化）的红黑树，插入、删除不修改原树，而是返回一棵新树
+ * <p>采用路径复制：只复制从根到被修改结点路径上的O(log n)个结点，其余子树由新旧两棵树共享
+ * <p>结点不保存父指针，所有字段都是final，一棵树一经发布即可被任意多个线程无锁读取，不会看到修改到一半的结构
+ * <p>保存某一时刻的快照只需持有当时的树对象，O(1)；多线程下的根发布见 {@link CopyOnWriteRBTree}
+ * <p>插入按Okasaki的平衡方式处理双红，删除按Kahrs的方式在向下递归时借红，回溯时重新平衡，两者都不需要旋转父指针
+ * <p>
+ * @param <K> key
+ * @param <V> value
+ */
+public final class PersistentRBTree<K extends Comparable<K>, V> implements Iterable<Map.Entry<K, V>> {
+
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
+    private static final PersistentRBTree<?, ?> EMPTY = new PersistentRBTree<>(null, 0);
+
+    private final Node<K, V> root;
+
+    private final int size;
+
+
+    private PersistentRBTree(Node<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * 空树，所有空树共享同一个实例
+     */
+    @SuppressWarnings("unchecked")
+    public static <K extends Comparable<K>, V> PersistentRBTree<K, V> empty() {
+        return (PersistentRBTree<K, V>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public Node<K, V> getRoot() {
+        return root;
+    }
+
+
+    /**
+     * <p>由升序的键值对 [from, to) 直接构建，时间复杂度O(n)
+     * <p>按中序位置取中点递归建成完全平衡的树，只有最深一层不满时才染红，与 RBTree.buildFromSorted 相同
+     */
+    static <K extends Comparable<K>, V> PersistentRBTree<K, V> buildFromSorted(Map.Entry<K, V>[] entries, int from, int to) {
+        if (from >= to)
+            return empty();
+        return new PersistentRBTree<>(buildFromSorted(0, from, to - 1, redLevel(to - from), entries), to - from);
+    }
+
+    private static <K, V> Node<K, V> buildFromSorted(int level, int lo, int hi, int redLevel, Map.Entry<K, V>[] entries) {
+        if (lo > hi)
+            return null;
+
+        int mid = (lo + hi) >>> 1;
+        Node<K, V> left = buildFromSorted(level + 1, lo, mid - 1, redLevel, entries);
+        Node<K, V> right = buildFromSorted(level + 1, mid + 1, hi, redLevel, entries);
+        return new Node<>(level == redLevel ? RED : BLACK, left, entries[mid].getKey(), entries[mid].getValue(), right);
+    }
+
+    /**
+     * 完全平衡树中最深一层的层号（根为0），只有这一层不满时其上的结点才需要染红
+     */
+    private static int redLevel(int size) {
+        int level = 0;
+        for (int m = size - 1; m >= 0; m = m / 2 - 1)
+            level++;
+        return level;
+    }
+
+
+    /**
+     * 根据key查找结点
+     * @param key   key
+     * @return  找到返回结点，否则返回null
+     */
+    public Node<K, V> find(K key) {
+        Node<K, V> node = this.root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0)
+                return node;
+            node = cmp > 0 ? node.right : node.left;
+        }
+        return null;
+    }
+
+    /**
+     * 根据key查找value
+     * @param key   key
+     * @return  找到返回value，否则返回null
+     */
+    public V get(K key) {
+        Node<K, V> node = find(key);
+        return node == null ? null : node.value;
+    }
+
+    public boolean contains(K key) {
+        return find(key) != null;
+    }
+
+
+    /**
+     * 插入key，key已存在时覆盖value
+     * @param key  key
+     * @param value value
+     * @return  插入后的新树，key已存在且value相同时返回当前树
+     */
+    public PersistentRBTree<K, V> insert(K key, V value) {
+        Objects.requireNonNull(key);
+        Node<K, V> old = find(key);
+        if (old != null && old.value == value)
+            return this;
+        return new PersistentRBTree<>(blacken(insert(this.root, key, value)), old == null ? size + 1 : size);
+    }
+
+    /**
+     * <p>情景1：空位置 <span style="color:#4f86cd"> => 新建红结点
+     * <p>情景2：key相同 <span style="color:#4f86cd"> => 复制结点并替换value
+     * <p>情景3：黑结点 <span style="color:#4f86cd"> => 插入子树后balance，消除子树中可能出现的双红
+     * <p>情景4：红结点 <span style="color:#4f86cd"> => 插入子树后直接复制，双红交给上层的黑结点处理
+     */
+    private Node<K, V> insert(Node<K, V> node, K key, V value) {
+        if (node == null)
+            return new Node<>(RED, null, key, value, null);
+
+        int cmp = key.compareTo(node.key);
+        if (cmp == 0)
+            return new Node<>(node.color, node.left, key, value, node.right);
+
+        if (node.color == BLACK) {
+            if (cmp < 0)
+                return balance(insert(node.left, key, value), node.key, node.value, node.right);
+            return balance(node.left, node.key, node.value, insert(node.right, key, value));
+        }
+        if (cmp < 0)
+            return new Node<>(RED, insert(node.left, key, value), node.key, node.value, node.right);
+        return new Node<>(RED, node.left, node.key, node.value, insert(node.right, key, value));
+    }
+
+    /**
+     * 删除key
+     * @param key   key
+     * @return  删除后的新树，key不存在时返回当前树
+     */
+    public PersistentRBTree<K, V> delete(K key) {
+        if (find(key) == null)
+            return this;
+        if (size == 1)
+            return empty();
+        return new PersistentRBTree<>(blacken(delete(this.root, key)), size - 1);
+    }
+
+    /**
+     * <p>删除子树中的key，调用方保证key存在
+     * <p>从黑孩子一侧删除后该侧黑高少1，由balanceLeft/balanceRight补齐；从红孩子一侧删除不影响黑高
+     * <p>找到结点后把左右子树合并（fuse）代替该结点
+     */
+    private Node<K, V> delete(Node<K, V> node, K key) {
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            if (isBlack(node.left))
+                return balanceLeft(delete(node.left, key), node.key, node.value, node.right);
+            return new Node<>(RED, delete(node.left, key), node.key, node.value, node.right);
+        }
+        if (cmp > 0) {
+            if (isBlack(node.right))
+                return balanceRight(node.left, node.key, node.value, delete(node.right, key));
+            return new Node<>(RED, node.left, node.key, node.value, delete(node.right, key));
+        }
+        return fuse(node.left, node.right);
+    }
+
+
+    /**
+     * <p>以key为根组合左右子树并消除双红，结果的黑高比子树多1
+     * <p>情景1：左右孩子都红 <span style="color:#4f86cd"> => 根红，两孩子染黑
+     * <p>情景2：LL、LR、RR、RL双红 <span style="color:#4f86cd"> => 重组为红根黑孩子的三结点
+     * <p>情景3：没有双红 <span style="color:#4f86cd"> => 黑根
+     */
+    private Node<K, V> balance(Node<K, V> left, K key, V value, Node<K, V> right) {
+        if (isRed(left) && isRed(right))
+            return new Node<>(RED, blacken(left), key, value, blacken(right));
+
+        if (isRed(left)) {
+            //LL
+            if (isRed(left.left))
+                return new Node<>(RED, blacken(left.left), left.key, left.value,
+                        new Node<>(BLACK, left.right, key, value, right));
+            //LR
+            if (isRed(left.right))
+                return new Node<>(RED, new Node<>(BLACK, left.left, left.key, left.value, left.right.left),
+                        left.right.key, left.right.value,
+                        new Node<>(BLACK, left.right.right, key, value, right));
+        }
+        if (isRed(right)) {
+            //RR
+            if (isRed(right.right))
+                return new Node<>(RED, new Node<>(BLACK, left, key, value, right.left),
+                        right.key, right.value, blacken(right.right));
+            //RL
+            if (isRed(right.left))
+                return new Node<>(RED, new Node<>(BLACK, left, key, value, right.left.left),
+                        right.left.key, right.left.value,
+                        new Node<>(BLACK, right.left.right, right.key, right.value, right.right));
+        }
+        return new Node<>(BLACK, left, key, value, right);
+    }
+
+    /**
+     * <p>左子树黑高比右子树少1时重新组合
+     * <p>情景1：左子树根为红 <span style="color:#4f86cd"> => 染黑即补齐
+     * <p>情景2：黑兄弟 <span style="color:#4f86cd"> => 兄弟染红后balance
+     * <p>情景3：红兄弟（其左孩子必为黑） <span style="color:#4f86cd"> => 以兄弟的左孩子为新根，右侧染红后balance
+     */
+    private Node<K, V> balanceLeft(Node<K, V> left, K key, V value, Node<K, V> right) {
+        if (isRed(left))
+            return new Node<>(RED, blacken(left), key, value, right);
+        if (isBlack(right))
+            return balance(left, key, value, redden(right));
+        if (isRed(right) && isBlack(right.left))
+            return new Node<>(RED, new Node<>(BLACK, left, key, value, right.left.left),
+                    right.left.key, right.left.value,
+                    balance(right.left.right, right.key, right.value, redden(right.right)));
+        throw new IllegalStateException("red-black invariant violated");
+    }
+
+    /**
+     * 右子树黑高比左子树少1时重新组合，与balanceLeft对称
+     */
+    private Node<K, V> balanceRight(Node<K, V> left, K key, V value, Node<K, V> right) {
+        if (isRed(right))
+            return new Node<>(RED, left, key, value, blacken(right));
+        if (isBlack(left))
+            return balance(redden(left), key, value, right);
+        if (isRed(left) && isBlack(left.right))
+            return new Node<>(RED, balance(redden(left.left), left.key, left.value, left.right.left),
+                    left.right.key, left.right.value,
+                    new Node<>(BLACK, left.right.right, key, value, right));
+        throw new IllegalStateException("red-black invariant violated");
+    }
+
+    /**
+     * <p>合并被删除结点的左右子树（左子树的key都小于右子树），两棵子树黑高相同
+     * <p>情景1：一侧为空 <span style="color:#4f86cd"> => 取另一侧
+     * <p>情景2：同为红 / 同为黑 <span style="color:#4f86cd"> => 递归合并相邻的内侧子树，结果为红时提升为新根
+     * <p>情景3：一红一黑 <span style="color:#4f86cd"> => 红结点保留，其内侧子树与另一侧合并
+     */
+    private Node<K, V> fuse(Node<K, V> left, Node<K, V> right) {
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+
+        if (isRed(left) && isRed(right)) {
+            Node<K, V> inner = fuse(left.right, right.left);
+            if (isRed(inner))
+                return new Node<>(RED, new Node<>(RED, left.left, left.key, left.value, inner.left),
+                        inner.key, inner.value,
+                        new Node<>(RED, inner.right, right.key, right.value, right.right));
+            return new Node<>(RED, left.left, left.key, left.value,
+                    new Node<>(RED, inner, right.key, right.value, right.right));
+        }
+        if (isBlack(left) && isBlack(right)) {
+            Node<K, V> inner = fuse(left.right, right.left);
+            if (isRed(inner))
+                return new Node<>(RED, new Node<>(BLACK, left.left, left.key, left.value, inner.left),
+                        inner.key, inner.value,
+                        new Node<>(BLACK, inner.right, right.key, right.value, right.right));
+            return balanceLeft(left.left, left.key, left.value,
+                    new Node<>(BLACK, inner, right.key, right.value, right.right));
+        }
+        if (isRed(right))
+            return new Node<>(RED, fuse(left, right.left), right.key, right.value, right.right);
+        return new Node<>(RED, left.left, left.key, left.value, fuse(left.right, right));
+    }
+
+
+    /**
+     * 按key升序遍历，结点不保存父指针，借助显式栈
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new Iterator<Map.Entry<K, V>>() {
+
+            private final Deque<Node<K, V>> stack = new ArrayDeque<>();
+
+            {
+                pushLeft(root);
+            }
+
+            private void pushLeft(Node<K, V> node) {
+                for (; node != null; node = node.left)
+                    stack.push(node);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (stack.isEmpty())
+                    throw new NoSuchElementException();
+                Node<K, V> node = stack.pop();
+                pushLeft(node.right);
+                return node;
+            }
+        };
+    }
+
+
+    /**
+     * 不可变结点，setValue不受支持
+     */
+    public static final class Node<K, V> implements Map.Entry<K, V> {
+
+        private final Node<K, V> left;
+        private final Node<K, V> right;
+
+        private final boolean color;
+        private final K key;
+        private final V value;
+
+
+        Node(boolean color, Node<K, V> left, K key, V value, Node<K, V> right) {
+            this.color = color;
+            this.left = left;
+            this.key = key;
+            this.value = value;
+            this.right = right;
+        }
+
+        @Override
+        public String toString() {
+            return "Node{" +
+                    "color=" + color +
+                    ", key=" + key +
+                    ", value=" + value +
+                    '}';
+        }
+
+        public Node<K, V> getLeft() {
+            return left;
+        }
+
+        public Node<K, V> getRight() {
+            return right;
+        }
+
+        public boolean isColor() {
+            return color;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+    }
+
+
+    /**
+     * <p>检查全部不变式，O(n)，供测试调用
+     * <p>根为黑色；没有连续的红结点；从任一结点到其下各空结点的黑高相同；中序严格升序；size等于结点数
+     * @throws IllegalStateException 被破坏的不变式
+     */
+    void checkInvariants() {
+        if (isRed(this.root))
+            throw new IllegalStateException("root " + this.root.key + " is red");
+        int[] count = new int[1];
+        checkInvariants(this.root, null, null, count);
+        if (count[0] != size)
+            throw new IllegalStateException("size is " + size + " but the tree has " + count[0] + " nodes");
+    }
+
+    /**
+     * 检查以node为根的子树，key必须落在 (lo, hi) 内，null表示不设界
+     * @return 子树的黑高（空结点为1）
+     */
+    private int checkInvariants(Node<K, V> node, K lo, K hi, int[] count) {
+        if (node == null)
+            return 1;
+        count[0]++;
+
+        K key = node.key;
+        if (lo != null && key.compareTo(lo) <= 0 || hi != null && key.compareTo(hi) >= 0)
+            throw new IllegalStateException("key " + key + " is out of order, expected in (" + lo + ", " + hi + ")");
+        if (isRed(node) && (isRed(node.left) || isRed(node.right)))
+            throw new IllegalStateException("red node " + key + " has a red child");
+
+        int left = checkInvariants(node.left, lo, key, count);
+        int right = checkInvariants(node.right, key, hi, count);
+        if (left != right)
+            throw new IllegalStateException("black height differs under " + key + ": " + left + " vs " + right);
+        return isBlack(node) ? left + 1 : left;
+    }
+
+
+    private static boolean isRed(Node<?, ?> node) {
+        return node != null && node.color == RED;
+    }
+
+    //nil结点与红结点都为false
+    private static boolean isBlack(Node<?, ?> node) {
+        return node != null && node.color == BLACK;
+    }
+
+    private static <K, V> Node<K, V> blacken(Node<K, V> node) {
+        return node == null || node.color == BLACK ? node : new Node<>(BLACK, node.left, node.key, node.value, node.right);
+    }
+
+    private static <K, V> Node<K, V> redden(Node<K, V> node) {
+        return new Node<>(RED, node.left, node.key, node.value, node.right);
+    }
+
+}
@@ -0,0 +1,172 @@
+package top.noox.rbtree;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * <p>PersistentRBTree与CopyOnWriteRBTree的随机差分测试，直接运行main，发现不一致或不变式被破坏时抛出AssertionError
+ * <p>随机插入与删除，每次操作后比较size、get，树较小时检查不变式；key不存在时delete、key已存在且value为同一对象时insert
+ * 必须返回原树
+ * <p>每隔一段操作保留当前版本（PersistentRBTree本身，以及CopyOnWriteRBTree.snapshot()）及当时模型的副本，
+ * 定期检查所有保留的版本：不变式成立，内容仍等于保留时的模型，即之后的修改没有改动它们共享的结点
+ * <p>偶尔从某个保留的版本继续修改（分叉），或由当前内容buildFromSorted重建后继续修改
+ * <p>参数：操作次数（默认2000000）、随机种子（默认0）
+ */
+public class PersistentRBTreeVersionTest {
+
+    private static final int PHASE = 1 << 16;
+
+    private static final int[] RANGES = {16, 1 << 8, 1 << 12};
+
+    private static final int[] INSERT_PERCENTS = {50, 70, 30};
+
+    private static final int RETAINED = 32;
+
+    private static final int RETAIN_INTERVAL = 1 << 10;
+
+    private static final int VERIFY_INTERVAL = 1 << 12;
+
+    private static final int SMALL = 1 << 8;
+
+    /**
+     * 保留的一个版本与它当时的内容
+     */
+    private static final class Version {
+
+        final PersistentRBTree<Integer, Integer> tree;
+
+        final TreeMap<Integer, Integer> model;
+
+        final long at;
+
+        Version(PersistentRBTree<Integer, Integer> tree, TreeMap<Integer, Integer> model, long at) {
+            this.tree = tree;
+            this.model = new TreeMap<>(model);
+            this.at = at;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) {
+        long operations = args.length > 0 ? Long.parseLong(args[0]) : 2_000_000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        Random random = new Random(seed);
+
+        PersistentRBTree<Integer, Integer> tree = PersistentRBTree.empty();
+        TreeMap<Integer, Integer> model = new TreeMap<>();
+        CopyOnWriteRBTree<Integer, Integer> cow = new CopyOnWriteRBTree<>();
+        TreeMap<Integer, Integer> cowModel = new TreeMap<>();
+        List<Version> versions = new ArrayList<>();
+        int branches = 0, rebuilds = 0;
+
+        for (long done = 0; done < operations; done++) {
+            long phase = done / PHASE;
+            int key = random.nextInt(RANGES[(int) (phase % RANGES.length)]);
+            Integer value = (int) done;
+            if (random.nextInt(100) < INSERT_PERCENTS[(int) (phase % INSERT_PERCENTS.length)]) {
+                PersistentRBTree<Integer, Integer> next = tree.insert(key, value);
+                check(next != tree || model.get(key) == value, "insert(" + key + ") returned the same tree at operation " + done);
+                check(next.insert(key, value) == next, "inserting the same value copied the tree at operation " + done);
+                tree = next;
+                model.put(key, value);
+                cow.insert(key, value);
+                cowModel.put(key, value);
+            } else {
+                PersistentRBTree<Integer, Integer> next = tree.delete(key);
+                check((next == tree) == !model.containsKey(key), "delete(" + key + ") at operation " + done);
+                tree = next;
+                model.remove(key);
+                cow.delete(key);
+                cowModel.remove(key);
+            }
+            int probe = random.nextInt(RANGES[(int) (phase % RANGES.length)]);
+            check(equal(model.get(probe), tree.get(probe)), "get(" + probe + ") at operation " + done);
+            check(equal(cowModel.get(probe), cow.get(probe)), "CopyOnWriteRBTree get(" + probe + ") at operation " + done);
+            check(tree.size() == model.size(), "size " + tree.size() + " != " + model.size() + " at operation " + done);
+            check(cow.size() == cowModel.size(), "CopyOnWriteRBTree size at operation " + done);
+            if (model.size() <= SMALL) {
+                checkInvariants(tree::checkInvariants, "operation " + done);
+                checkInvariants(cow::checkInvariants, "CopyOnWriteRBTree operation " + done);
+            }
+
+            if (done % RETAIN_INTERVAL == RETAIN_INTERVAL - 1) {
+                retain(versions, new Version(tree, model, done), random);
+                retain(versions, new Version(cow.snapshot(), cowModel, done), random);
+            }
+            if (done % VERIFY_INTERVAL == VERIFY_INTERVAL - 1) {
+                for (Version version : versions)
+                    verify(version, done);
+                //从保留的版本分叉，之后的修改与原来的后继版本共享结点
+                if (random.nextInt(4) == 0 && !versions.isEmpty()) {
+                    Version base = versions.get(random.nextInt(versions.size()));
+                    tree = base.tree;
+                    model = new TreeMap<>(base.model);
+                    branches++;
+                }
+                //由升序内容直接建树，之后在建成的树上继续修改
+                if (random.nextInt(4) == 0) {
+                    Map.Entry<Integer, Integer>[] entries = model.entrySet().toArray(new Map.Entry[0]);
+                    tree = PersistentRBTree.buildFromSorted(entries, 0, entries.length);
+                    checkInvariants(tree::checkInvariants, "buildFromSorted at operation " + done);
+                    compare(tree, model, "buildFromSorted at operation " + done);
+                    rebuilds++;
+                }
+            }
+        }
+        for (Version version : versions)
+            verify(version, operations);
+        compare(tree, model, "the end");
+        compare(cow.snapshot(), cowModel, "the end");
+        System.out.println("ok: " + operations + " operations, " + versions.size() + " retained versions, "
+                + branches + " branches, " + rebuilds + " rebuilds");
+    }
+
+    /**
+     * 保留的版本已满时随机替换一个，使既有很早的版本也有较新的版本
+     */
+    private static void retain(List<Version> versions, Version version, Random random) {
+        if (versions.size() < RETAINED)
+            versions.add(version);
+        else
+            versions.set(random.nextInt(RETAINED), version);
+    }
+
+    private static void verify(Version version, long done) {
+        String when = "version from operation " + version.at + " checked at operation " + done;
+        checkInvariants(version.tree::checkInvariants, when);
+        compare(version.tree, version.model, when);
+    }
+
+    private static void compare(PersistentRBTree<Integer, Integer> tree, TreeMap<Integer, Integer> model, String when) {
+        check(tree.size() == model.size(), "size " + tree.size() + " != " + model.size() + " in " + when);
+        Iterator<Map.Entry<Integer, Integer>> actual = tree.iterator();
+        for (Map.Entry<Integer, Integer> expected : model.entrySet()) {
+            check(actual.hasNext(), "missing " + expected.getKey() + " in " + when);
+            Map.Entry<Integer, Integer> entry = actual.next();
+            check(entry.getKey().equals(expected.getKey()) && entry.getValue().equals(expected.getValue()),
+                    "entry " + entry + " != " + expected + " in " + when);
+        }
+        check(!actual.hasNext(), "extra entries in " + when);
+    }
+
+    private static void checkInvariants(Runnable checker, String when) {
+        try {
+            checker.run();
+        } catch (IllegalStateException e) {
+            throw new AssertionError(e.getMessage() + " in " + when, e);
+        }
+    }
+
+    private static boolean equal(Integer a, Integer b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
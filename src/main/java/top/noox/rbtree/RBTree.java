@@ -1,5 +1,30 @@
 package top.noox.rbtree;
 
+import top.noox.metrics.TreeMetrics;
+import top.noox.snapshot.Codec;
+import top.noox.snapshot.Codecs;
+import top.noox.snapshot.SnapshotInput;
+import top.noox.snapshot.SnapshotOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 
@@ -7,25 +32,86 @@ package top.noox.rbtree;
  * <p>创建RBTree，定义颜色，红色为true,黑色为false
  * <p>创建RBNode结点内部类
  * <p>辅助方法定义: parentOf(node)，isRed (node)，isBlack (node)，setRed(node)，setBlack(node)，inOrderPrint()
+ * <p>遍历与导航方法定义: iterator()，descendingIterator()，iterator(lo, hi)，floor/ceiling/higher/lower(key)
+ * <p>流方法定义: spliterator()，stream()，parallelStream()，按子树结点数对半拆分
  * <p>左旋方法定义: leftRotate(node)
  * <p>右旋方法定义: rightRotate(node)
  * <p>公开插入接口方法定义: insert(K key, v value)
  * <p>内部插入接口方法定义: insert(RBNode node)
  * <p>修正插入导致红黑树失衡的方法定义: insertFIxUp(RBNode node)
  * <p>测试红黑树正确性
+ * <p>顺序统计方法定义: size()，rank(key)，select(k)，countInRange(lo, hi)，依赖每个结点维护的子树结点数
+ * <p>热点路径计数: setMetrics(metrics)，记录比较、旋转、变色、修复轮数与insert/delete/find耗时，默认不记录
+ * <p>比较方式: 构造时可传入Comparator代替key的自然顺序，以及可选的 {@link KeyPrefix}，把key前缀缓存在结点中，前缀不同时不访问key对象
  * <p>
- * @param <K> key
+ * @param <K> key，没有传入Comparator时必须实现Comparable
  * @param <V> value
  */
 
 @SuppressWarnings("unchecked")
-public class RBTree<K extends Comparable<K>, V>{
+public class RBTree<K, V> implements Iterable<Map.Entry<K, V>> {
 
     private static final  boolean RED = true;
     private static final  boolean BLACK = false;
 
     private RBNode root;
 
+    /**
+     * 结构修改（增删结点）的次数，供迭代器检测并发修改
+     */
+    int modCount;
+
+    /**
+     * 调试监听器，默认为null即不做任何可视化，删除路径上不会产生额外的分配和输出
+     */
+    private RBTreeListener listener;
+
+    /**
+     * 热点路径计数，默认为空实现，JIT内联后没有开销
+     */
+    private TreeMetrics metrics = TreeMetrics.NOOP;
+
+    /**
+     * 当前这次插入或删除的修复轮数
+     */
+    private int fixUpRounds;
+
+    /**
+     * key的比较器，为null时按key的自然顺序
+     */
+    private final Comparator<? super K> comparator;
+
+    /**
+     * 结点中缓存的key前缀，为null时不缓存；前缀不同时比较只看前缀，不访问结点的key对象
+     */
+    private final KeyPrefix<? super K> keyPrefix;
+
+
+    /**
+     * 按key的自然顺序，key必须实现Comparable
+     */
+    public RBTree() {
+        this(null, null);
+    }
+
+    /**
+     * @param comparator key的比较器，为null时按key的自然顺序
+     */
+    public RBTree(Comparator<? super K> comparator) {
+        this(comparator, null);
+    }
+
+    /**
+     * <p>例：new RBTree&lt;String, V&gt;(null, KeyPrefix.STRING)，大多数比较在前4个char内就能分出大小
+     * <p>key不是Comparable时（如byte[]）必须传入comparator
+     * @param comparator key的比较器，为null时按key的自然顺序
+     * @param keyPrefix 结点中缓存的key前缀，必须与comparator的顺序一致，为null时不缓存
+     */
+    public RBTree(Comparator<? super K> comparator, KeyPrefix<? super K> keyPrefix) {
+        this.comparator = comparator;
+        this.keyPrefix = keyPrefix;
+    }
+
 
 
     /**
@@ -35,11 +121,26 @@ public class RBTree<K extends Comparable<K>, V>{
         inOrderPrint(root);
     }
 
+    /**
+     * 中序遍历以root为根的子树，借助父指针逐个找后继，不递归
+     */
     public void inOrderPrint(RBNode root) {
-        if (root != null) {
-            inOrderPrint(root.left);
-            System.out.println(root);
-            inOrderPrint(root.right);
+        if (root == null)
+            return;
+
+        RBNode last = root;
+        while (last.right != null)
+            last = last.right;
+
+        RBNode node = root;
+        while (node.left != null)
+            node = node.left;
+
+        while (true) {
+            System.out.println(node);
+            if (node == last)
+                return;
+            node = successor(node);
         }
     }
 
@@ -60,20 +161,453 @@ public class RBTree<K extends Comparable<K>, V>{
             while (pre.right != null) {
                 pre = pre.right;
             }
-        //左子树为空
+        //左子树为空：向上找到第一个以当前分支为右子树的祖先
         } else {
             RBNode parent = node.parent;
             RBNode child = node;
-            while (parent != null) {
+            while (parent != null && child == parent.left) {
                 child = parent;
                 parent = parent.parent;
             }
-            pre = child;
+            pre = parent;
         }
 
         return pre;
     }
 
+    /**
+     * 返回当前结点的后继结点
+     * @param node  当前结点
+     * @return  后继结点，没有时返回null
+     */
+    RBNode successor(RBNode node) {
+
+        if (node == null) return null;
+
+        RBNode next;
+        //右子树不为空
+        if (node.right != null) {
+            next = node.right;
+            while (next.left != null)
+                next = next.left;
+        //右子树为空：向上找到第一个以当前分支为左子树的祖先
+        } else {
+            RBNode parent = node.parent;
+            RBNode child = node;
+            while (parent != null && child == parent.right) {
+                child = parent;
+                parent = parent.parent;
+            }
+            next = parent;
+        }
+
+        return next;
+    }
+
+
+    /**
+     * <p>按key升序遍历，返回的Entry即树中结点，遍历过程不递归且不分配额外对象
+     * <p>因此Entry只在树的下一次修改之前有效：删除有两个（或一个红色）子结点的结点时，
+     * 会把前驱（或子结点）的key与value搬进这个结点，之前拿到的Entry随之变成另一个键值对
+     * <p>迭代器是fail-fast的：创建之后树被修改时，next抛出 {@link ConcurrentModificationException}
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator(first(), null, false);
+    }
+
+    /**
+     * 按key降序遍历，Entry的有效期与fail-fast行为同 {@link #iterator()}
+     */
+    public Iterator<Map.Entry<K, V>> descendingIterator() {
+        return new EntryIterator(last(), null, true);
+    }
+
+    /**
+     * 按key升序遍历 [lo, hi) 范围内的结点
+     * @param lo 下界（包含）
+     * @param hi 上界（不包含）
+     */
+    public Iterator<Map.Entry<K, V>> iterator(K lo, K hi) {
+        return new EntryIterator(ceilingNode(lo, true), hi, false);
+    }
+
+    /**
+     * 借助父指针逐个找后继（或前驱）的迭代器
+     */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+        private RBNode next;
+
+        /**
+         * 升序遍历的上界（不包含），null表示不限
+         */
+        private final K hi;
+
+        private final boolean descending;
+
+        private final int expectedModCount = modCount;
+
+        EntryIterator(RBNode first, K hi, boolean descending) {
+            this.hi = hi;
+            this.descending = descending;
+            this.next = bounded(first);
+        }
+
+        private RBNode bounded(RBNode node) {
+            if (node != null && hi != null && compare((K) node.key, hi) >= 0)
+                return null;
+            return node;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            RBNode node = next;
+            if (node == null)
+                throw new NoSuchElementException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            next = bounded(descending ? precursor(node) : successor(node));
+            return node;
+        }
+    }
+
+
+    /**
+     * <p>可拆分的遍历，供 {@link #parallelStream()} 使用
+     * <p>借助子树结点数按位置对半拆分：拆分点由select定位，O(log n)，两半大小精确已知
+     */
+    @Override
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        return new EntrySpliterator(null, 0, -1, 0);
+    }
+
+    public Stream<Map.Entry<K, V>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<Map.Entry<K, V>> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * 遍历升序位置 [index, fence) 内结点的Spliterator，遍历期间树被修改时抛出 {@link ConcurrentModificationException}
+     */
+    private class EntrySpliterator implements Spliterator<Map.Entry<K, V>> {
+
+        /**
+         * 位置index上的结点，null表示尚未定位
+         */
+        private RBNode current;
+
+        private int index;
+
+        /**
+         * 上界（不包含），-1表示尚未绑定到树，第一次使用时才确定
+         */
+        private int fence;
+
+        private int expectedModCount;
+
+        EntrySpliterator(RBNode current, int index, int fence, int expectedModCount) {
+            this.current = current;
+            this.index = index;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private int getFence() {
+            if (fence < 0) {
+                fence = size();
+                expectedModCount = modCount;
+            }
+            return fence;
+        }
+
+        @Override
+        public Spliterator<Map.Entry<K, V>> trySplit() {
+            int lo = index, mid = (lo + getFence()) >>> 1;
+            if (mid <= lo)
+                return null;
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            EntrySpliterator prefix = new EntrySpliterator(current, lo, mid, expectedModCount);
+            current = selectNode(mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+            Objects.requireNonNull(action);
+            if (index >= getFence())
+                return false;
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            RBNode node = current == null ? selectNode(index) : current;
+            current = successor(node);
+            index++;
+            action.accept((Map.Entry<K, V>) node);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Map.Entry<K, V>> action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            if (index >= hi)
+                return;
+            RBNode node = current == null ? selectNode(index) : current;
+            for (int i = index; i < hi; i++, node = successor(node))
+                action.accept((Map.Entry<K, V>) node);
+            index = hi;
+            current = null;
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        @Override
+        public long estimateSize() {
+            return getFence() - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.SORTED | Spliterator.ORDERED
+                    | Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+
+        @Override
+        public Comparator<? super Map.Entry<K, V>> getComparator() {
+            return entryComparator();
+        }
+    }
+
+
+    /**
+     * 最小key所在结点，空树返回null
+     */
+    RBNode first() {
+        RBNode node = this.root;
+        if (node != null)
+            while (node.left != null)
+                node = node.left;
+        return node;
+    }
+
+    /**
+     * 最大key所在结点，空树返回null
+     */
+    RBNode last() {
+        RBNode node = this.root;
+        if (node != null)
+            while (node.right != null)
+                node = node.right;
+        return node;
+    }
+
+    /**
+     * 不大于key的最大结点
+     */
+    public Map.Entry<K, V> floor(K key) {
+        return floorNode(key, true);
+    }
+
+    /**
+     * 小于key的最大结点
+     */
+    public Map.Entry<K, V> lower(K key) {
+        return floorNode(key, false);
+    }
+
+    /**
+     * 不小于key的最小结点
+     */
+    public Map.Entry<K, V> ceiling(K key) {
+        return ceilingNode(key, true);
+    }
+
+    /**
+     * 大于key的最小结点
+     */
+    public Map.Entry<K, V> higher(K key) {
+        return ceilingNode(key, false);
+    }
+
+    /**
+     * 向下查找时记录最后一次向左走的结点，即大于（或等于）key的最小结点
+     * @param inclusive 是否允许等于key
+     */
+    RBNode ceilingNode(K key, boolean inclusive) {
+        RBNode node = this.root, candidate = null;
+        long prefix = prefixOf(key);
+        while (node != null) {
+            int cmp = compare(key, prefix, node);
+            if (cmp == 0 && inclusive)
+                return node;
+            if (cmp < 0) {
+                candidate = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * 向下查找时记录最后一次向右走的结点，即小于（或等于）key的最大结点
+     * @param inclusive 是否允许等于key
+     */
+    RBNode floorNode(K key, boolean inclusive) {
+        RBNode node = this.root, candidate = null;
+        long prefix = prefixOf(key);
+        while (node != null) {
+            int cmp = compare(key, prefix, node);
+            if (cmp == 0 && inclusive)
+                return node;
+            if (cmp > 0) {
+                candidate = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return candidate;
+    }
+
+
+    /**
+     * <p>由升序数组直接构建红黑树，替换当前内容，时间复杂度O(n)
+     * <p>按中序位置取中点递归建成完全平衡的树，不做旋转；只有最后一层不满时，将最深一层染红，其余均为黑色
+     * @param keys 严格升序的key
+     * @param values 与keys一一对应的value，为null时全部value为null
+     */
+    public void buildFromSorted(K[] keys, V[] values) {
+        if (values != null && values.length != keys.length)
+            throw new IllegalArgumentException("keys and values differ in length");
+        for (int i = 1; i < keys.length; i++)
+            if (compare(keys[i], keys[i - 1]) <= 0)
+                throw new IllegalArgumentException("keys are not strictly ascending: " + keys[i]);
+        this.root = buildFromSorted(0, 0, keys.length - 1, redLevel(keys.length), keys, values);
+        modCount++;
+    }
+
+    /**
+     * 按中序位置取中点递归构建 [lo, hi] 区间
+     * @param level 当前层号
+     * @return 子树的根结点
+     */
+    private RBNode buildFromSorted(int level, int lo, int hi, int redLevel, K[] keys, V[] values) {
+        if (lo > hi)
+            return null;
+
+        int mid = (lo + hi) >>> 1;
+        RBNode node = newNode(keys[mid], values == null ? null : values[mid], level == redLevel ? RED : BLACK);
+        link(node, buildFromSorted(level + 1, lo, mid - 1, redLevel, keys, values),
+                buildFromSorted(level + 1, mid + 1, hi, redLevel, keys, values));
+        return node;
+    }
+
+    /**
+     * 由升序迭代器直接构建红黑树，替换当前内容，时间复杂度O(n)
+     * @param size 迭代器中的元素个数
+     * @param entries 按key严格升序的键值对
+     */
+    public void buildFromSorted(int size, Iterator<? extends Map.Entry<K, V>> entries) {
+        RBNode[] last = new RBNode[1];
+        this.root = buildFromSorted(0, 0, size - 1, redLevel(size), entries, last);
+        modCount++;
+    }
+
+    /**
+     * 按中序递归构建 [lo, hi] 区间，迭代器恰好按中序顺序被消费
+     * @param level 当前层号
+     * @param last 上一个构建出的结点，用于检查key是否严格升序
+     * @return 子树的根结点
+     */
+    private RBNode buildFromSorted(int level, int lo, int hi, int redLevel,
+                                   Iterator<? extends Map.Entry<K, V>> entries, RBNode[] last) {
+        if (lo > hi)
+            return null;
+
+        int mid = (lo + hi) >>> 1;
+        RBNode left = buildFromSorted(level + 1, lo, mid - 1, redLevel, entries, last);
+
+        Map.Entry<K, V> entry = entries.next();
+        if (last[0] != null && compare(entry.getKey(), (K) last[0].key) <= 0)
+            throw new IllegalArgumentException("keys are not strictly ascending: " + entry.getKey());
+        RBNode node = newNode(entry.getKey(), entry.getValue(), level == redLevel ? RED : BLACK);
+        last[0] = node;
+
+        link(node, left, buildFromSorted(level + 1, mid + 1, hi, redLevel, entries, last));
+        return node;
+    }
+
+    /**
+     * <p>把全部结点按key升序写成紧凑的二进制快照，不关闭流
+     * <p>key相对前一个key编码（数值写差值的变长整数、字符串写公共前缀），可用 {@link #readFrom} 以O(n)重建
+     * @param keyCodec key的编码，见 {@link Codecs}
+     * @param valueCodec value的编码，value可能为null时用 {@link Codecs#nullable}
+     */
+    public void writeTo(OutputStream out, Codec<? super K> keyCodec, Codec<? super V> valueCodec) throws IOException {
+        new SnapshotOutput(out).writeEntries(size(), iterator(), keyCodec, valueCodec);
+    }
+
+    public void writeTo(WritableByteChannel channel, Codec<? super K> keyCodec, Codec<? super V> valueCodec) throws IOException {
+        writeTo(Channels.newOutputStream(channel), keyCodec, valueCodec);
+    }
+
+    /**
+     * <p>读取 {@link #writeTo} 写出的快照，替换当前内容，边解码边用 {@link #buildFromSorted(int, Iterator)} 构建，时间复杂度O(n)
+     * <p>读取失败时当前内容不变；输入带缓冲，会从流中预读
+     * @param keyCodec 与写出时相同的key编码
+     * @param valueCodec 与写出时相同的value编码
+     * @throws IOException 读取失败、快照不完整、被损坏（长度越界、key不严格升序等）或不是本格式
+     */
+    public void readFrom(InputStream in, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        SnapshotInput input = new SnapshotInput(in);
+        long count = input.readHeader();
+        if (count < 0 || count > Integer.MAX_VALUE)
+            throw new IOException("invalid entry count: " + count);
+        try {
+            buildFromSorted((int) count, input.entries(count, keyCodec, valueCodec));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("corrupt snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    public void readFrom(ReadableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        readFrom(Channels.newInputStream(channel), keyCodec, valueCodec);
+    }
+
+    /**
+     * 完全平衡树中最深一层的层号（根为0），只有这一层不满时其上的结点才需要染红
+     */
+    private static int redLevel(int size) {
+        int level = 0;
+        for (int m = size - 1; m >= 0; m = m / 2 - 1)
+            level++;
+        return level;
+    }
+
+    private void link(RBNode node, RBNode left, RBNode right) {
+        node.left = left;
+        if (left != null)
+            left.parent = node;
+        node.right = right;
+        if (right != null)
+            right.parent = node;
+        updateSize(node);
+    }
+
 
     /**
      * 对外插入方法
@@ -82,20 +616,35 @@ public class RBTree<K extends Comparable<K>, V>{
      */
 
     public void insert(K key, V value) {
-        insert(new RBNode(key,value,RED));
+        long start = metrics.startTimer();
+        insert(newNode(key,value,RED));
+        metrics.record(TreeMetrics.Operation.INSERT, start);
     }
 
 
     private void insert(RBNode node) {
+        insert(this.root, node);
+    }
+
+    /**
+     * 从start开始向下寻找插入位置
+     * @param start 开始查找的结点，调用方保证key落在该子树的范围内；为null时说明树为空
+     * @param node 新结点
+     * @return 保存该key的结点（key已存在时为原结点）
+     */
+    private RBNode insert(RBNode start, RBNode node) {
 
-        RBNode parent = null, x = this.root;
+        RBNode parent = null, x = start;
+        int comparisons = 0, cmp = 0;
 
         while (x!= null) {
             parent = x;
-            int cmp = node.key.compareTo(x.key);
+            cmp = compare((K) node.key, node.prefix, x);
+            comparisons++;
             if (cmp == 0) {
                 x.value = node.value;
-                return;
+                metrics.comparisons(comparisons);
+                return x;
             }
             //当前结点key更大，需要到x的右子树寻找
             if (cmp > 0) {
@@ -106,16 +655,94 @@ public class RBTree<K extends Comparable<K>, V>{
         }
 
         node.parent = parent;
+        //最后一次比较的就是parent，直接按其结果挂到左边或右边
         if (parent != null)
-            if (node.key.compareTo(parent.key) > 0)
+            if (cmp > 0)
                 parent.right = node;
             else
                 parent.left = node;
-        else    //首次插入
+        else {  //首次插入：与自身比较一次，key的类型或null不被支持时立即失败，而不是留到下一次插入
+            compare((K) node.key, (K) node.key);
             this.root = node;
+        }
+
+        //先修正祖先的结点计数，修复过程中的旋转依赖子树计数正确
+        for (RBNode p = parent; p != null; p = p.parent)
+            p.size++;
+
+        metrics.comparisons(comparisons);
 
         //调用修复红黑树平衡的方法
+        fixUpRounds = 0;
         insertFixUp(node);
+        metrics.fixedUp(fixUpRounds);
+        modCount++;
+        return node;
+    }
+
+    /**
+     * <p>批量插入，结果与按原顺序逐个insert相同（同一key以最后一次为准）
+     * <p>先将批次按key稳定排序，之后每个key从上一个key所在结点回溯到包含它的最小子树再向下查找（finger search），
+     * 相邻key只需走很短的路径，不必每次从根结点开始
+     * @param keys  key
+     * @param values 与keys一一对应的value
+     */
+    public void insertAll(K[] keys, V[] values) {
+        if (values.length != keys.length)
+            throw new IllegalArgumentException("keys and values differ in length");
+
+        Map.Entry<K, V>[] batch = new Map.Entry[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            batch[i] = new AbstractMap.SimpleImmutableEntry<>(keys[i], values[i]);
+        Arrays.sort(batch, entryComparator());
+
+        RBNode finger = null;
+        for (Map.Entry<K, V> entry : batch) {
+            RBNode start = finger == null ? this.root : climb(finger, entry.getKey());
+            finger = insert(start, newNode(entry.getKey(), entry.getValue(), RED));
+        }
+    }
+
+    /**
+     * 批量删除，不存在的key会被忽略；与insertAll一样排序后按finger search查找
+     * @param keys  key
+     */
+    public void deleteAll(K[] keys) {
+        K[] batch = Arrays.copyOf(keys, keys.length);
+        Arrays.sort(batch, comparator);
+
+        RBNode finger = null;
+        for (K key : batch) {
+            RBNode node = find(finger == null ? this.root : climb(finger, key), key);
+            if (node == null)
+                continue;
+
+            RBNode parent = node.parent;
+            delete(node);
+            //结点若被摘除，其原父结点仍在树中，且所在子树覆盖被删key的位置
+            if (node == this.root || parent != null && (parent.left == node || parent.right == node))
+                finger = node;
+            else
+                finger = parent;
+        }
+    }
+
+    /**
+     * <p>从上一次操作的结点向上回溯，直到key落在当前子树的范围内
+     * <p>批次按key升序处理，key一定大于finger子树的下界，只需检查上界：
+     * 某结点是父结点的左孩子时，其子树的上界就是父结点的key
+     * @param finger 上一次操作的结点，必须仍在树中
+     * @param key 下一个key
+     * @return 可以从它开始向下查找的结点
+     */
+    private RBNode climb(RBNode finger, K key) {
+        RBNode x = finger;
+        while (x.parent != null) {
+            if (x == x.parent.left && compare(key, (K) x.parent.key) < 0)
+                break;
+            x = x.parent;
+        }
+        return x;
     }
 
     /**
@@ -140,93 +767,88 @@ public class RBTree<K extends Comparable<K>, V>{
      *         </ul>
      *     </ul>
      * </ul>
+     * <p>循环实现：只有情景4.1需要上溯到爷爷结点进入下一轮，其余情景至多两次旋转后结束
      *
      * @param node 当前新插入结点
      */
-
-
     private void insertFixUp(RBNode node) {
-        //情景1：红黑树为空树
-        if (node.parent == null) {
-            this.root.color = BLACK;
-            return;
-        }
-
-        //parent:父    gParent:爷
-        RBNode parent = parentOf(node);
-        RBNode gParent = parentOf(parent);
+        while (true) {
+            fixUpRounds++;
+            //情景1：当前结点为根（空树插入，或双红上溯到了根）
+            if (node.parent == null) {
+                if (node.color == RED)
+                    metrics.recolored(1);
+                node.color = BLACK;
+                return;
+            }
 
-        //情景4   插入结点的父结点为红色
-        if (isRed(parent)) {
+            //parent:父    gParent:爷
+            RBNode parent = node.parent;
+            //情景3：父结点为黑色
+            if (parent.color == BLACK)
+                return;
 
-            RBNode uncle = null;
+            //情景4：父结点为红色，一定不是根，爷爷结点存在
+            RBNode gParent = parent.parent;
             //父为爷的左孩子
             if (parent == gParent.left) {
-                uncle = gParent.right;
+                RBNode uncle = gParent.right;
 
-                //叔父双红  递归处理完后可能会进下方if逻辑所以需要return
-                if (uncle != null && isRed(uncle)) {
+                //叔父双红：变色后以爷爷结点为当前结点进入下一轮
+                if (isRed(uncle)) {
                     parent.color = BLACK;
                     uncle.color = BLACK;
                     gParent.color = RED;
-                    insertFixUp(gParent);
-                    return;
+                    metrics.recolored(3);
+                    node = gParent;
+                    continue;
                 }
-                //叔叔结点不存在，或者为黑色
-                if (uncle == null || isBlack(uncle)) {
-                    //插入结点为其父结点的左子结点（LL情况)
-                    if (node == parent.left) {
-
-                        parent.color = BLACK;
-                        gParent.color = RED;
-                        rightRotate(gParent);
-
-                    } else {
-                        //插入结点为其父结点的右子结点（LR情况）
-                        leftRotate(parent);
-                        insertFixUp(parent);
-
-                    }
-
+                //插入结点为其父结点的右子结点（LR情况）：父左旋，原父结点成为当前结点，转为LL
+                if (node == parent.right) {
+                    leftRotate(parent);
+                    parent = node;
                 }
+                //LL情况
+                parent.color = BLACK;
+                gParent.color = RED;
+                metrics.recolored(2);
+                rightRotate(gParent);
 
             //父为爷的右孩子
             } else {
-                uncle = gParent.left;
+                RBNode uncle = gParent.left;
 
-                //叔父双红 递归处理完后可能会进下方if逻辑所以需要return
-                if (uncle!= null && isRed(uncle)) {
+                //叔父双红：变色后以爷爷结点为当前结点进入下一轮
+                if (isRed(uncle)) {
                     parent.color = BLACK;
                     uncle.color = BLACK;
                     gParent.color = RED;
-                    insertFixUp(gParent);
-                    return;
+                    metrics.recolored(3);
+                    node = gParent;
+                    continue;
                 }
-
-                //叔叔结点不存在，或者为黑色
-                if (uncle == null || isBlack(uncle)) {
-                    //插入结点为其父结点的左子结点（LL情况)
-                    if (node == parent.right) {
-                        parent.color = BLACK;
-                        gParent.color = RED;
-                        leftRotate(gParent);
-                    } else {
-                        //插入结点为其父结点的右子结点（LR情况）
-                        rightRotate(parent);
-                        insertFixUp(parent);
-                    }
-
+                //插入结点为其父结点的左子结点（RL情况）：父右旋，原父结点成为当前结点，转为RR
+                if (node == parent.left) {
+                    rightRotate(parent);
+                    parent = node;
                 }
+                //RR情况
+                parent.color = BLACK;
+                gParent.color = RED;
+                metrics.recolored(2);
+                leftRotate(gParent);
             }
+            //旋转后子树的根为黑色，修复结束
+            return;
         }
-
-
     }
 
     public void delete(K key) {
-        RBNode node = find(key);
-        if (node == null) return;
-        delete(node);
+        long start = metrics.startTimer();
+        RBNode node = find(this.root, key);
+        if (node != null)
+            delete(node);
+        metrics.record(TreeMetrics.Operation.DELETE, start);
     }
 
     /**
@@ -241,7 +863,9 @@ public class RBTree<K extends Comparable<K>, V>{
      * @param node 要删除的结点
      */
 
-    private void delete(RBNode node) {
+    void delete(RBNode node) {
+
+        modCount++;
 
         RBNode parent = parentOf(node);
         //deleteNode:被删除的结点  isLeftChild:是否为左孩子
@@ -253,8 +877,10 @@ public class RBTree<K extends Comparable<K>, V>{
         if (isRed(node) && node.right == null && node .left == null) {
             if (node == parent.left)
                 parent.left = null;
-            parent.right = null;
+            else
+                parent.right = null;
 
+            decrementSize(parent);
             return;
         }
 
@@ -263,6 +889,7 @@ public class RBTree<K extends Comparable<K>, V>{
             RBNode precursor = precursor(node);
 
             node.key = precursor.key;
+            node.prefix = precursor.prefix;
             node.value = precursor.value;
 
             delete(precursor);
@@ -275,14 +902,17 @@ public class RBTree<K extends Comparable<K>, V>{
             if (node.left != null) {
                 sun = node.left;
                 node.key = sun.key;
+                node.prefix = sun.prefix;
                 node.value = sun.value;
                 node.left = null;
             } else {
                 sun = node.right;
                 node.key = sun.key;
+                node.prefix = sun.prefix;
                 node.value = sun.value;
                 node.right = null;
             }
+            decrementSize(node);
             return;
         }
 
@@ -297,13 +927,17 @@ public class RBTree<K extends Comparable<K>, V>{
                     parent.right = null;
                 }
                 deleteNode = node;
+                //先修正结点计数，修复过程中的旋转依赖子树计数正确
+                decrementSize(parent);
             } else {
                 this.root = null;
                 return;
             }
         }
 
+        fixUpRounds = 0;
         deleteFixUp(deleteNode,isLeftChild);
+        metrics.fixedUp(fixUpRounds);
     }
 
     /**
@@ -314,93 +948,112 @@ public class RBTree<K extends Comparable<K>, V>{
      * <p>情景3. 黑兄弟，双黑侄 <span style="color:#4f86cd">=> 兄弟红，向上找，遇根或红结点，染黑即解决，若非根父黑，以父递归处理
      * <p>情景4. 红兄弟 <span style="color:#4f86cd">=> 左旋父，父，祖换色，变成情景123
      * <p>删除黑结点时，只有情景1和情景3父结点是红色或根结点时可以解决平衡。其它情况都会向这两种情况转化
+     * <p>循环实现：情景3以父结点进入下一轮，情景4以同一结点进入下一轮（此后父结点为红色，至多再一轮即结束），情景2直接转入情景1
      * <p>
      * @param node  当前被删除结点
      * @param isLeftChild    被删除结点是否是左孩子
      */
     private void deleteFixUp(RBNode node, boolean isLeftChild){
+        while (true) {
+            fixUpRounds++;
+            //parent一定不为null且node一定为黑
+            RBNode parent = node.parent;
+            RBNode brother, nephew;
 
-        //parent一定不为null且node一定为黑
-        RBNode parent = parentOf(node);
-        RBNode brother,nephew = null;
+            if (isLeftChild) {
 
-        if (isLeftChild) {
+                brother = parent.right;
+                //红兄弟：左旋父后node的兄弟变为黑色，node不变进入下一轮
+                if (!isBlack(brother)) {
+                    leftRotate(parent);
+                    parent.color = RED;
+                    brother.color = BLACK;
+                    metrics.recolored(2);
+                    fireFixUp();
+                    continue;
+                }
 
-            brother = parent.right;
-            //黑兄弟
-            if (isBlack(brother)) {
+                //黑兄弟，双黑侄：兄弟染红，父结点为红色或根时染黑结束，否则以父结点进入下一轮
+                if (!isRed(brother.right) && !isRed(brother.left)) {
+                    brother.color = RED;
+                    metrics.recolored(1);
+                    if (parent == this.root || isRed(parent)) {
+                        parent.color = BLACK;
+                        metrics.recolored(1);
+                        fireFixUp();
+                        return;
+                    }
+                    node = parent;
+                    isLeftChild = parent.parent.left == parent;
+                    continue;
+                }
 
-                //黑兄弟，右红侄（无论左侄有没有）
-                if (brother.right != null && isRed(brother.right)) {
-                    nephew = brother.right;
-                    leftRotate(parent);
-                    brother.color = parent.color;
-                    parent.color = nephew.color = BLACK;
-                    TreeOperation.show(root);
-                //黑兄弟，左红侄
-                } else if (brother.left != null && isRed(brother.left)) {
+                //黑兄弟，左红侄（右侄不为红）：右旋兄，交换兄弟与侄子颜色，转为右红侄
+                if (!isRed(brother.right)) {
                     nephew = brother.left;
                     rightRotate(brother);
                     brother.color = RED;
                     nephew.color = BLACK;
-                    TreeOperation.show(root);
-                    deleteFixUp(node,true);
+                    metrics.recolored(2);
+                    fireFixUp();
+                    brother = nephew;
+                }
+                //黑兄弟，右红侄
+                nephew = brother.right;
+                leftRotate(parent);
+                brother.color = parent.color;
+                parent.color = nephew.color = BLACK;
+                metrics.recolored(3);
+                fireFixUp();
+                return;
+
+            } else {
+
+                brother = parent.left;
+                //红兄弟：右旋父后node的兄弟变为黑色，node不变进入下一轮
+                if (!isBlack(brother)) {
+                    rightRotate(parent);
+                    parent.color = RED;
+                    brother.color = BLACK;
+                    metrics.recolored(2);
+                    fireFixUp();
+                    continue;
+                }
+
                 //黑兄弟，双黑侄
-                } else {
+                if (!isRed(brother.left) && !isRed(brother.right)) {
                     brother.color = RED;
+                    metrics.recolored(1);
+                    fireFixUp();
                     if (parent == this.root || isRed(parent)) {
                         parent.color = BLACK;
-                        TreeOperation.show(root);
-                    } else
-                        deleteFixUp(parent, parent.parent.left == parent);
+                        metrics.recolored(1);
+                        fireFixUp();
+                        return;
+                    }
+                    node = parent;
+                    isLeftChild = parent.parent.left == parent;
+                    continue;
                 }
-            }
-            //红兄弟
-            else {
-                leftRotate(parent);
-                parent.color = RED;
-                brother.color = BLACK;
-                TreeOperation.show(root);
-                deleteFixUp(node,true);
-            }
-
-        } else {
 
-            brother = parent.left;
-            //黑兄弟
-            if (isBlack(brother)) {
-                //黑兄弟，左红侄（无论右侄有没有）
-                if (brother.left != null) {
-                    nephew = brother.left;
-                    rightRotate(parent);
-                    brother.color = parent.color;
-                    parent.color = nephew.color = BLACK;
-                    TreeOperation.show(root);
-                    //黑兄弟，右红侄
-                } else if (brother.right != null && isRed(brother.right)) {
+                //黑兄弟，右红侄（左侄不为红）：左旋兄，交换兄弟与侄子颜色，转为左红侄
+                if (!isRed(brother.left)) {
                     nephew = brother.right;
                     leftRotate(brother);
                     brother.color = RED;
                     nephew.color = BLACK;
-                    TreeOperation.show(root);
-                    //黑兄弟，双黑侄
-                } else {
-                    brother.color = RED;
-                    TreeOperation.show(root);
-                    if (parent == this.root || isRed(parent)) {
-                        parent.color = BLACK;
-                        TreeOperation.show(root);
-                    } else
-                        deleteFixUp(parent, parent.parent.left == parent);
+                    metrics.recolored(2);
+                    fireFixUp();
+                    brother = nephew;
                 }
-            }
-            //红兄弟
-            else {
+                //黑兄弟，左红侄
+                nephew = brother.left;
                 rightRotate(parent);
-                parent.color = RED;
-                brother.color = BLACK;
-                TreeOperation.show(root);
-                deleteFixUp(node,false);
+                brother.color = parent.color;
+                parent.color = nephew.color = BLACK;
+                metrics.recolored(3);
+                fireFixUp();
+                return;
             }
         }
     }
@@ -413,24 +1066,117 @@ public class RBTree<K extends Comparable<K>, V>{
      * @return  找到返回结点，否则返回null
      */
     public RBNode find(K key) {
+        long start = metrics.startTimer();
+        RBNode node = find(this.root, key);
+        metrics.record(TreeMetrics.Operation.FIND, start);
+        return node;
+    }
 
-        if (this.root == null)
-            return null;
+    /**
+     * 从start开始向下查找key
+     */
+    private RBNode find(RBNode start, K key) {
 
-        RBNode node = this.root;
+        RBNode node = start;
+        int comparisons = 0;
+        long prefix = prefixOf(key);
 
         while (node != null) {
-            int cmp = key.compareTo((K) node.key);
+            int cmp = compare(key, prefix, node);
+            comparisons++;
 
             if (cmp == 0)
-                return node;
+                break;
             else if (cmp > 0)
                 node = node.right;
             else
                 node = node.left;
         }
 
-        return null;
+        metrics.comparisons(comparisons);
+        return node;
+    }
+
+
+    /**
+     * 清空所有结点
+     */
+    public void clear() {
+        this.root = null;
+        modCount++;
+    }
+
+    /**
+     * 结点总数，O(1)
+     */
+    public int size() {
+        return sizeOf(this.root);
+    }
+
+    /**
+     * 小于key的结点个数，即key在升序中的位置（从0开始），O(log n)
+     * @param key   key，不要求存在于树中
+     * @return  小于key的结点个数
+     */
+    public int rank(K key) {
+        int rank = 0;
+        RBNode node = this.root;
+        long prefix = prefixOf(key);
+        while (node != null) {
+            int cmp = compare(key, prefix, node);
+            if (cmp > 0) {
+                //node及其左子树都小于key
+                rank += sizeOf(node.left) + 1;
+                node = node.right;
+            } else if (cmp < 0) {
+                node = node.left;
+            } else {
+                return rank + sizeOf(node.left);
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * 升序第k个key（从0开始），O(log n)
+     * @param k 位置
+     * @return  key
+     * @throws IndexOutOfBoundsException k不在 [0, size()) 内
+     */
+    public K select(int k) {
+        if (k < 0 || k >= size())
+            throw new IndexOutOfBoundsException("k: " + k + ", size: " + size());
+        return (K) selectNode(k).key;
+    }
+
+    /**
+     * 升序第k个结点，调用方保证k在 [0, size()) 内
+     */
+    private RBNode selectNode(int k) {
+        RBNode node = this.root;
+        while (true) {
+            int leftSize = sizeOf(node.left);
+            if (k < leftSize) {
+                node = node.left;
+            } else if (k > leftSize) {
+                k -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * [lo, hi) 范围内的结点个数，O(log n)
+     * @param lo 下界（包含）
+     * @param hi 上界（不包含）
+     * @return  结点个数，lo不小于hi时为0
+     */
+    public int countInRange(K lo, K hi) {
+        if (compare(lo, hi) >= 0)
+            return 0;
+        return rank(hi) - rank(lo);
     }
 
 
@@ -479,6 +1225,11 @@ public class RBTree<K extends Comparable<K>, V>{
         //3
         y.left = x;
         x.parent = y;
+
+        //4.y接替x原来的位置，子树计数不变；x的子树计数重新计算
+        y.size = x.size;
+        updateSize(x);
+        metrics.rotated(true);
     }
 
 
@@ -525,6 +1276,10 @@ public class RBTree<K extends Comparable<K>, V>{
 
         x.right = y;
         y.parent = x;
+
+        x.size = y.size;
+        updateSize(y);
+        metrics.rotated(false);
     }
 
 
@@ -532,7 +1287,7 @@ public class RBTree<K extends Comparable<K>, V>{
 
 
 
-    static class RBNode<K extends Comparable<K>, V> {
+    static class RBNode<K, V> implements Map.Entry<K, V> {
 
         private RBNode parent;
         private RBNode left;
@@ -541,6 +1296,14 @@ public class RBTree<K extends Comparable<K>, V>{
         private boolean color;
         private K key;
         private V value;
+        /**
+         * 以该结点为根的子树的结点数
+         */
+        private int size = 1;
+        /**
+         * key的前缀，树没有设置keyPrefix时为0
+         */
+        private long prefix;
 
 
         public RBNode(K key, V value, boolean red) {
@@ -573,6 +1336,30 @@ public class RBTree<K extends Comparable<K>, V>{
         public K getKey() {
             return key;
         }
+
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
     }
 
 
@@ -606,8 +1393,129 @@ public class RBTree<K extends Comparable<K>, V>{
             node.color = BLACK;
     }
 
+    private RBNode newNode(K key, V value, boolean color) {
+        RBNode node = new RBNode(key, value, color);
+        node.prefix = prefixOf(key);
+        return node;
+    }
+
+    private long prefixOf(K key) {
+        return keyPrefix == null ? 0 : keyPrefix.prefix(key);
+    }
+
+    /**
+     * 没有comparator时按自然顺序比较，key不是Comparable时抛出ClassCastException
+     */
+    private int compare(K a, K b) {
+        return comparator == null ? ((Comparable<? super K>) a).compareTo(b) : comparator.compare(a, b);
+    }
+
+    /**
+     * key与结点的key比较，前缀不同时直接以前缀的无符号大小为结果，不访问结点的key对象
+     * @param prefix key的前缀，由prefixOf(key)得到
+     */
+    private int compare(K key, long prefix, RBNode node) {
+        if (prefix != node.prefix)
+            return Long.compareUnsigned(prefix, node.prefix);
+        return compare(key, (K) node.key);
+    }
+
+    private Comparator<Map.Entry<K, V>> entryComparator() {
+        return (a, b) -> compare(a.getKey(), b.getKey());
+    }
+
+    /**
+     * @return key的比较器，按自然顺序时为null
+     */
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
     public RBNode getRoot() {
         return this.root;
     }
 
+    private int sizeOf(RBNode node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private void updateSize(RBNode node) {
+        node.size = sizeOf(node.left) + sizeOf(node.right) + 1;
+    }
+
+    /**
+     * 结点被摘除后，从其原父结点开始向上逐个减少结点计数
+     */
+    private void decrementSize(RBNode node) {
+        for (RBNode p = node; p != null; p = p.parent)
+            p.size--;
+    }
+
+    /**
+     * 设置调试监听器，传入null关闭
+     * <p>例：rbTree.setListener(TreeOperation::show) 在每次删除修复后打印整棵树
+     * @param listener 监听器
+     */
+    public void setListener(RBTreeListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * <p>检查全部不变式，O(n)，供差分测试在修改后调用
+     * <p>根为黑色且没有父结点；没有连续的红结点；从任一结点到其下各空结点的黑高相同；
+     * 子结点的parent指向自身；中序严格升序；子树结点数正确
+     * @throws IllegalStateException 被破坏的不变式
+     */
+    void checkInvariants() {
+        if (this.root == null)
+            return;
+        if (this.root.parent != null)
+            throw new IllegalStateException("root " + this.root.key + " has a parent");
+        if (isRed(this.root))
+            throw new IllegalStateException("root " + this.root.key + " is red");
+        checkInvariants(this.root, null, null);
+    }
+
+    /**
+     * 检查以node为根的子树，key必须落在 (lo, hi) 内，null表示不设界
+     * @return 子树的黑高（空结点为1）
+     */
+    private int checkInvariants(RBNode node, K lo, K hi) {
+        if (node == null)
+            return 1;
+
+        K key = (K) node.key;
+        if (lo != null && compare(key, lo) <= 0 || hi != null && compare(key, hi) >= 0)
+            throw new IllegalStateException("key " + key + " is out of order, expected in (" + lo + ", " + hi + ")");
+        if (node.left != null && node.left.parent != node || node.right != null && node.right.parent != node)
+            throw new IllegalStateException("child of " + key + " has a wrong parent pointer");
+        if (isRed(node) && (isRed(node.left) || isRed(node.right)))
+            throw new IllegalStateException("red node " + key + " has a red child");
+
+        int left = checkInvariants(node.left, lo, key);
+        int right = checkInvariants(node.right, key, hi);
+        if (left != right)
+            throw new IllegalStateException("black height differs under " + key + ": " + left + " vs " + right);
+        if (node.size != sizeOf(node.left) + sizeOf(node.right) + 1)
+            throw new IllegalStateException("subtree size of " + key + " is " + node.size);
+        return isBlack(node) ? left + 1 : left;
+    }
+
+    /**
+     * <p>设置热点路径计数，传入null恢复为不记录
+     * <p>例：rbTree.setMetrics(new CountingTreeMetrics())，之后通过snapshot()或JMX查看
+     * @param metrics 计数实现
+     */
+    public void setMetrics(TreeMetrics metrics) {
+        this.metrics = metrics == null ? TreeMetrics.NOOP : metrics;
+    }
+
+    /**
+     * 删除修复的每个情景处理完后通知监听器
+     */
+    private void fireFixUp() {
+        if (listener != null)
+            listener.onFixUp(root);
+    }
+
 }
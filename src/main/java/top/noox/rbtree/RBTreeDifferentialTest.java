@@ -0,0 +1,197 @@
+package top.noox.rbtree;
+
+import top.noox.check.DifferentialDriver;
+
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>rbtree包中各棵树与TreeMap的随机差分测试，直接运行main，过程见 {@link DifferentialDriver}
+ * <p>参数：被测的树（默认RBTREE）、操作次数（默认10^8）、随机种子（默认0）
+ */
+@SuppressWarnings("unchecked")
+public class RBTreeDifferentialTest {
+
+    enum Engine {
+
+        RBTREE {
+            @Override
+            DifferentialDriver<?> driver() {
+                return new DifferentialDriver<>(subject(new RBTree<Integer, Integer>()), Integer::valueOf, null);
+            }
+        },
+
+        /**
+         * 传入Comparator：逆序
+         */
+        REVERSE {
+            @Override
+            DifferentialDriver<?> driver() {
+                Comparator<Integer> order = Comparator.reverseOrder();
+                return new DifferentialDriver<>(subject(new RBTree<Integer, Integer>(order)), Integer::valueOf, order);
+            }
+        },
+
+        /**
+         * String key缓存 KeyPrefix.STRING：有的key前4个char相同，有的含代理对与高位char
+         */
+        STRING_PREFIX {
+            @Override
+            DifferentialDriver<?> driver() {
+                return new DifferentialDriver<>(subject(new RBTree<String, Integer>(null, KeyPrefix.STRING)),
+                        i -> STRING_HEADS[i & 3] + Integer.toString(i >>> 2, 36), null);
+            }
+        },
+
+        /**
+         * 不是Comparable的byte[] key，按无符号字节比较并缓存 KeyPrefix.BYTES，长度1~11，有的前8个字节相同
+         */
+        BYTES_PREFIX {
+            @Override
+            DifferentialDriver<?> driver() {
+                Comparator<byte[]> order = RBTreeDifferentialTest::compareUnsigned;
+                return new DifferentialDriver<>(subject(new RBTree<byte[], Integer>(order, KeyPrefix.BYTES)), i -> {
+                    byte[] key = new byte[1 + i % 11];
+                    long bits = (i >>> 2) * 0x9E3779B97F4A7C15L;
+                    for (int j = 0; j < key.length; j++)
+                        key[j] = j < 8 && (i & 1) == 0 ? (byte) 0xFF : (byte) (bits >>> (8 * (j & 7)));
+                    return key;
+                }, order);
+            }
+        },
+
+        /**
+         * 删除走transplant而不是交换key，与RBTree的删除是不同的算法
+         */
+        SENTINEL {
+            @Override
+            DifferentialDriver<?> driver() {
+                SentinelRBTree<Integer, Integer> tree = new SentinelRBTree<>();
+                return new DifferentialDriver<>(
+                        DifferentialDriver.subject(tree::insert, tree::delete, tree::get, tree::size, tree::checkInvariants), Integer::valueOf, null);
+            }
+        },
+
+        /**
+         * 初始容量为1，使扩容与空闲链表复用都被覆盖
+         */
+        ARRAY {
+            @Override
+            DifferentialDriver<?> driver() {
+                ArrayRBTree<Integer, Integer> tree = new ArrayRBTree<>(1);
+                return new DifferentialDriver<>(
+                        DifferentialDriver.subject(tree::insert, tree::delete, tree::get, tree::size, tree::checkInvariants), Integer::valueOf, null);
+            }
+        },
+
+        /**
+         * 基本类型key，乘以奇数打散为正负交错的int，检查有符号比较
+         */
+        INT {
+            @Override
+            DifferentialDriver<?> driver() {
+                IntRBTree<Integer> tree = new IntRBTree<>();
+                return new DifferentialDriver<>(
+                        DifferentialDriver.subject(tree::insert, tree::delete, tree::get, tree::size, tree::checkInvariants), i -> i * 0x9E3779B9, null);
+            }
+        },
+
+        LONG {
+            @Override
+            DifferentialDriver<?> driver() {
+                LongRBTree<Integer> tree = new LongRBTree<>();
+                return new DifferentialDriver<>(
+                        DifferentialDriver.subject(tree::insert, tree::delete, tree::get, tree::size, tree::checkInvariants), i -> i * 0x9E3779B97F4A7C15L, null);
+            }
+        };
+
+        abstract DifferentialDriver<?> driver();
+    }
+
+    private static final String[] STRING_HEADS = {"", "abcd", "abcd\uFFFF", "\uD83D\uDE00"};
+
+    private static int compareUnsigned(byte[] a, byte[] b) {
+        for (int i = 0, n = Math.min(a.length, b.length); i < n; i++)
+            if (a[i] != b[i])
+                return (a[i] & 0xFF) - (b[i] & 0xFF);
+        return a.length - b.length;
+    }
+
+    private static <K> DifferentialDriver.Subject<K> subject(RBTree<K, Integer> tree) {
+        return new DifferentialDriver.Subject<K>() {
+            @Override
+            public void insert(K key, Integer value) {
+                Iterator<?> before = tree.iterator();
+                int size = tree.size();
+                tree.insert(key, value);
+                checkFailFast(before, size, tree);
+            }
+
+            @Override
+            public void delete(K key) {
+                Iterator<?> before = tree.descendingIterator();
+                int size = tree.size();
+                tree.delete(key);
+                checkFailFast(before, size, tree);
+            }
+
+            @Override
+            public Integer get(K key) {
+                RBTree.RBNode node = tree.find(key);
+                return node == null ? null : (Integer) node.getValue();
+            }
+
+            @Override
+            public void checkInvariants() {
+                tree.checkInvariants();
+            }
+
+            @Override
+            public int size() {
+                return tree.size();
+            }
+
+            @Override
+            public Iterator<Map.Entry<K, Integer>> iterator() {
+                return tree.iterator();
+            }
+
+            @Override
+            public void insertAll(List<K> keys, List<Integer> values) {
+                //RBTree的K擦除为Object，Object[]可以直接当作K[]传入
+                tree.insertAll((K[]) keys.toArray(), values.toArray(new Integer[0]));
+            }
+
+            @Override
+            public void deleteAll(List<K> keys) {
+                tree.deleteAll((K[]) keys.toArray());
+            }
+        };
+    }
+
+    /**
+     * 修改前取得的迭代器：修改改变了size时next必须抛出ConcurrentModificationException，否则照常返回
+     */
+    private static void checkFailFast(Iterator<?> before, int size, RBTree<?, ?> tree) {
+        if (!before.hasNext())
+            return;
+        try {
+            before.next();
+        } catch (ConcurrentModificationException e) {
+            if (tree.size() != size)
+                return;
+            throw new AssertionError("iterator failed although the size stayed " + size, e);
+        }
+        if (tree.size() != size)
+            throw new AssertionError("iterator created at size " + size + " still worked at size " + tree.size());
+    }
+
+    public static void main(String[] args) {
+        Engine engine = args.length > 0 ? Engine.valueOf(args[0]) : Engine.RBTREE;
+        long[] parsed = DifferentialDriver.parse(args, 1);
+        engine.driver().run(parsed[0], parsed[1]);
+    }
+}
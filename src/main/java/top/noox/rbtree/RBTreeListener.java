@@ -0,0 +1,14 @@
+package top.noox.rbtree;
+
+/**
+ * 红黑树调试监听器，用于观察删除修复过程中树的变化
+ * <p>默认不设置，需要时通过 {@link RBTree#setListener(RBTreeListener)} 打开
+ */
+public interface RBTreeListener {
+
+    /**
+     * 删除修复的某个情景处理完成后回调
+     * @param root 当前的根结点
+     */
+    void onFixUp(RBTree.RBNode root);
+}
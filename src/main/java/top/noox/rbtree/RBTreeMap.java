@@ -0,0 +1,831 @@
+package top.noox.rbtree;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * <p>基于 {@link RBTree} 的 {@link NavigableMap} 实现，可直接替换 {@link java.util.TreeMap} 使用
+ * <p>整个Map与它的子视图（subMap、headMap、tailMap、descendingMap）是同一个类：共享同一棵树，只是key的范围和遍历方向不同，
+ * 完整的Map就是不设上下界的升序视图
+ * <p>迭代器是fail-fast的：迭代期间树被其他途径修改时抛出 {@link ConcurrentModificationException}
+ * <p>entrySet迭代得到的Entry就是树中结点，setValue会直接写回；firstEntry、floorEntry等导航方法返回的是不可修改的快照
+ * <p>子视图的size()借助结点计数（rank）计算，为O(log n)
+ * <p>与TreeMap一样可以在构造时传入Comparator，它直接交给底层的RBTree；没有传入时key必须实现Comparable
+ * <p>
+ * @param <K> key
+ * @param <V> value
+ */
+@SuppressWarnings("unchecked")
+public class RBTreeMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    private final RBTree<K, V> tree;
+
+    //视图的范围，以升序表示：fromStart/toEnd为true时表示该方向不设界
+    private final boolean fromStart, loInclusive, toEnd, hiInclusive;
+    private final K lo, hi;
+
+    /**
+     * 是否为降序视图
+     */
+    private final boolean descending;
+
+    private EntrySet entrySet;
+    private KeySet<K> navigableKeySet;
+    private Values values;
+
+
+    /**
+     * 按key的自然顺序，key必须实现Comparable
+     */
+    public RBTreeMap() {
+        this((Comparator<? super K>) null);
+    }
+
+    /**
+     * @param comparator key的比较器，为null时按key的自然顺序
+     */
+    public RBTreeMap(Comparator<? super K> comparator) {
+        this(new RBTree<>(comparator), true, null, true, true, null, true, false);
+    }
+
+    /**
+     * 按key的自然顺序，与TreeMap(Map)一致：即使m是SortedMap也不沿用它的比较器
+     * @param m 初始内容；m为按自然顺序排序的SortedMap时以O(n)直接建树
+     */
+    public RBTreeMap(Map<? extends K, ? extends V> m) {
+        this();
+        if (m instanceof SortedMap && ((SortedMap<?, ?>) m).comparator() == null)
+            buildFrom(m);
+        else
+            putAll(m);
+    }
+
+    /**
+     * 沿用m的比较器，以O(n)直接建树
+     * @param m 初始内容
+     */
+    public RBTreeMap(SortedMap<K, ? extends V> m) {
+        this(m.comparator());
+        buildFrom(m);
+    }
+
+    /**
+     * m的key已按本Map的顺序严格升序排列
+     */
+    private void buildFrom(Map<? extends K, ? extends V> m) {
+        Iterator<? extends Entry<? extends K, ? extends V>> it = m.entrySet().iterator();
+        tree.buildFromSorted(m.size(), new Iterator<Entry<K, V>>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Entry<K, V> next() {
+                return (Entry<K, V>) it.next();
+            }
+        });
+    }
+
+    private RBTreeMap(RBTree<K, V> tree, boolean fromStart, K lo, boolean loInclusive,
+                      boolean toEnd, K hi, boolean hiInclusive, boolean descending) {
+        this.tree = tree;
+        this.fromStart = fromStart;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.toEnd = toEnd;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.descending = descending;
+        if (!fromStart && !toEnd && compare(lo, hi) > 0)
+            throw new IllegalArgumentException("fromKey > toKey");
+    }
+
+
+    /* ---------------- 范围判断 ---------------- */
+
+    private boolean tooLow(K key) {
+        if (fromStart)
+            return false;
+        int cmp = compare(key, lo);
+        return cmp < 0 || (cmp == 0 && !loInclusive);
+    }
+
+    private boolean tooHigh(K key) {
+        if (toEnd)
+            return false;
+        int cmp = compare(key, hi);
+        return cmp > 0 || (cmp == 0 && !hiInclusive);
+    }
+
+    private boolean inRange(K key) {
+        return !tooLow(key) && !tooHigh(key);
+    }
+
+    /**
+     * 与底层RBTree的顺序一致：有comparator时用它，否则按自然顺序
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(K a, K b) {
+        Comparator<? super K> comparator = tree.comparator();
+        return comparator == null ? ((Comparable<? super K>) a).compareTo(b) : comparator.compare(a, b);
+    }
+
+    /**
+     * 包含边界本身的范围判断，用于校验子视图的边界
+     */
+    private boolean inClosedRange(K key) {
+        return (fromStart || compare(key, lo) >= 0) && (toEnd || compare(key, hi) <= 0);
+    }
+
+    private boolean inRange(K key, boolean inclusive) {
+        return inclusive ? inRange(key) : inClosedRange(key);
+    }
+
+
+    /* ---------------- 以升序表示的导航，结果限定在范围内 ---------------- */
+
+    private RBTree.RBNode<K, V> bounded(RBTree.RBNode<K, V> node) {
+        return node == null || !inRange(node.getKey()) ? null : node;
+    }
+
+    private RBTree.RBNode<K, V> absLowest() {
+        return bounded(fromStart ? tree.first() : tree.ceilingNode(lo, loInclusive));
+    }
+
+    private RBTree.RBNode<K, V> absHighest() {
+        return bounded(toEnd ? tree.last() : tree.floorNode(hi, hiInclusive));
+    }
+
+    private RBTree.RBNode<K, V> absCeiling(K key, boolean inclusive) {
+        if (tooLow(key))
+            return absLowest();
+        return bounded(tree.ceilingNode(key, inclusive));
+    }
+
+    private RBTree.RBNode<K, V> absFloor(K key, boolean inclusive) {
+        if (tooHigh(key))
+            return absHighest();
+        return bounded(tree.floorNode(key, inclusive));
+    }
+
+
+    /* ---------------- 按视图方向的导航 ---------------- */
+
+    private RBTree.RBNode<K, V> lowestNode() {
+        return descending ? absHighest() : absLowest();
+    }
+
+    private RBTree.RBNode<K, V> highestNode() {
+        return descending ? absLowest() : absHighest();
+    }
+
+    private RBTree.RBNode<K, V> ceilingNode(K key) {
+        return descending ? absFloor(key, true) : absCeiling(key, true);
+    }
+
+    private RBTree.RBNode<K, V> higherNode(K key) {
+        return descending ? absFloor(key, false) : absCeiling(key, false);
+    }
+
+    private RBTree.RBNode<K, V> floorNode(K key) {
+        return descending ? absCeiling(key, true) : absFloor(key, true);
+    }
+
+    private RBTree.RBNode<K, V> lowerNode(K key) {
+        return descending ? absCeiling(key, false) : absFloor(key, false);
+    }
+
+    /**
+     * 视图方向上的下一个结点，超出范围时返回null
+     */
+    private RBTree.RBNode<K, V> nextNode(RBTree.RBNode<K, V> node) {
+        return bounded(descending ? tree.precursor(node) : tree.successor(node));
+    }
+
+    private static <K, V> Entry<K, V> exportEntry(RBTree.RBNode<K, V> node) {
+        return node == null ? null : new SimpleImmutableEntry<>(node.getKey(), node.getValue());
+    }
+
+    private static <K> K keyOrNull(RBTree.RBNode<K, ?> node) {
+        return node == null ? null : node.getKey();
+    }
+
+    private static <K> K key(RBTree.RBNode<K, ?> node) {
+        if (node == null)
+            throw new NoSuchElementException();
+        return node.getKey();
+    }
+
+
+    /* ---------------- Map ---------------- */
+
+    /**
+     * 小于（inclusive时为不大于）key的结点个数
+     */
+    private int countBelow(K key, boolean inclusive) {
+        int rank = tree.rank(key);
+        return inclusive && tree.find(key) != null ? rank + 1 : rank;
+    }
+
+    @Override
+    public int size() {
+        if (fromStart && toEnd)
+            return tree.size();
+        int upper = toEnd ? tree.size() : countBelow(hi, hiInclusive);
+        int lower = fromStart ? 0 : countBelow(lo, !loInclusive);
+        return Math.max(upper - lower, 0);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return absLowest() == null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        K k = (K) Objects.requireNonNull(key);
+        return inRange(k) && tree.find(k) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        K k = (K) Objects.requireNonNull(key);
+        if (!inRange(k))
+            return null;
+        RBTree.RBNode<K, V> node = tree.find(k);
+        return node == null ? null : node.getValue();
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (!inRange(Objects.requireNonNull(key)))
+            throw new IllegalArgumentException("key out of range");
+        RBTree.RBNode<K, V> node = tree.find(key);
+        if (node != null)
+            return node.setValue(value);
+        tree.insert(key, value);
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        K k = (K) Objects.requireNonNull(key);
+        if (!inRange(k))
+            return null;
+        RBTree.RBNode<K, V> node = tree.find(k);
+        if (node == null)
+            return null;
+        V old = node.getValue();
+        tree.delete(node);
+        return old;
+    }
+
+    /**
+     * 子视图逐个删除范围内的结点（AbstractMap.clear会经entrySet().clear()调回这里）
+     */
+    @Override
+    public void clear() {
+        if (fromStart && toEnd) {
+            tree.clear();
+            return;
+        }
+        for (Iterator<Entry<K, V>> it = entrySet().iterator(); it.hasNext(); ) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * 检查底层树的全部不变式，供差分测试调用
+     * @throws IllegalStateException 被破坏的不变式
+     */
+    void checkInvariants() {
+        tree.checkInvariants();
+    }
+
+
+    /* ---------------- SortedMap / NavigableMap ---------------- */
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return descending ? Collections.reverseOrder(tree.comparator()) : tree.comparator();
+    }
+
+    @Override
+    public K firstKey() {
+        return key(lowestNode());
+    }
+
+    @Override
+    public K lastKey() {
+        return key(highestNode());
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return exportEntry(lowestNode());
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return exportEntry(highestNode());
+    }
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        return poll(lowestNode());
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        return poll(highestNode());
+    }
+
+    private Entry<K, V> poll(RBTree.RBNode<K, V> node) {
+        if (node == null)
+            return null;
+        Entry<K, V> entry = exportEntry(node);
+        tree.delete(node);
+        return entry;
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(K key) {
+        return exportEntry(lowerNode(key));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOrNull(lowerNode(key));
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return exportEntry(floorNode(key));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOrNull(floorNode(key));
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return exportEntry(ceilingNode(key));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOrNull(ceilingNode(key));
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return exportEntry(higherNode(key));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOrNull(higherNode(key));
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new RBTreeMap<>(tree, fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if (!inRange(fromKey, fromInclusive))
+            throw new IllegalArgumentException("fromKey out of range");
+        if (!inRange(toKey, toInclusive))
+            throw new IllegalArgumentException("toKey out of range");
+        if (descending)
+            return new RBTreeMap<>(tree, false, toKey, toInclusive, false, fromKey, fromInclusive, true);
+        return new RBTreeMap<>(tree, false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        if (!inRange(toKey, inclusive))
+            throw new IllegalArgumentException("toKey out of range");
+        if (descending)
+            return new RBTreeMap<>(tree, false, toKey, inclusive, toEnd, hi, hiInclusive, true);
+        return new RBTreeMap<>(tree, fromStart, lo, loInclusive, false, toKey, inclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        if (!inRange(fromKey, inclusive))
+            throw new IllegalArgumentException("fromKey out of range");
+        if (descending)
+            return new RBTreeMap<>(tree, fromStart, lo, loInclusive, false, fromKey, inclusive, true);
+        return new RBTreeMap<>(tree, false, fromKey, inclusive, toEnd, hi, hiInclusive, false);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+
+    /* ---------------- 视图集合 ---------------- */
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        EntrySet es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet());
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        KeySet<K> ks = navigableKeySet;
+        return ks != null ? ks : (navigableKeySet = new KeySet<>(this));
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        Values vs = values;
+        return vs != null ? vs : (values = new Values());
+    }
+
+    /**
+     * 按视图方向、在视图范围内遍历结点的fail-fast迭代器
+     */
+    private abstract class ViewIterator<T> implements Iterator<T> {
+
+        private RBTree.RBNode<K, V> next;
+        private RBTree.RBNode<K, V> lastReturned;
+        private int expectedModCount = tree.modCount;
+
+        ViewIterator() {
+            next = lowestNode();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        RBTree.RBNode<K, V> nextEntry() {
+            RBTree.RBNode<K, V> node = next;
+            if (node == null)
+                throw new NoSuchElementException();
+            if (tree.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            next = nextNode(node);
+            lastReturned = node;
+            return node;
+        }
+
+        /**
+         * <p>删除有子结点的结点时，RBTree.delete会把前驱（只有右子时为后继）的key和value拷入该结点，再摘除前驱；
+         * 如果被拷入的正是迭代方向上的下一个结点，下一个要返回的就变成了当前结点本身
+         */
+        @Override
+        public void remove() {
+            RBTree.RBNode<K, V> node = lastReturned;
+            if (node == null)
+                throw new IllegalStateException();
+            if (tree.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+
+            boolean hasLeft = node.getLeft() != null, hasRight = node.getRight() != null;
+            tree.delete(node);
+            if (next != null && (descending ? hasLeft : hasRight && !hasLeft))
+                next = node;
+
+            expectedModCount = tree.modCount;
+            lastReturned = null;
+        }
+    }
+
+    /**
+     * <p>基于迭代器的Spliterator，附带视图方向对应的比较器
+     */
+    private static final class SortedSpliterator<T> implements Spliterator<T> {
+
+        private final Spliterator<T> delegate;
+
+        private final Comparator<? super T> comparator;
+
+        SortedSpliterator(Spliterator<T> delegate, Comparator<? super T> comparator) {
+            this.delegate = delegate;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            return delegate.tryAdvance(action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            delegate.forEachRemaining(action);
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            Spliterator<T> split = delegate.trySplit();
+            return split == null ? null : new SortedSpliterator<>(split, comparator);
+        }
+
+        @Override
+        public long estimateSize() {
+            return delegate.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return delegate.characteristics();
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator;
+        }
+    }
+
+    private static final int SORTED_CHARACTERISTICS =
+            Spliterator.SORTED | Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.SIZED;
+
+    private class EntrySet extends AbstractSet<Entry<K, V>> {
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new ViewIterator<Entry<K, V>>() {
+                @Override
+                public Entry<K, V> next() {
+                    return nextEntry();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return RBTreeMap.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return RBTreeMap.this.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            K key = (K) entry.getKey();
+            if (key == null || !inRange(key))
+                return false;
+            RBTree.RBNode<K, V> node = tree.find(key);
+            return node != null && Objects.equals(node.getValue(), entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            K key = (K) entry.getKey();
+            if (key == null || !inRange(key))
+                return false;
+            RBTree.RBNode<K, V> node = tree.find(key);
+            if (node == null || !Objects.equals(node.getValue(), entry.getValue()))
+                return false;
+            tree.delete(node);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            RBTreeMap.this.clear();
+        }
+
+        @Override
+        public Spliterator<Entry<K, V>> spliterator() {
+            //完整的升序视图直接使用树本身可拆分的Spliterator
+            if (fromStart && toEnd && !descending)
+                return tree.spliterator();
+            Comparator<Entry<K, V>> byKey = (a, b) -> compare(a.getKey(), b.getKey());
+            return new SortedSpliterator<>(Spliterators.spliterator(iterator(), size(), SORTED_CHARACTERISTICS),
+                    descending ? byKey.reversed() : byKey);
+        }
+    }
+
+    private class Values extends AbstractCollection<V> {
+
+        @Override
+        public Iterator<V> iterator() {
+            return new ViewIterator<V>() {
+                @Override
+                public V next() {
+                    return nextEntry().getValue();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return RBTreeMap.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return RBTreeMap.this.isEmpty();
+        }
+
+        @Override
+        public void clear() {
+            RBTreeMap.this.clear();
+        }
+
+        @Override
+        public Spliterator<V> spliterator() {
+            return Spliterators.spliterator(iterator(), size(), Spliterator.ORDERED | Spliterator.SIZED);
+        }
+    }
+
+    private static final class KeySet<K> extends AbstractSet<K> implements NavigableSet<K> {
+
+        private final RBTreeMap<K, ?> map;
+
+        KeySet(RBTreeMap<K, ?> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return map.keyIterator();
+        }
+
+        @Override
+        public Iterator<K> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return map.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!map.containsKey(o))
+                return false;
+            map.remove(o);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return map.comparator();
+        }
+
+        @Override
+        public K first() {
+            return map.firstKey();
+        }
+
+        @Override
+        public K last() {
+            return map.lastKey();
+        }
+
+        @Override
+        public K lower(K k) {
+            return map.lowerKey(k);
+        }
+
+        @Override
+        public K floor(K k) {
+            return map.floorKey(k);
+        }
+
+        @Override
+        public K ceiling(K k) {
+            return map.ceilingKey(k);
+        }
+
+        @Override
+        public K higher(K k) {
+            return map.higherKey(k);
+        }
+
+        @Override
+        public K pollFirst() {
+            Entry<K, ?> entry = map.pollFirstEntry();
+            return entry == null ? null : entry.getKey();
+        }
+
+        @Override
+        public K pollLast() {
+            Entry<K, ?> entry = map.pollLastEntry();
+            return entry == null ? null : entry.getKey();
+        }
+
+        @Override
+        public NavigableSet<K> descendingSet() {
+            return map.descendingMap().navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> subSet(K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
+            return map.subMap(fromElement, fromInclusive, toElement, toInclusive).navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+            return map.headMap(toElement, inclusive).navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+            return map.tailMap(fromElement, inclusive).navigableKeySet();
+        }
+
+        @Override
+        public SortedSet<K> subSet(K fromElement, K toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> headSet(K toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> tailSet(K fromElement) {
+            return tailSet(fromElement, true);
+        }
+
+        @Override
+        public Spliterator<K> spliterator() {
+            return new SortedSpliterator<>(Spliterators.spliterator(iterator(), size(), SORTED_CHARACTERISTICS),
+                    map.comparator());
+        }
+    }
+
+    private Iterator<K> keyIterator() {
+        return new ViewIterator<K>() {
+            @Override
+            public K next() {
+                return nextEntry().getKey();
+            }
+        };
+    }
+}
@@ -0,0 +1,373 @@
+package top.noox.rbtree;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * <p>RBTreeMap与TreeMap的随机差分测试，直接运行main，发现不一致或不变式被破坏时抛出AssertionError
+ * <p>每次操作先在整个Map上随机派生0~2层视图（descendingMap、subMap、headMap、tailMap，边界与包含性随机，
+ * 偶尔越界或上下界颠倒），再在两边相同的视图上执行同一个操作，比较返回值或抛出的异常类型：
+ * <p>1. put、remove、get、containsKey，key可能超出视图范围
+ * <p>2. lower/floor/ceiling/higher、first/last的Entry与Key，pollFirstEntry、pollLastEntry
+ * <p>3. size、isEmpty，以及按视图方向的完整内容（toString）
+ * <p>4. 用entrySet、keySet、values或descendingKeySet的迭代器遍历，随机Iterator.remove与Entry.setValue，
+ * 偶尔连续remove两次
+ * <p>5. 视图上的clear
+ * <p>每次操作后比较整个Map的size，树较小时检查不变式；每个阶段结束时比较完整内容，
+ * 并检查RBTreeMap(SortedMap)沿用比较器、RBTreeMap(Map)按自然顺序
+ * <p>先按自然顺序跑一遍，再用一个打乱顺序的Comparator跑四分之一的操作次数，两边传入同一个Comparator，
+ * 派生视图时比较comparator()
+ * <p>参数：操作次数（默认10^7）、随机种子（默认0）
+ */
+public class RBTreeMapDifferentialTest {
+
+    private static final int PHASE = 1 << 16;
+
+    private static final int[] RANGES = {16, 1 << 8, 1 << 12};
+
+    private static final int[] PUT_PERCENTS = {50, 70, 30};
+
+    /**
+     * 不超过这个规模时每次操作后都检查不变式
+     */
+    private static final int SMALL = 1 << 8;
+
+    private static final int CHECK_INTERVAL = 1 << 10;
+
+    /**
+     * 与自然顺序无关的全序：按key异或一个常数后的大小排序
+     */
+    private static final Comparator<Integer> SCRAMBLED = (a, b) -> Integer.compare(a ^ 0x5A5, b ^ 0x5A5);
+
+    /**
+     * 两边对应的一对视图
+     */
+    private static final class View {
+
+        final NavigableMap<Integer, Integer> expected, actual;
+
+        final String name;
+
+        View(NavigableMap<Integer, Integer> expected, NavigableMap<Integer, Integer> actual, String name) {
+            this.expected = expected;
+            this.actual = actual;
+            this.name = name;
+        }
+    }
+
+    private final Random random;
+
+    private final TreeMap<Integer, Integer> model;
+
+    private final RBTreeMap<Integer, Integer> map;
+
+    private int range;
+
+    private long done;
+
+    private RBTreeMapDifferentialTest(long seed, Comparator<Integer> comparator) {
+        this.random = new Random(seed);
+        this.model = new TreeMap<>(comparator);
+        this.map = new RBTreeMap<>(comparator);
+    }
+
+    public static void main(String[] args) {
+        long operations = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        long begin = System.nanoTime();
+        new RBTreeMapDifferentialTest(seed, null).run(operations);
+        new RBTreeMapDifferentialTest(seed, SCRAMBLED).run(operations / 4);
+        System.out.println("ok: " + operations + " + " + operations / 4 + " operations in " + (System.nanoTime() - begin) / 1_000_000 + " ms");
+    }
+
+    private void run(long operations) {
+        for (long phase = 0; done < operations; phase++) {
+            range = RANGES[(int) (phase % RANGES.length)];
+            int putPercent = PUT_PERCENTS[(int) (phase % PUT_PERCENTS.length)];
+            long end = Math.min(operations, done + PHASE);
+            for (; done < end; done++) {
+                View view = view();
+                if (view != null)
+                    operate(view, putPercent);
+                check(map.size() == model.size(), "size " + map.size() + " != " + model.size());
+                if (model.size() <= SMALL || done % CHECK_INTERVAL == 0)
+                    checkInvariants();
+            }
+            checkInvariants();
+            check(model.toString().equals(map.toString()), "contents differ");
+            check(model.descendingMap().toString().equals(map.descendingMap().toString()), "descending contents differ");
+            copies();
+        }
+    }
+
+    /**
+     * RBTreeMap(SortedMap)沿用比较器并保持顺序，RBTreeMap(Map)总是按自然顺序
+     */
+    private void copies() {
+        RBTreeMap<Integer, Integer> sorted = new RBTreeMap<>(model);
+        check(sorted.comparator() == model.comparator(), "RBTreeMap(SortedMap) did not keep the comparator");
+        check(model.toString().equals(sorted.toString()), "RBTreeMap(SortedMap) contents differ");
+        checkInvariants(sorted);
+        RBTreeMap<Integer, Integer> natural = new RBTreeMap<>((Map<Integer, Integer>) model);
+        check(natural.comparator() == null, "RBTreeMap(Map) kept the comparator");
+        check(new TreeMap<>((Map<Integer, Integer>) model).toString().equals(natural.toString()), "RBTreeMap(Map) contents differ");
+        checkInvariants(natural);
+    }
+
+    private int key() {
+        return random.nextInt(range);
+    }
+
+    /**
+     * 随机派生视图；两边同样抛出异常时返回null
+     */
+    private View view() {
+        View view = new View(model, map, "map");
+        for (int depth = random.nextInt(3); depth > 0 && view != null; depth--) {
+            int lo = key(), hi = key();
+            boolean loInclusive = random.nextBoolean(), hiInclusive = random.nextBoolean();
+            //绝大多数时候按视图方向排好上下界，其余时候检查颠倒的边界被拒绝
+            Comparator<? super Integer> order = view.expected.comparator();
+            if (random.nextInt(10) != 0 && (order == null ? lo > hi : order.compare(lo, hi) > 0)) {
+                int t = lo;
+                lo = hi;
+                hi = t;
+            }
+            int from = lo, to = hi;
+            switch (random.nextInt(7)) {
+                case 0:
+                    view = derive(view, ".descendingMap()", NavigableMap::descendingMap);
+                    break;
+                case 1:
+                    view = derive(view, ".subMap(" + from + ", " + loInclusive + ", " + to + ", " + hiInclusive + ")",
+                            m -> m.subMap(from, loInclusive, to, hiInclusive));
+                    break;
+                case 2:
+                    view = derive(view, ".headMap(" + to + ", " + hiInclusive + ")", m -> m.headMap(to, hiInclusive));
+                    break;
+                case 3:
+                    view = derive(view, ".tailMap(" + from + ", " + loInclusive + ")", m -> m.tailMap(from, loInclusive));
+                    break;
+                case 4:
+                    view = derive(view, ".subMap(" + from + ", " + to + ")", m -> (NavigableMap<Integer, Integer>) m.subMap(from, to));
+                    break;
+                case 5:
+                    view = derive(view, ".headMap(" + to + ")", m -> (NavigableMap<Integer, Integer>) m.headMap(to));
+                    break;
+                default:
+                    view = derive(view, ".tailMap(" + from + ")", m -> (NavigableMap<Integer, Integer>) m.tailMap(from));
+                    break;
+            }
+        }
+        return view;
+    }
+
+    private View derive(View view, String name, Function<NavigableMap<Integer, Integer>, NavigableMap<Integer, Integer>> f) {
+        NavigableMap<Integer, Integer> expected = null, actual = null;
+        RuntimeException expectedError = null, actualError = null;
+        try {
+            expected = f.apply(view.expected);
+        } catch (RuntimeException e) {
+            expectedError = e;
+        }
+        try {
+            actual = f.apply(view.actual);
+        } catch (RuntimeException e) {
+            actualError = e;
+        }
+        check(Objects.equals(errorClass(expectedError), errorClass(actualError)),
+                view.name + name + ": " + errorClass(expectedError) + " != " + errorClass(actualError));
+        if (expected == null)
+            return null;
+        check(Objects.equals(expected.comparator(), actual.comparator()), view.name + name + ".comparator() differs");
+        return new View(expected, actual, view.name + name);
+    }
+
+    private void operate(View view, int putPercent) {
+        int key = key();
+        int dice = random.nextInt(100);
+        if (dice < putPercent) {
+            int value = (int) done;
+            same(view, "put(" + key + ")", m -> m.put(key, value));
+        } else if (dice < 80) {
+            if (random.nextBoolean())
+                same(view, "remove(" + key + ")", m -> m.remove(key));
+            else
+                same(view, "keySet().remove(" + key + ")", m -> m.navigableKeySet().remove(key));
+        } else if (dice < 84) {
+            same(view, "get(" + key + ")", m -> m.get(key));
+            same(view, "containsKey(" + key + ")", m -> m.containsKey(key));
+        } else if (dice < 90) {
+            navigate(view, key);
+        } else if (dice < 92) {
+            if (random.nextBoolean())
+                same(view, "pollFirstEntry()", NavigableMap::pollFirstEntry);
+            else
+                same(view, "pollLastEntry()", NavigableMap::pollLastEntry);
+        } else if (dice < 95) {
+            same(view, "size()", NavigableMap::size);
+            same(view, "isEmpty()", NavigableMap::isEmpty);
+            if (range <= SMALL)
+                same(view, "toString()", NavigableMap::toString);
+        } else if (dice < 99 || range > SMALL) {
+            iterate(view);
+        } else {
+            same(view, "clear()", m -> {
+                m.clear();
+                return m.isEmpty();
+            });
+        }
+    }
+
+    private void navigate(View view, int key) {
+        switch (random.nextInt(12)) {
+            case 0:
+                same(view, "lowerEntry(" + key + ")", m -> m.lowerEntry(key));
+                break;
+            case 1:
+                same(view, "floorEntry(" + key + ")", m -> m.floorEntry(key));
+                break;
+            case 2:
+                same(view, "ceilingEntry(" + key + ")", m -> m.ceilingEntry(key));
+                break;
+            case 3:
+                same(view, "higherEntry(" + key + ")", m -> m.higherEntry(key));
+                break;
+            case 4:
+                same(view, "lowerKey(" + key + ")", m -> m.lowerKey(key));
+                break;
+            case 5:
+                same(view, "floorKey(" + key + ")", m -> m.floorKey(key));
+                break;
+            case 6:
+                same(view, "ceilingKey(" + key + ")", m -> m.ceilingKey(key));
+                break;
+            case 7:
+                same(view, "higherKey(" + key + ")", m -> m.higherKey(key));
+                break;
+            case 8:
+                same(view, "firstEntry()", NavigableMap::firstEntry);
+                break;
+            case 9:
+                same(view, "lastEntry()", NavigableMap::lastEntry);
+                break;
+            case 10:
+                same(view, "firstKey()", NavigableMap::firstKey);
+                break;
+            default:
+                same(view, "lastKey()", NavigableMap::lastKey);
+                break;
+        }
+    }
+
+    /**
+     * 两边同步遍历，随机删除当前元素或修改当前Entry的value
+     */
+    private void iterate(View view) {
+        String name;
+        Iterator<?> expected, actual;
+        switch (random.nextInt(4)) {
+            case 0:
+                name = ".entrySet()";
+                expected = view.expected.entrySet().iterator();
+                actual = view.actual.entrySet().iterator();
+                break;
+            case 1:
+                name = ".keySet()";
+                expected = view.expected.navigableKeySet().iterator();
+                actual = view.actual.navigableKeySet().iterator();
+                break;
+            case 2:
+                name = ".values()";
+                expected = view.expected.values().iterator();
+                actual = view.actual.values().iterator();
+                break;
+            default:
+                name = ".descendingKeySet()";
+                expected = view.expected.descendingKeySet().iterator();
+                actual = view.actual.descendingKeySet().iterator();
+                break;
+        }
+        name = view.name + name;
+        int removePercent = random.nextInt(100);
+        int steps = random.nextBoolean() ? Integer.MAX_VALUE : random.nextInt(8);
+        for (int step = 0; step < steps; step++) {
+            check(expected.hasNext() == actual.hasNext(), name + " hasNext differs at step " + step);
+            if (!expected.hasNext())
+                break;
+            Object e = expected.next(), a = actual.next();
+            check(describe(e).equals(describe(a)), name + " step " + step + ": " + describe(e) + " != " + describe(a));
+            if (random.nextInt(100) < removePercent) {
+                expected.remove();
+                actual.remove();
+                if (random.nextInt(16) == 0)
+                    check(Objects.equals(run(expected::remove), run(actual::remove)), name + " second remove()");
+            } else if (e instanceof Map.Entry && random.nextInt(8) == 0) {
+                int value = (int) done;
+                Object old = ((Map.Entry<?, Integer>) e).setValue(value);
+                check(Objects.equals(old, ((Map.Entry<?, Integer>) a).setValue(value)), name + " setValue at step " + step);
+            }
+        }
+    }
+
+    private static String describe(Object o) {
+        if (o instanceof Map.Entry)
+            return ((Map.Entry<?, ?>) o).getKey() + "=" + ((Map.Entry<?, ?>) o).getValue();
+        return String.valueOf(o);
+    }
+
+    /**
+     * 两边执行同一操作，比较返回值或异常类型
+     */
+    private void same(View view, String what, Function<NavigableMap<Integer, Integer>, Object> op) {
+        Object expected = outcome(() -> op.apply(view.expected)), actual = outcome(() -> op.apply(view.actual));
+        check(Objects.equals(expected, actual), view.name + "." + what + " = " + actual + ", expected " + expected);
+    }
+
+    private interface Call {
+        Object call();
+    }
+
+    private static Object outcome(Call call) {
+        try {
+            Object result = call.call();
+            return result instanceof Map.Entry ? describe(result) : result;
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
+    private static Object run(Runnable call) {
+        return outcome(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private static Object errorClass(RuntimeException e) {
+        return e == null ? null : e.getClass();
+    }
+
+    private void checkInvariants() {
+        checkInvariants(map);
+    }
+
+    private void checkInvariants(RBTreeMap<Integer, Integer> map) {
+        try {
+            map.checkInvariants();
+        } catch (IllegalStateException e) {
+            throw new AssertionError(e.getMessage() + " after operation " + done, e);
+        }
+    }
+
+    private void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message + " at operation " + done);
+    }
+}
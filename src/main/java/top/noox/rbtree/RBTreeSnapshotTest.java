@@ -0,0 +1,318 @@
+package top.noox.rbtree;
+
+import top.noox.snapshot.Codec;
+import top.noox.snapshot.Codecs;
+import top.noox.snapshot.SnapshotOutput;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * <p>RBTree快照（writeTo/readFrom）的往返测试，直接运行main，发现不一致时抛出AssertionError
+ * <p>每棵树写出后读入另一棵已有内容的树，检查内容被完整替换、不变式成立，再次写出的字节与原快照相同：
+ * <p>情景1：空树、只有一个结点的树 <span style="color:#4f86cd"> => 快照只有头部或只有一项，读入后原内容被清空
+ * <p>情景2：value为null（Codecs.nullable） <span style="color:#4f86cd"> => null与非null的value原样还原
+ * <p>情景3：String key有长公共前缀，含代理对，公共前缀恰好止于代理对中间 <span style="color:#4f86cd"> => 按前缀编码后原样还原
+ * <p>情景4：相邻key的差超出int/long范围、逆序比较器下差为负 <span style="color:#4f86cd"> => 差值溢出后仍原样还原
+ * <p>情景5：快照在任意位置截断、头部被改坏 <span style="color:#4f86cd"> => 抛出IOException，树的内容不变
+ * <p>情景6：快照内容被改坏：字符串长度极大或为负、公共前缀长于前一个key、key不严格升序、null标记非法、int越界
+ * <span style="color:#4f86cd"> => 抛出IOException而不是OutOfMemoryError或其他运行时异常，树的内容不变
+ * <p>情景7：随机改写快照内容中的字节 <span style="color:#4f86cd"> => 要么抛出IOException且树不变，要么读入成功且不变式成立
+ * <p>另外随机生成各种规模的String树做往返，key取自含代理对的小字母表，公共前缀很多
+ * <p>参数：随机往返次数（默认1000）、随机种子（默认0）
+ */
+public class RBTreeSnapshotTest {
+
+    private static final Codec<String> NULLABLE_STRING = Codecs.nullable(Codecs.STRING);
+
+    private static final Codec<Integer> NULLABLE_INTEGER = Codecs.nullable(Codecs.INTEGER);
+
+    /**
+     * 随机key的字母表：BMP字符，两个共用高位代理的增补字符和一个高位代理不同的增补字符，U+FFFF按码元排在代理对之后
+     */
+    private static final String[] ALPHABET = {"a", "b", "\u00E9", "\u4E2D", "\uD83D\uDE00", "\uD83D\uDE01", "\uD83E\uDD14", "\uFFFF"};
+
+    private static final int MAX_RANDOM_SIZE = 1 << 11;
+
+    /**
+     * 截断快照时最多尝试的位置数，快照较短时逐个位置尝试
+     */
+    private static final int MAX_CUTS = 32;
+
+    /**
+     * 每个快照随机改写字节的次数
+     */
+    private static final int FLIPS = 256;
+
+    /**
+     * 快照的magic与格式版本，共5字节，其后是个数与内容
+     */
+    private static final int PREAMBLE = 5;
+
+    /**
+     * 手工写出的快照内容
+     */
+    private interface Body {
+        void write(SnapshotOutput out) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long rounds = args.length > 0 ? Long.parseLong(args[0]) : 1000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        Random random = new Random(seed);
+
+        //情景1
+        roundTrip(new TreeMap<>(), map(5, 5), null, Codecs.INTEGER, Codecs.INTEGER, "empty tree", random);
+        roundTrip(map(42, 7), map(5, 5, 6, 6), null, Codecs.INTEGER, Codecs.INTEGER, "single entry", random);
+        roundTrip(map("only", null), map("old", "x"), null, Codecs.STRING, NULLABLE_STRING, "single entry with a null value", random);
+
+        //情景2
+        TreeMap<Integer, Integer> nullable = new TreeMap<>();
+        for (int i = 0; i < 100; i++)
+            nullable.put(i * 3 - 150, i % 3 == 0 ? null : i);
+        roundTrip(nullable, map(5, 5), null, Codecs.INTEGER, NULLABLE_INTEGER, "nullable values", random);
+
+        //情景3
+        TreeMap<String, String> prefixes = new TreeMap<>();
+        //U+1F600与U+1F601共用高位代理，与U+1FA00共用低位代理；U+FFFF的码元大于所有代理
+        for (String key : new String[]{"", "a", "ab", "abc", "abcd", "abd", "b", "x\uD83D\uDE00", "x\uD83D\uDE00a",
+                "x\uD83D\uDE00\uD83D\uDE01", "x\uD83D\uDE01", "x\uD83D\uDE01\uD83D\uDE00", "x\uD83E\uDE00", "x\uFFFF", "\uD83D\uDE00"})
+            prefixes.put(key, key.isEmpty() ? null : key + key.length());
+        StringBuilder longKey = new StringBuilder();
+        while (longKey.length() < 100_000)
+            longKey.append("\uD83D\uDE00long");
+        prefixes.put(longKey.toString(), "long");
+        prefixes.put(longKey + "\uD83D\uDE01", "longer");
+        roundTrip(prefixes, map("old", "x"), null, Codecs.STRING, NULLABLE_STRING, "strings with shared prefixes and surrogate pairs", random);
+
+        //情景4
+        roundTrip(map(Integer.MIN_VALUE, 1, -1, 2, 0, 3, Integer.MAX_VALUE, 4), map(5, 5), null,
+                Codecs.INTEGER, Codecs.INTEGER, "int extremes", random);
+        roundTrip(map(Long.MIN_VALUE, 1L, -1L, 2L, 0L, 3L, Long.MAX_VALUE, 4L), map(5L, 5L), null,
+                Codecs.LONG, Codecs.LONG, "long extremes", random);
+        TreeMap<Integer, Integer> reversed = new TreeMap<>(Comparator.reverseOrder());
+        reversed.putAll(map(Integer.MIN_VALUE, 1, -1, 2, 0, 3, 1000, 4, Integer.MAX_VALUE, 5));
+        roundTrip(reversed, map(5, 5), Comparator.reverseOrder(), Codecs.INTEGER, Codecs.INTEGER, "reverse order", random);
+
+        //情景5：头部被改坏
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RBTree<Integer, Integer> small = tree(map(1, 1, 2, 2), null);
+        small.writeTo(bytes, Codecs.INTEGER, Codecs.INTEGER);
+        byte[] snapshot = bytes.toByteArray();
+        for (int i : new int[]{0, 4}) {
+            byte[] corrupt = snapshot.clone();
+            corrupt[i] ^= 0x40;
+            rejected(corrupt, map(5, 5), null, Codecs.INTEGER, Codecs.INTEGER, "corrupt byte " + i + " of the header");
+        }
+
+        //情景6
+        byte[] preamble = Arrays.copyOf(snapshot, PREAMBLE);
+        rejected(handmade(preamble, 1, out -> out.writeVarLong(0x7FFFFFF0L)), map("old", "x"), null,
+                Codecs.STRING, NULLABLE_STRING, "a string length of 2^31 - 16");
+        rejected(handmade(preamble, 1, out -> out.writeVarLong(-1)), map("old", "x"), null,
+                Codecs.STRING, NULLABLE_STRING, "a negative string length");
+        rejected(handmade(preamble, 2, out -> {
+            string(out, "abc");
+            out.writeByte(0);
+            out.writeVarLong(10);
+            string(out, "x");
+            out.writeByte(0);
+        }), map("old", "x"), null, Codecs.STRING, NULLABLE_STRING, "a prefix longer than the previous key");
+        rejected(handmade(preamble, 2, out -> {
+            string(out, "b");
+            out.writeByte(0);
+            out.writeVarLong(0);
+            string(out, "a");
+            out.writeByte(0);
+        }), map("old", "x"), null, Codecs.STRING, NULLABLE_STRING, "descending keys");
+        rejected(handmade(preamble, 1, out -> {
+            string(out, "a");
+            out.writeByte(7);
+        }), map("old", "x"), null, Codecs.STRING, NULLABLE_STRING, "a null flag of 7");
+        rejected(handmade(preamble, 2, out -> {
+            out.writeVarLong(10);
+            out.writeVarLong(2);
+            out.writeVarLong(0);
+            out.writeVarLong(2);
+        }), map(5, 5), null, Codecs.INTEGER, Codecs.INTEGER, "a repeated int key");
+        rejected(handmade(preamble, 1, out -> {
+            out.writeVarLong(1L << 40);
+            out.writeVarLong(2);
+        }), map(5, 5), null, Codecs.INTEGER, Codecs.INTEGER, "an int key out of range");
+
+        //情景7
+        corrupted(prefixes, map("old", "x"), Codecs.STRING, NULLABLE_STRING, "strings with shared prefixes", random);
+        corrupted(nullable, map(5, 5), Codecs.INTEGER, NULLABLE_INTEGER, "nullable values", random);
+
+        for (long round = 0; round < rounds; round++) {
+            int size = random.nextInt(8) == 0 ? random.nextInt(4) : random.nextInt(MAX_RANDOM_SIZE);
+            TreeMap<String, String> model = new TreeMap<>();
+            while (model.size() < size) {
+                String key = randomString(random);
+                model.put(key, random.nextInt(4) == 0 ? null : randomString(random));
+            }
+            roundTrip(model, map("old", "x"), null, Codecs.STRING, NULLABLE_STRING, "random round " + round, random);
+            if (round % 64 == 0)
+                corrupted(model, map("old", "x"), Codecs.STRING, NULLABLE_STRING, "random round " + round, random);
+        }
+        System.out.println("ok: " + rounds + " random round trips");
+    }
+
+    /**
+     * <p>写出model对应的树，读入一棵内容为existing的树，比较内容与不变式；通过Channel再做一次；
+     * 最后在若干位置截断快照，检查每次都抛出IOException且existing保持不变
+     */
+    private static <K, V> void roundTrip(TreeMap<K, V> model, Map<K, V> existing, Comparator<? super K> comparator,
+                                         Codec<K> keyCodec, Codec<V> valueCodec, String what, Random random) throws IOException {
+        RBTree<K, V> tree = tree(model, comparator);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        tree.writeTo(bytes, keyCodec, valueCodec);
+        byte[] snapshot = bytes.toByteArray();
+
+        RBTree<K, V> copy = tree(existing, comparator);
+        copy.readFrom(new ByteArrayInputStream(snapshot), keyCodec, valueCodec);
+        compare(copy, model, what);
+        checkInvariants(copy, what);
+
+        RBTree<K, V> viaChannel = new RBTree<>(comparator);
+        viaChannel.readFrom(Channels.newChannel(new ByteArrayInputStream(snapshot)), keyCodec, valueCodec);
+        compare(viaChannel, model, what + " through a channel");
+        ByteArrayOutputStream again = new ByteArrayOutputStream();
+        viaChannel.writeTo(Channels.newChannel(again), keyCodec, valueCodec);
+        check(Arrays.equals(snapshot, again.toByteArray()), "rewritten snapshot differs for " + what);
+
+        int cuts = Math.min(snapshot.length, MAX_CUTS);
+        for (int i = 0; i < cuts; i++) {
+            int length = snapshot.length <= MAX_CUTS ? i : i < 2 ? snapshot.length - 1 - i : random.nextInt(snapshot.length);
+            rejected(Arrays.copyOf(snapshot, length), existing, comparator, keyCodec, valueCodec,
+                    what + " truncated to " + length + " of " + snapshot.length + " bytes");
+        }
+    }
+
+    /**
+     * 读入不完整或损坏的快照必须抛出IOException，读入前的内容保持不变
+     */
+    private static <K, V> void rejected(byte[] snapshot, Map<K, V> existing, Comparator<? super K> comparator,
+                                        Codec<K> keyCodec, Codec<V> valueCodec, String what) {
+        RBTree<K, V> tree = tree(existing, comparator);
+        try {
+            tree.readFrom(new ByteArrayInputStream(snapshot), keyCodec, valueCodec);
+        } catch (IOException expected) {
+            compare(tree, existing, "failed read of " + what);
+            checkInvariants(tree, "failed read of " + what);
+            return;
+        }
+        throw new AssertionError("read " + what + " without an IOException");
+    }
+
+    /**
+     * 随机改写快照个数与内容中的1~3个字节后读入：抛出IOException时树不变，读入成功时不变式成立，
+     * 抛出其他异常或错误都视为失败
+     */
+    private static <K, V> void corrupted(TreeMap<K, V> model, Map<K, V> existing, Codec<K> keyCodec, Codec<V> valueCodec,
+                                         String what, Random random) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        tree(model, null).writeTo(bytes, keyCodec, valueCodec);
+        byte[] snapshot = bytes.toByteArray();
+        if (snapshot.length == PREAMBLE + 1)
+            return;
+        for (int flip = 0; flip < FLIPS; flip++) {
+            byte[] corrupt = snapshot.clone();
+            for (int n = 1 + random.nextInt(3); n > 0; n--)
+                corrupt[PREAMBLE + random.nextInt(corrupt.length - PREAMBLE)] ^= 1 << random.nextInt(8);
+            String when = what + " with corrupt bytes, attempt " + flip;
+            RBTree<K, V> tree = tree(existing, null);
+            try {
+                tree.readFrom(new ByteArrayInputStream(corrupt), keyCodec, valueCodec);
+            } catch (IOException expected) {
+                compare(tree, existing, "failed read of " + when);
+                continue;
+            } catch (RuntimeException | Error e) {
+                throw new AssertionError("reading " + when + " threw " + e, e);
+            }
+            checkInvariants(tree, when);
+        }
+    }
+
+    /**
+     * 手工拼出的快照：magic与格式版本取自真实的快照，随后是个数与内容
+     */
+    private static byte[] handmade(byte[] preamble, long count, Body body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(preamble);
+        SnapshotOutput out = new SnapshotOutput(bytes);
+        out.writeVarLong(count);
+        body.write(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 与Codecs.STRING相同的完整编码，只用于ASCII
+     */
+    private static void string(SnapshotOutput out, String value) throws IOException {
+        out.writeVarLong(value.length());
+        for (int i = 0; i < value.length(); i++)
+            out.writeByte(value.charAt(i));
+    }
+
+    private static <K, V> RBTree<K, V> tree(Map<K, V> entries, Comparator<? super K> comparator) {
+        RBTree<K, V> tree = new RBTree<>(comparator);
+        for (Map.Entry<K, V> entry : entries.entrySet())
+            tree.insert(entry.getKey(), entry.getValue());
+        return tree;
+    }
+
+    private static String randomString(Random random) {
+        StringBuilder builder = new StringBuilder();
+        for (int length = random.nextInt(12); length > 0; length--)
+            builder.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        return builder.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> TreeMap<K, V> map(Object... keysAndValues) {
+        TreeMap<K, V> map = new TreeMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2)
+            map.put((K) keysAndValues[i], (V) keysAndValues[i + 1]);
+        return map;
+    }
+
+    private static <K, V> void compare(RBTree<K, V> tree, Map<K, V> model, String what) {
+        check(tree.size() == model.size(), "size " + tree.size() + " != " + model.size() + " for " + what);
+        Iterator<Map.Entry<K, V>> actual = tree.iterator();
+        List<K> mismatched = new ArrayList<>();
+        for (Map.Entry<K, V> expected : model.entrySet()) {
+            check(actual.hasNext(), "missing " + expected.getKey() + " for " + what);
+            Map.Entry<K, V> entry = actual.next();
+            if (!entry.getKey().equals(expected.getKey()) || !Objects.equals(entry.getValue(), expected.getValue()))
+                mismatched.add(expected.getKey());
+        }
+        check(!actual.hasNext(), "extra entries for " + what);
+        check(mismatched.isEmpty(), "entries differ at " + mismatched + " for " + what);
+    }
+
+    private static void checkInvariants(RBTree<?, ?> tree, String what) {
+        try {
+            tree.checkInvariants();
+        } catch (IllegalStateException e) {
+            throw new AssertionError(e.getMessage() + " for " + what, e);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
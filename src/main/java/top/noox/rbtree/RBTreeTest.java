@@ -7,6 +7,7 @@ public class RBTreeTest {
     public static void main(String[] args) {
 
         RBTree<String, Object> rbTree = new RBTree<>();
+        rbTree.setListener(TreeOperation::show);
         Scanner sc = new Scanner(System.in);
 
         while (true) {
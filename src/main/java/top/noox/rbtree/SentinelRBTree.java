@@ -0,0 +1,472 @@
+package top.noox.rbtree;
+
+/**
+ * <p>以哨兵结点代替null的红黑树（算法导论的写法），插入、删除、查找的语义与 {@link RBTree} 一致
+ * <p>每棵树持有一个黑色的nil结点，所有叶子与根的parent都指向它：取颜色、取父结点、取叔叔/兄弟/侄子时不再判空，
+ * 修复过程中的isRed、isBlack直接读color
+ * <p>删除时用后继结点整体替换被删结点（transplant），不交换key/value，修复从替换上来的结点x开始；
+ * x可能就是nil，此时nil.parent临时记录x的父结点，所以nil不能在多棵树之间共享
+ * <p>旋转中仍保留对nil的判断，避免删除修复过程中改写nil.parent
+ * <p>不维护子树结点数，没有顺序统计与metrics，只有size计数
+ * <p>
+ * @param <K> key
+ * @param <V> value
+ */
+public class SentinelRBTree<K extends Comparable<K>, V> {
+
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
+    /**
+     * 哨兵，颜色恒为黑色，key与value为null
+     */
+    private final Node<K, V> nil = new Node<>(null, null, BLACK);
+
+    private Node<K, V> root = nil;
+
+    private int size;
+
+
+    /**
+     * 中序遍历，与 RBTree.inOrderPrint 相同，借助父指针逐个找后继，不递归
+     */
+    public void inOrderPrint() {
+        if (root == nil)
+            return;
+        Node<K, V> node = root;
+        while (node.left != nil)
+            node = node.left;
+        for (; node != nil; node = successor(node))
+            System.out.println(node);
+    }
+
+    /**
+     * 中序后继：有右子树时为右子树的最小结点，否则向上找到第一个以当前分支为左子树的祖先，没有时返回nil
+     */
+    private Node<K, V> successor(Node<K, V> node) {
+        if (node.right != nil) {
+            node = node.right;
+            while (node.left != nil)
+                node = node.left;
+            return node;
+        }
+        Node<K, V> parent = node.parent;
+        while (parent != nil && node == parent.right) {
+            node = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+
+    /**
+     * 对外插入方法，key已存在时覆盖value
+     * @param key  key
+     * @param value value
+     */
+    public void insert(K key, V value) {
+
+        Node<K, V> parent = nil, x = this.root;
+        int cmp = 0;
+
+        while (x != nil) {
+            parent = x;
+            cmp = key.compareTo(x.key);
+            if (cmp == 0) {
+                x.value = value;
+                return;
+            }
+            x = cmp > 0 ? x.right : x.left;
+        }
+
+        Node<K, V> node = new Node<>(key, value, RED);
+        node.parent = parent;
+        node.left = node.right = nil;
+        if (parent == nil)  //首次插入
+            this.root = node;
+        else if (cmp > 0)
+            parent.right = node;
+        else
+            parent.left = node;
+
+        size++;
+        insertFixUp(node);
+    }
+
+    /**
+     * <p>插入后修复红黑树平衡，情景同 RBTree.insertFixUp
+     * <p>根的parent为黑色的nil，父结点为红色时爷爷结点一定存在，叔叔结点可能是nil但同样可以直接读颜色
+     * @param node 当前新插入结点
+     */
+    private void insertFixUp(Node<K, V> node) {
+        //情景4：父结点为红色
+        while (node.parent.color == RED) {
+            Node<K, V> parent = node.parent;
+            Node<K, V> gParent = parent.parent;
+
+            //父为爷的左孩子
+            if (parent == gParent.left) {
+                Node<K, V> uncle = gParent.right;
+
+                //叔父双红：变色后以爷爷结点为当前结点进入下一轮
+                if (uncle.color == RED) {
+                    parent.color = BLACK;
+                    uncle.color = BLACK;
+                    gParent.color = RED;
+                    node = gParent;
+                    continue;
+                }
+                //LR：父左旋，转为LL
+                if (node == parent.right) {
+                    leftRotate(parent);
+                    parent = node;
+                }
+                //LL
+                parent.color = BLACK;
+                gParent.color = RED;
+                rightRotate(gParent);
+
+            //父为爷的右孩子
+            } else {
+                Node<K, V> uncle = gParent.left;
+
+                //叔父双红
+                if (uncle.color == RED) {
+                    parent.color = BLACK;
+                    uncle.color = BLACK;
+                    gParent.color = RED;
+                    node = gParent;
+                    continue;
+                }
+                //RL：父右旋，转为RR
+                if (node == parent.left) {
+                    rightRotate(parent);
+                    parent = node;
+                }
+                //RR
+                parent.color = BLACK;
+                gParent.color = RED;
+                leftRotate(gParent);
+            }
+            //旋转后子树的根为黑色，修复结束
+            break;
+        }
+        //情景1：双红上溯到了根
+        this.root.color = BLACK;
+    }
+
+    public void delete(K key) {
+        Node<K, V> node = find(key);
+        if (node != null)
+            delete(node);
+    }
+
+    /**
+     * <p>删除结点
+     * <p>
+     * <p>情景1：没有左子树 <span style="color:#4f86cd"> => 右子树（可能是nil）替换被删结点
+     * <p>情景2：没有右子树 <span style="color:#4f86cd"> => 左子树替换被删结点
+     * <p>情景3：带有两个子树 <span style="color:#4f86cd"> => 后继结点y取代被删结点的位置并继承其颜色，y的右子树替换y原来的位置
+     * <p>真正离开原位置的结点（情景1、2中的被删结点，情景3中的后继）为黑色时，从替换它的结点x开始修复
+     * <p>
+     * @param node 要删除的结点
+     */
+    private void delete(Node<K, V> node) {
+
+        Node<K, V> y = node, x;
+        boolean removedColor = y.color;
+
+        if (node.left == nil) {
+            x = node.right;
+            transplant(node, node.right);
+        } else if (node.right == nil) {
+            x = node.left;
+            transplant(node, node.left);
+        } else {
+            y = node.right;
+            while (y.left != nil)
+                y = y.left;
+            removedColor = y.color;
+            x = y.right;
+
+            //x可能是nil，也要记下它的父结点供修复使用
+            if (y.parent == node) {
+                x.parent = y;
+            } else {
+                transplant(y, y.right);
+                y.right = node.right;
+                y.right.parent = y;
+            }
+            transplant(node, y);
+            y.left = node.left;
+            y.left.parent = y;
+            y.color = node.color;
+        }
+
+        size--;
+        if (removedColor == BLACK)
+            deleteFixUp(x);
+    }
+
+    /**
+     * 用v替换u在父结点中的位置，v为nil时同样更新nil.parent
+     */
+    private void transplant(Node<K, V> u, Node<K, V> v) {
+        if (u.parent == nil)
+            this.root = v;
+        else if (u == u.parent.left)
+            u.parent.left = v;
+        else
+            u.parent.right = v;
+        v.parent = u.parent;
+    }
+
+    /**
+     * <p>修复删除后造成的可能的红黑树失衡，x所在子树比兄弟子树少一个黑结点，情景同 RBTree.deleteFixUp
+     * <p>x是红色或根时染黑即可结束；兄弟结点一定不是nil，侄子结点可能是nil但可以直接读颜色
+     * <p>
+     * @param x  替换被删结点的结点，可能是nil
+     */
+    private void deleteFixUp(Node<K, V> x) {
+        while (x != this.root && x.color == BLACK) {
+            Node<K, V> parent = x.parent;
+
+            if (x == parent.left) {
+                Node<K, V> brother = parent.right;
+                //红兄弟：左旋父后x的兄弟变为黑色
+                if (brother.color == RED) {
+                    brother.color = BLACK;
+                    parent.color = RED;
+                    leftRotate(parent);
+                    brother = parent.right;
+                }
+                //黑兄弟，双黑侄：兄弟染红，以父结点进入下一轮
+                if (brother.left.color == BLACK && brother.right.color == BLACK) {
+                    brother.color = RED;
+                    x = parent;
+                    continue;
+                }
+                //黑兄弟，左红侄（右侄为黑）：右旋兄，转为右红侄
+                if (brother.right.color == BLACK) {
+                    brother.left.color = BLACK;
+                    brother.color = RED;
+                    rightRotate(brother);
+                    brother = parent.right;
+                }
+                //黑兄弟，右红侄
+                brother.color = parent.color;
+                parent.color = BLACK;
+                brother.right.color = BLACK;
+                leftRotate(parent);
+
+            } else {
+                Node<K, V> brother = parent.left;
+                //红兄弟
+                if (brother.color == RED) {
+                    brother.color = BLACK;
+                    parent.color = RED;
+                    rightRotate(parent);
+                    brother = parent.left;
+                }
+                //黑兄弟，双黑侄
+                if (brother.left.color == BLACK && brother.right.color == BLACK) {
+                    brother.color = RED;
+                    x = parent;
+                    continue;
+                }
+                //黑兄弟，右红侄（左侄为黑）：左旋兄，转为左红侄
+                if (brother.left.color == BLACK) {
+                    brother.right.color = BLACK;
+                    brother.color = RED;
+                    leftRotate(brother);
+                    brother = parent.left;
+                }
+                //黑兄弟，左红侄
+                brother.color = parent.color;
+                parent.color = BLACK;
+                brother.left.color = BLACK;
+                rightRotate(parent);
+            }
+            x = this.root;
+        }
+        x.color = BLACK;
+    }
+
+
+    /**
+     * 根据key查找红黑树中结点
+     * @param key   key
+     * @return  找到返回结点，否则返回null
+     */
+    public Node<K, V> find(K key) {
+
+        Node<K, V> node = this.root;
+
+        while (node != nil) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0)
+                return node;
+            node = cmp > 0 ? node.right : node.left;
+        }
+
+        return null;
+    }
+
+    /**
+     * 根据key查找value
+     * @param key   key
+     * @return  找到返回value，否则返回null
+     */
+    public V get(K key) {
+        Node<K, V> node = find(key);
+        return node == null ? null : node.value;
+    }
+
+    public boolean contains(K key) {
+        return find(key) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        this.root = nil;
+        this.size = 0;
+    }
+
+
+    /**
+     * 左旋，见 RBTree.leftRotate；x的父结点为nil时y成为根
+     * @param x : 要进行左旋的结点
+     */
+    private void leftRotate(Node<K, V> x) {
+        Node<K, V> y = x.right;
+        x.right = y.left;
+        if (y.left != nil)
+            y.left.parent = x;
+
+        y.parent = x.parent;
+        if (x.parent == nil)
+            this.root = y;
+        else if (x == x.parent.left)
+            x.parent.left = y;
+        else
+            x.parent.right = y;
+
+        y.left = x;
+        x.parent = y;
+    }
+
+    /**
+     * 右旋，见 RBTree.rightRotate
+     * @param y : 要进行右旋的结点
+     */
+    private void rightRotate(Node<K, V> y) {
+        Node<K, V> x = y.left;
+        y.left = x.right;
+        if (x.right != nil)
+            x.right.parent = y;
+
+        x.parent = y.parent;
+        if (y.parent == nil)
+            this.root = x;
+        else if (y == y.parent.left)
+            y.parent.left = x;
+        else
+            y.parent.right = x;
+
+        x.right = y;
+        y.parent = x;
+    }
+
+
+    /**
+     * <p>检查全部不变式，O(n)，供差分测试在修改后调用
+     * <p>nil为黑色；根为黑色且parent为nil；没有连续的红结点；黑高相同；parent指针正确；中序严格升序；size正确
+     * @throws IllegalStateException 被破坏的不变式
+     */
+    void checkInvariants() {
+        if (nil.color != BLACK)
+            throw new IllegalStateException("sentinel is red");
+        if (this.root != nil && (this.root.parent != nil || this.root.color != BLACK))
+            throw new IllegalStateException("root " + this.root.key + " is red or has a parent");
+        int[] count = new int[1];
+        checkInvariants(this.root, null, null, count);
+        if (count[0] != size)
+            throw new IllegalStateException("size is " + size + " but the tree holds " + count[0]);
+    }
+
+    /**
+     * 检查以node为根的子树，key必须落在 (lo, hi) 内，null表示不设界
+     * @return 子树的黑高（nil为1）
+     */
+    private int checkInvariants(Node<K, V> node, K lo, K hi, int[] count) {
+        if (node == nil)
+            return 1;
+
+        K key = node.key;
+        if (lo != null && key.compareTo(lo) <= 0 || hi != null && key.compareTo(hi) >= 0)
+            throw new IllegalStateException("key " + key + " is out of order, expected in (" + lo + ", " + hi + ")");
+        if (node.left != nil && node.left.parent != node || node.right != nil && node.right.parent != node)
+            throw new IllegalStateException("child of " + key + " has a wrong parent pointer");
+        if (node.color == RED && (node.left.color == RED || node.right.color == RED))
+            throw new IllegalStateException("red node " + key + " has a red child");
+
+        count[0]++;
+        int left = checkInvariants(node.left, lo, key, count);
+        int right = checkInvariants(node.right, key, hi, count);
+        if (left != right)
+            throw new IllegalStateException("black height differs under " + key + ": " + left + " vs " + right);
+        return node.color == BLACK ? left + 1 : left;
+    }
+
+
+    static class Node<K, V> {
+
+        private Node<K, V> parent;
+        private Node<K, V> left;
+        private Node<K, V> right;
+
+        private boolean color;
+        private K key;
+        private V value;
+
+
+        Node(K key, V value, boolean color) {
+            this.key = key;
+            this.value = value;
+            this.color = color;
+        }
+
+        @Override
+        public String toString() {
+            return "Node{" +
+                    "color=" + color +
+                    ", key=" + key +
+                    ", value=" + value +
+                    '}';
+        }
+
+        public boolean isColor() {
+            return color;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+    }
+
+
+    /**
+     * @return 根结点，空树时为null
+     */
+    public Node<K, V> getRoot() {
+        return this.root == nil ? null : this.root;
+    }
+
+}
@@ -0,0 +1,192 @@
+package top.noox.rbtree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+
+/**
+ * <p>按key范围分片的线程安全红黑树，每个分片是一棵独立的 {@link RBTree}，各自持有一把 {@link StampedLock}
+ * <p>不同分片上的写操作互不阻塞，写入分布均匀时吞吐量随线程数近似线性增长
+ * <p>分片按给定的分界点切分key空间：分片i保存 [boundaries[i-1], boundaries[i]) 内的key，分片数为分界点数+1
+ * <p>分片之间key有序且不相交，所以有序遍历与范围查询只需按分片顺序依次扫描，无需归并
+ * <p>
+ * @param <K> key
+ * @param <V> value
+ */
+@SuppressWarnings("unchecked")
+public class StripedRBTree<K extends Comparable<K>, V> {
+
+    private final K[] boundaries;
+
+    private final RBTree<K, V>[] shards;
+
+    private final StampedLock[] locks;
+
+
+    /**
+     * @param boundaries 升序且不重复的分界点，分片数为 boundaries.length + 1
+     */
+    public StripedRBTree(K[] boundaries) {
+        for (int i = 1; i < boundaries.length; i++)
+            if (boundaries[i - 1].compareTo(boundaries[i]) >= 0)
+                throw new IllegalArgumentException("boundaries must be strictly ascending");
+
+        this.boundaries = Arrays.copyOf(boundaries, boundaries.length);
+        this.shards = new RBTree[boundaries.length + 1];
+        this.locks = new StampedLock[boundaries.length + 1];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new RBTree<>();
+            locks[i] = new StampedLock();
+        }
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * 二分查找key所在分片：不大于key的分界点个数
+     */
+    private int shardOf(K key) {
+        int lo = 0, hi = boundaries.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (boundaries[mid].compareTo(key) <= 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+
+    public void insert(K key, V value) {
+        int i = shardOf(key);
+        long stamp = locks[i].writeLock();
+        try {
+            shards[i].insert(key, value);
+        } finally {
+            locks[i].unlockWrite(stamp);
+        }
+    }
+
+    public void delete(K key) {
+        int i = shardOf(key);
+        long stamp = locks[i].writeLock();
+        try {
+            shards[i].delete(key);
+        } finally {
+            locks[i].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 根据key查找value
+     * @param key   key
+     * @return  找到返回value，否则返回null
+     */
+    public V get(K key) {
+        int i = shardOf(key);
+        long stamp = locks[i].readLock();
+        try {
+            RBTree.RBNode<K, V> node = shards[i].find(key);
+            return node == null ? null : node.getValue();
+        } finally {
+            locks[i].unlockRead(stamp);
+        }
+    }
+
+    public boolean contains(K key) {
+        int i = shardOf(key);
+        long stamp = locks[i].readLock();
+        try {
+            return shards[i].find(key) != null;
+        } finally {
+            locks[i].unlockRead(stamp);
+        }
+    }
+
+
+    /**
+     * 按key升序遍历所有结点
+     * @param action 对每个key、value的处理
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        range(null, null, action);
+    }
+
+    /**
+     * 按key升序遍历 [lo, hi) 范围内的结点
+     * <p>每个分片在读锁内把范围内的键值对收集到列表，释放读锁后再逐个调用action：
+     * StampedLock不可重入，在读锁内回调时action修改同一分片会永远等待写锁
+     * <p>因此action可以修改本树，但修改不会反映在已收集的分片中；各分片内部是一致的快照，不同分片之间不是同一时刻的快照；
+     * 临时列表至多容纳一个分片的结点
+     * @param lo 下界（包含），null表示不限
+     * @param hi 上界（不包含），null表示不限
+     * @param action 对每个key、value的处理
+     */
+    public void range(K lo, K hi, BiConsumer<? super K, ? super V> action) {
+        int from = lo == null ? 0 : shardOf(lo);
+        int to = hi == null ? shards.length - 1 : shardOf(hi);
+        List<K> keys = new ArrayList<>();
+        List<V> values = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            long stamp = locks[i].readLock();
+            try {
+                scan(shards[i].getRoot(), lo, hi, keys, values);
+            } finally {
+                locks[i].unlockRead(stamp);
+            }
+            for (int j = 0; j < keys.size(); j++)
+                action.accept(keys.get(j), values.get(j));
+            keys.clear();
+            values.clear();
+        }
+    }
+
+    /**
+     * 借助显式栈中序遍历子树，跳过范围外的分支，范围内的键值对依次追加到keys、values
+     */
+    private void scan(RBTree.RBNode<K, V> root, K lo, K hi, List<K> keys, List<V> values) {
+        Deque<RBTree.RBNode<K, V>> stack = new ArrayDeque<>();
+        RBTree.RBNode<K, V> node = root;
+        while (node != null || !stack.isEmpty()) {
+            //向左下走，比lo小的结点及其左子树都不在范围内
+            while (node != null) {
+                if (lo != null && node.getKey().compareTo(lo) < 0) {
+                    node = node.getRight();
+                } else {
+                    stack.push(node);
+                    node = node.getLeft();
+                }
+            }
+            if (stack.isEmpty())
+                return;
+            node = stack.pop();
+            if (hi != null && node.getKey().compareTo(hi) >= 0)
+                return;
+            keys.add(node.getKey());
+            values.add(node.getValue());
+            node = node.getRight();
+        }
+    }
+
+    /**
+     * 检查各分片的不变式，以及每个key都落在所在分片的范围内，须在没有并发修改时调用
+     * @throws IllegalStateException 被破坏的不变式
+     */
+    void checkInvariants() {
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].checkInvariants();
+            RBTree.RBNode<K, V> first = shards[i].first(), last = shards[i].last();
+            if (first != null && i > 0 && first.getKey().compareTo(boundaries[i - 1]) < 0)
+                throw new IllegalStateException("key " + first.getKey() + " is below shard " + i);
+            if (last != null && i < boundaries.length && last.getKey().compareTo(boundaries[i]) >= 0)
+                throw new IllegalStateException("key " + last.getKey() + " is above shard " + i);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package top.noox.rbtree;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * <p>StripedRBTree与TreeMap的随机差分测试，直接运行main，发现不一致或不变式被破坏时抛出AssertionError
+ * <p>分界点为100、200、300、400，key取在 [-50, 450) 内，使首尾分片也有数据；随机插入与删除，每次get比较结果，
+ * 并随机做范围查询与模型的subMap比较：上下界可以为null、恰好落在分界点上、落在同一分片内或跨越多个分片，也可以颠倒
+ * <p>每个阶段结束时在forEach的回调里删除偶数key、覆盖奇数key的value，检查不会死锁，且结果与模型相同
+ * <p>参数：操作次数（默认2000000）、随机种子（默认0）
+ */
+public class StripedRBTreeTest {
+
+    private static final Integer[] BOUNDARIES = {100, 200, 300, 400};
+
+    private static final int LOW = -50, HIGH = 450;
+
+    private static final int PHASE = 1 << 14;
+
+    private static final long CALLBACK_TIMEOUT_MILLIS = 10_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        long operations = args.length > 0 ? Long.parseLong(args[0]) : 2_000_000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        Random random = new Random(seed);
+
+        StripedRBTree<Integer, Integer> tree = new StripedRBTree<>(BOUNDARIES);
+        TreeMap<Integer, Integer> model = new TreeMap<>();
+        for (long done = 0; done < operations; done++) {
+            int key = LOW + random.nextInt(HIGH - LOW);
+            int dice = random.nextInt(100);
+            if (dice < 45) {
+                tree.insert(key, (int) done);
+                model.put(key, (int) done);
+            } else if (dice < 85) {
+                tree.delete(key);
+                model.remove(key);
+            } else if (dice < 95) {
+                check(model.get(key) == null ? tree.get(key) == null : model.get(key).equals(tree.get(key)),
+                        "get(" + key + ") at operation " + done);
+                check(tree.contains(key) == model.containsKey(key), "contains(" + key + ") at operation " + done);
+            } else {
+                Integer lo = bound(random), hi = bound(random);
+                check(scan(tree, lo, hi).equals(expected(model, lo, hi)), "range(" + lo + ", " + hi + ") at operation " + done);
+            }
+            if (done % PHASE == PHASE - 1) {
+                checkInvariants(tree, done);
+                modifyInCallback(tree, model, done);
+                checkInvariants(tree, done);
+                check(scan(tree, null, null).equals(new ArrayList<>(model.entrySet())), "forEach after callback at operation " + done);
+            }
+        }
+        System.out.println("ok: " + operations + " operations");
+    }
+
+    /**
+     * null、分界点、分界点两侧或任意位置的界
+     */
+    private static Integer bound(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return null;
+            case 1:
+                return BOUNDARIES[random.nextInt(BOUNDARIES.length)] + random.nextInt(3) - 1;
+            default:
+                return LOW - 10 + random.nextInt(HIGH - LOW + 20);
+        }
+    }
+
+    private static List<Map.Entry<Integer, Integer>> scan(StripedRBTree<Integer, Integer> tree, Integer lo, Integer hi) {
+        List<Map.Entry<Integer, Integer>> entries = new ArrayList<>();
+        tree.range(lo, hi, (k, v) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(k, v)));
+        return entries;
+    }
+
+    /**
+     * [lo, hi) 内的键值对，lo &gt;= hi 时为空
+     */
+    private static List<Map.Entry<Integer, Integer>> expected(TreeMap<Integer, Integer> model, Integer lo, Integer hi) {
+        if (lo != null && hi != null && lo >= hi)
+            return new ArrayList<>();
+        NavigableMap<Integer, Integer> view = model;
+        if (lo != null)
+            view = view.tailMap(lo, true);
+        if (hi != null)
+            view = view.headMap(hi, false);
+        return new ArrayList<>(view.entrySet());
+    }
+
+    /**
+     * 在forEach的回调里修改正在遍历的分片：回调在读锁内执行时会在写锁上永远等待，因此放到单独的线程里限时等待
+     */
+    private static void modifyInCallback(StripedRBTree<Integer, Integer> tree, TreeMap<Integer, Integer> model, long done)
+            throws InterruptedException {
+        List<Throwable> failure = new ArrayList<>();
+        Thread thread = new Thread(() -> {
+            try {
+                tree.forEach((k, v) -> {
+                    if ((k & 1) == 0)
+                        tree.delete(k);
+                    else
+                        tree.insert(k, -v);
+                });
+            } catch (Throwable e) {
+                failure.add(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(CALLBACK_TIMEOUT_MILLIS);
+        check(!thread.isAlive(), "forEach callback that modifies the tree did not finish at operation " + done);
+        if (!failure.isEmpty())
+            throw new AssertionError("forEach callback failed at operation " + done, failure.get(0));
+
+        model.keySet().removeIf(k -> (k & 1) == 0);
+        model.replaceAll((k, v) -> -v);
+    }
+
+    private static void checkInvariants(StripedRBTree<Integer, Integer> tree, long done) {
+        try {
+            tree.checkInvariants();
+        } catch (IllegalStateException e) {
+            throw new AssertionError(e.getMessage() + " after operation " + done, e);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
@@ -44,7 +44,16 @@ public class TreeOperation {
 
 
     public static void show(RBTree.RBNode root) {
-        if (root == null) System.out.println("EMPTY!");
+        System.out.print(render(root));
+    }
+
+    /**
+     * 将树渲染为字符串，不做输出
+     * @param root 根结点
+     * @return 渲染结果，每层之间以换行分隔
+     */
+    public static String render(RBTree.RBNode root) {
+        if (root == null) return "EMPTY!" + System.lineSeparator();
         // 得到树的深度
         int treeDepth = getTreeDepth(root);
 
@@ -65,16 +74,17 @@ public class TreeOperation {
         // res[0][(arrayWidth + 1)/ 2] = (char)(root.val + '0');
         writeArray(root, 0, arrayWidth/ 2, res, treeDepth);
 
-        // 此时，已经将所有需要显示的元素储存到了二维数组中，将其拼接并打印即可
+        // 此时，已经将所有需要显示的元素储存到了二维数组中，将其拼接即可
+        StringBuilder sb = new StringBuilder();
         for (String[] line: res) {
-            StringBuilder sb = new StringBuilder();
             for (int i = 0; i < line.length; i ++) {
                 sb.append(line[i]);
                 if (line[i].length() > 1 && i <= line.length - 1) {
                     i += line[i].length() > 4 ? 2: line[i].length() - 1;
                 }
             }
-            System.out.println(sb.toString());
+            sb.append(System.lineSeparator());
         }
+        return sb.toString();
     }
 }
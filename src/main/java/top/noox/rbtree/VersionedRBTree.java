@@ -0,0 +1,234 @@
+package top.noox.rbtree;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+
+/**
+ * <p>多版本（MVCC）红黑树：每次提交生成一个新版本号，对应一棵 {@link PersistentRBTree}，未修改的子树在各版本间共享
+ * <p>{@link #snapshot()} 打开当前版本的快照，{@link #snapshot(long)} 打开仍保留着的历史版本；快照上的查找与遍历只读不可变的树，不加锁
+ * <p>打开的快照会登记（pin）自己的版本，不再被引用的版本在提交或关闭快照时回收：
+ * 历史表只保留最近 retainedVersions 个版本和仍被快照登记的版本，其余版本从表中移除，独有的结点随后由GC回收
+ * <p>长时间运行的扫描只会保住它自己的那个版本，之后提交的中间版本不会因为它而堆积
+ * <p>写操作串行执行；读操作、快照扫描与写操作互不阻塞
+ * <p>登记、释放与回收都在同一把锁 pinLock 内进行，回收不会移除已登记的版本；这把锁只在打开、关闭快照与提交末尾短暂持有，
+ * 与提交的监视器分开，提交中耗时的update不会阻塞打开快照
+ * <p>
+ * @param <K> key
+ * @param <V> value
+ */
+public class VersionedRBTree<K extends Comparable<K>, V> {
+
+    /**
+     * 版本号到该版本的树，最后一项即当前版本
+     */
+    private final ConcurrentSkipListMap<Long, PersistentRBTree<K, V>> versions = new ConcurrentSkipListMap<>();
+
+    /**
+     * 版本号到登记在该版本上的快照数，只在持有pinLock时访问
+     */
+    private final Map<Long, Integer> pins = new HashMap<>();
+
+    private final Object pinLock = new Object();
+
+    private final int retainedVersions;
+
+
+    public VersionedRBTree() {
+        this(1);
+    }
+
+    /**
+     * @param retainedVersions 无快照登记时也保留的最近版本数（含当前版本），供 {@link #snapshot(long)} 回看
+     */
+    public VersionedRBTree(int retainedVersions) {
+        if (retainedVersions < 1)
+            throw new IllegalArgumentException("retainedVersions must be at least 1");
+        this.retainedVersions = retainedVersions;
+        versions.put(0L, PersistentRBTree.empty());
+    }
+
+
+    /**
+     * 当前版本号，初始为0，每次改变了内容的提交加1
+     */
+    public long version() {
+        return versions.lastKey();
+    }
+
+    public int size() {
+        return versions.lastEntry().getValue().size();
+    }
+
+    /**
+     * 在当前版本上查找value
+     * @param key   key
+     * @return  找到返回value，否则返回null
+     */
+    public V get(K key) {
+        return versions.lastEntry().getValue().get(key);
+    }
+
+    public boolean contains(K key) {
+        return versions.lastEntry().getValue().contains(key);
+    }
+
+
+    /**
+     * 插入key，key已存在时覆盖value，作为一个新版本提交
+     * @return  提交后的版本号
+     */
+    public long insert(K key, V value) {
+        return commit(tree -> tree.insert(key, value));
+    }
+
+    /**
+     * 删除key，作为一个新版本提交
+     * @return  提交后的版本号
+     */
+    public long delete(K key) {
+        return commit(tree -> tree.delete(key));
+    }
+
+    /**
+     * <p>把一组修改作为一个版本提交，快照要么看到全部修改，要么一个都看不到
+     * <p>例如 commit(t -> t.insert(a, x).delete(b))
+     * @param update 由当前版本的树得到新树
+     * @return  提交后的版本号，树没有变化时不生成新版本
+     */
+    public synchronized long commit(UnaryOperator<PersistentRBTree<K, V>> update) {
+        Map.Entry<Long, PersistentRBTree<K, V>> head = versions.lastEntry();
+        PersistentRBTree<K, V> tree = update.apply(head.getValue());
+        if (tree == head.getValue())
+            return head.getKey();
+
+        long version = head.getKey() + 1;
+        versions.put(version, tree);
+        reclaim();
+        return version;
+    }
+
+
+    /**
+     * 打开当前版本的快照，用完后需要关闭
+     */
+    public Snapshot snapshot() {
+        while (true) {
+            Map.Entry<Long, PersistentRBTree<K, V>> head = versions.lastEntry();
+            Snapshot snapshot = open(head.getKey());
+            if (snapshot != null)
+                return snapshot;
+        }
+    }
+
+    /**
+     * 打开指定的历史版本
+     * @param version 版本号
+     * @throws IllegalArgumentException version晚于当前版本
+     * @throws IllegalStateException version已被回收
+     */
+    public Snapshot snapshot(long version) {
+        if (version > version())
+            throw new IllegalArgumentException("version " + version + " has not been committed yet");
+        Snapshot snapshot = open(version);
+        if (snapshot == null)
+            throw new IllegalStateException("version " + version + " has been reclaimed");
+        return snapshot;
+    }
+
+    /**
+     * 在pinLock内确认版本仍在表中并登记，回收同样持有pinLock，登记成功的版本在释放前不会被移除
+     * @return  版本已被回收时返回null
+     */
+    private Snapshot open(long version) {
+        synchronized (pinLock) {
+            PersistentRBTree<K, V> tree = versions.get(version);
+            if (tree == null)
+                return null;
+            pins.merge(version, 1, Integer::sum);
+            return new Snapshot(version, tree);
+        }
+    }
+
+    /**
+     * 释放登记，然后回收不再需要的版本
+     */
+    private void release(long version) {
+        synchronized (pinLock) {
+            pins.computeIfPresent(version, (v, count) -> count == 1 ? null : count - 1);
+            reclaim();
+        }
+    }
+
+    /**
+     * 移除既不在最近retainedVersions个版本之内、也没有快照登记的版本
+     * <p>提交与关闭快照时调用；已打开的快照自己持有树的引用，不受影响
+     */
+    private void reclaim() {
+        synchronized (pinLock) {
+            long keepFrom = versions.lastKey() - retainedVersions + 1;
+            versions.headMap(keepFrom).keySet().removeIf(version -> !pins.containsKey(version));
+        }
+    }
+
+    /**
+     * 历史表中保留的版本数，包括当前版本
+     */
+    public int retainedVersionCount() {
+        return versions.size();
+    }
+
+
+    /**
+     * <p>某一版本的只读视图，查找与遍历直接读取不可变的树
+     * <p>关闭后释放对版本的登记，该版本随后可被回收；关闭多次没有副作用
+     */
+    public class Snapshot implements Iterable<Map.Entry<K, V>>, AutoCloseable {
+
+        private final long version;
+
+        private final PersistentRBTree<K, V> tree;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Snapshot(long version, PersistentRBTree<K, V> tree) {
+            this.version = version;
+            this.tree = tree;
+        }
+
+        public long version() {
+            return version;
+        }
+
+        public PersistentRBTree<K, V> tree() {
+            return tree;
+        }
+
+        public int size() {
+            return tree.size();
+        }
+
+        public V get(K key) {
+            return tree.get(key);
+        }
+
+        public boolean contains(K key) {
+            return tree.contains(key);
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return tree.iterator();
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true))
+                release(version);
+        }
+    }
+
+}
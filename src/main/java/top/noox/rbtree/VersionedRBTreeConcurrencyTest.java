@@ -0,0 +1,218 @@
+package top.noox.rbtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>VersionedRBTree的并发测试，直接运行main，发现不一致时抛出AssertionError
+ * <p>一个写线程随机插入与删除，每次提交都生成新版本，并记下每个版本内容的指纹（size与键值对的散列和）；
+ * 多个读线程同时随机打开当前版本或最近几个历史版本，持有一段时间后再关闭，关闭时触发回收，与提交时的回收并发：
+ * <p>情景1：持有中的快照 <span style="color:#4f86cd"> => 内容等于该版本的指纹，snapshot(version)能再次打开同一版本
+ * <p>情景2：打开已回收的历史版本 <span style="color:#4f86cd"> => 抛出IllegalStateException，不影响其他快照
+ * <p>情景3：全部快照关闭后 <span style="color:#4f86cd"> => 只剩最近retainedVersions个版本，更早的版本无法打开
+ * <p>版本0的快照从开始一直持有到结束，检查它在所有提交之后仍可读、仍可再次打开
+ * <p>参数：提交次数（默认200000）、读线程数（默认4）、随机种子（默认0）
+ */
+public class VersionedRBTreeConcurrencyTest {
+
+    private static final int RETAINED = 4;
+
+    private static final int RANGE = 1 << 8;
+
+    /**
+     * 每个读线程同时持有的快照数上限
+     */
+    private static final int HELD = 4;
+
+    /**
+     * 读线程回看的历史版本数，超过RETAINED，使一部分打开落在已回收的版本上
+     */
+    private static final int LOOK_BACK = RETAINED * 2;
+
+    public static void main(String[] args) throws InterruptedException {
+        long commits = args.length > 0 ? Long.parseLong(args[0]) : 200_000L;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+        VersionedRBTree<Integer, Long> tree = new VersionedRBTree<>(RETAINED);
+        Map<Long, Long> fingerprints = new ConcurrentHashMap<>();
+        fingerprints.put(0L, fingerprint(0, 0));
+        VersionedRBTree<Integer, Long>.Snapshot first = tree.snapshot();
+        check(first.version() == 0, "first snapshot is version " + first.version());
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        long[] opened = new long[readers], reclaimed = new long[readers];
+        for (int i = 0; i < readers; i++) {
+            int reader = i;
+            threads.add(new Thread(() -> {
+                try {
+                    read(tree, fingerprints, writing, new Random(seed * 31 + reader + 1), opened, reclaimed, reader);
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads)
+            thread.start();
+
+        try {
+            write(tree, fingerprints, commits, new Random(seed));
+        } finally {
+            writing.set(false);
+            for (Thread thread : threads)
+                thread.join();
+        }
+        if (!failures.isEmpty())
+            throw new AssertionError("reader failed", failures.get(0));
+
+        verify(first, fingerprints, "version 0 held through " + commits + " commits");
+        VersionedRBTree<Integer, Long>.Snapshot again = tree.snapshot(0);
+        verify(again, fingerprints, "version 0 reopened after " + commits + " commits");
+        again.close();
+        first.close();
+
+        long last = tree.version();
+        check(last == commits, "version " + last + " != " + commits);
+        check(tree.retainedVersionCount() == RETAINED,
+                "retained " + tree.retainedVersionCount() + " versions after all snapshots closed, expected " + RETAINED);
+        for (long version = last - RETAINED + 1; version <= last; version++) {
+            VersionedRBTree<Integer, Long>.Snapshot snapshot = tree.snapshot(version);
+            verify(snapshot, fingerprints, "retained version " + version);
+            snapshot.close();
+        }
+        for (long version = 0; version <= last - RETAINED; version += Math.max(1, (last - RETAINED) / 64)) {
+            try {
+                tree.snapshot(version).close();
+            } catch (IllegalStateException expected) {
+                continue;
+            }
+            throw new AssertionError("unpinned version " + version + " was not reclaimed, current version " + last);
+        }
+
+        long totalOpened = 0, totalReclaimed = 0;
+        for (int i = 0; i < readers; i++) {
+            totalOpened += opened[i];
+            totalReclaimed += reclaimed[i];
+        }
+        System.out.println("ok: " + commits + " commits, " + readers + " readers, " + totalOpened + " snapshots, "
+                + totalReclaimed + " opens of reclaimed versions");
+    }
+
+    /**
+     * 每次提交都改变内容：插入的value是新版本号，删除只删已有的key；提交后记下新版本的指纹
+     */
+    private static void write(VersionedRBTree<Integer, Long> tree, Map<Long, Long> fingerprints, long commits, Random random) {
+        TreeMap<Integer, Long> model = new TreeMap<>();
+        long sum = 0;
+        for (long done = 0; done < commits; done++) {
+            int key = random.nextInt(RANGE);
+            long version;
+            if (random.nextBoolean() || !model.containsKey(key)) {
+                long value = tree.version() + 1;
+                Long old = model.put(key, value);
+                if (old != null)
+                    sum -= hash(key, old);
+                sum += hash(key, value);
+                version = tree.insert(key, value);
+                check(version == value, "insert(" + key + ") committed version " + version + ", expected " + value);
+            } else {
+                sum -= hash(key, model.remove(key));
+                version = tree.delete(key);
+            }
+            fingerprints.put(version, fingerprint(model.size(), sum));
+        }
+    }
+
+    private static void read(VersionedRBTree<Integer, Long> tree, Map<Long, Long> fingerprints, AtomicBoolean writing,
+                             Random random, long[] opened, long[] reclaimed, int reader) {
+        List<VersionedRBTree<Integer, Long>.Snapshot> held = new ArrayList<>();
+        while (writing.get()) {
+            VersionedRBTree<Integer, Long>.Snapshot snapshot;
+            if (random.nextBoolean()) {
+                snapshot = tree.snapshot();
+            } else {
+                long version = Math.max(0, tree.version() - random.nextInt(LOOK_BACK));
+                try {
+                    snapshot = tree.snapshot(version);
+                } catch (IllegalStateException e) {
+                    reclaimed[reader]++;
+                    continue;
+                }
+            }
+            opened[reader]++;
+            held.add(snapshot);
+
+            //持有期间版本不会被回收，可以再次打开
+            VersionedRBTree<Integer, Long>.Snapshot pinned = held.get(random.nextInt(held.size()));
+            VersionedRBTree<Integer, Long>.Snapshot again;
+            try {
+                again = tree.snapshot(pinned.version());
+            } catch (IllegalStateException e) {
+                throw new AssertionError("pinned version " + pinned.version() + " was reclaimed, current version " + tree.version(), e);
+            }
+            verify(again, fingerprints, "reopened pinned version " + again.version());
+            again.close();
+
+            if (held.size() > HELD || random.nextInt(4) == 0) {
+                VersionedRBTree<Integer, Long>.Snapshot done = held.remove(random.nextInt(held.size()));
+                verify(done, fingerprints, "version " + done.version() + " before close");
+                if (random.nextInt(64) == 0)
+                    checkInvariants(done.tree(), "version " + done.version());
+                done.close();
+                done.close();
+            }
+        }
+        for (VersionedRBTree<Integer, Long>.Snapshot snapshot : held) {
+            verify(snapshot, fingerprints, "version " + snapshot.version() + " at the end");
+            snapshot.close();
+        }
+    }
+
+    /**
+     * 遍历快照计算指纹，与写线程记下的比较；写线程在提交返回后才记下指纹，必要时等待
+     */
+    private static void verify(VersionedRBTree<Integer, Long>.Snapshot snapshot, Map<Long, Long> fingerprints, String when) {
+        long sum = 0;
+        int size = 0;
+        for (Map.Entry<Integer, Long> entry : snapshot) {
+            sum += hash(entry.getKey(), entry.getValue());
+            size++;
+        }
+        check(size == snapshot.size(), "iterated " + size + " entries, size() " + snapshot.size() + " in " + when);
+        Long expected;
+        while ((expected = fingerprints.get(snapshot.version())) == null)
+            Thread.yield();
+        check(fingerprint(size, sum) == expected, "contents differ from the committed version in " + when);
+    }
+
+    private static long hash(int key, long value) {
+        long h = (key * 0x9E3779B97F4A7C15L) ^ value;
+        return h * 0xC2B2AE3D27D4EB4FL;
+    }
+
+    private static long fingerprint(int size, long sum) {
+        return sum * 31 + size;
+    }
+
+    private static void checkInvariants(PersistentRBTree<Integer, Long> tree, String when) {
+        try {
+            tree.checkInvariants();
+        } catch (IllegalStateException e) {
+            throw new AssertionError(e.getMessage() + " in " + when, e);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,33 @@
+package top.noox.snapshot;
+
+import java.io.IOException;
+
+/**
+ * <p>快照中key或value的编码方式
+ * <p>快照中的key严格升序，写key时会传入前一个key，编码可以只写出与它的差（数值的差、字符串的公共前缀等）；
+ * 默认实现忽略前一个key，直接编码完整的值
+ * <p>
+ * @param <T> 编码的类型
+ */
+public interface Codec<T> {
+
+    void write(SnapshotOutput out, T value) throws IOException;
+
+    T read(SnapshotInput in) throws IOException;
+
+    /**
+     * 相对前一个key编码
+     * @param previous 前一个key，严格小于value
+     */
+    default void write(SnapshotOutput out, T previous, T value) throws IOException {
+        write(out, value);
+    }
+
+    /**
+     * 读取相对前一个key编码的值
+     * @param previous 前一个读出的key
+     */
+    default T read(SnapshotInput in, T previous) throws IOException {
+        return read(in);
+    }
+}
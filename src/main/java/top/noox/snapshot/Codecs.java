@@ -0,0 +1,138 @@
+package top.noox.snapshot;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 常用类型的编码
+ */
+public final class Codecs {
+
+    private Codecs() {
+    }
+
+    /**
+     * zigzag变长编码，绝对值小的数占用字节少；作为key时写与前一个key的差，连续或稠密的key每个只占1字节
+     */
+    public static final Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        public void write(SnapshotOutput out, Long value) throws IOException {
+            out.writeVarLong(zigzag(value));
+        }
+
+        @Override
+        public Long read(SnapshotInput in) throws IOException {
+            return unzigzag(in.readVarLong());
+        }
+
+        @Override
+        public void write(SnapshotOutput out, Long previous, Long value) throws IOException {
+            //差值按无符号处理，跨越整个long范围时溢出后仍可还原
+            out.writeVarLong(value - previous);
+        }
+
+        @Override
+        public Long read(SnapshotInput in, Long previous) throws IOException {
+            return previous + in.readVarLong();
+        }
+    };
+
+    /**
+     * 同 {@link #LONG}，读出的值超出int范围时抛出IOException
+     */
+    public static final Codec<Integer> INTEGER = new Codec<Integer>() {
+        @Override
+        public void write(SnapshotOutput out, Integer value) throws IOException {
+            out.writeVarLong(zigzag(value));
+        }
+
+        @Override
+        public Integer read(SnapshotInput in) throws IOException {
+            return toInt(unzigzag(in.readVarLong()));
+        }
+
+        @Override
+        public void write(SnapshotOutput out, Integer previous, Integer value) throws IOException {
+            out.writeVarLong((long) value - previous);
+        }
+
+        @Override
+        public Integer read(SnapshotInput in, Integer previous) throws IOException {
+            return toInt(previous + in.readVarLong());
+        }
+    };
+
+    /**
+     * UTF-8编码，前面是变长的字节数；作为key时只写与前一个key公共前缀的长度和剩余部分
+     * <p>字节数为负、公共前缀长于前一个key时抛出IOException
+     */
+    public static final Codec<String> STRING = new Codec<String>() {
+        @Override
+        public void write(SnapshotOutput out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeVarLong(bytes.length);
+            out.writeBytes(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public String read(SnapshotInput in) throws IOException {
+            byte[] bytes = in.readBytes(in.readLength(Integer.MAX_VALUE));
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void write(SnapshotOutput out, String previous, String value) throws IOException {
+            int n = Math.min(previous.length(), value.length()), prefix = 0;
+            while (prefix < n && previous.charAt(prefix) == value.charAt(prefix))
+                prefix++;
+            //不拆开代理对，保证剩余部分是合法的UTF-16
+            if (prefix > 0 && Character.isHighSurrogate(value.charAt(prefix - 1)))
+                prefix--;
+            out.writeVarLong(prefix);
+            write(out, value.substring(prefix));
+        }
+
+        @Override
+        public String read(SnapshotInput in, String previous) throws IOException {
+            int prefix = in.readLength(previous.length());
+            return previous.substring(0, prefix).concat(read(in));
+        }
+    };
+
+    /**
+     * 允许null的编码：先写一个字节标记是否为null，标记不是0或1时抛出IOException
+     * @param codec 非null值的编码
+     */
+    public static <T> Codec<T> nullable(Codec<T> codec) {
+        return new Codec<T>() {
+            @Override
+            public void write(SnapshotOutput out, T value) throws IOException {
+                out.writeByte(value == null ? 0 : 1);
+                if (value != null)
+                    codec.write(out, value);
+            }
+
+            @Override
+            public T read(SnapshotInput in) throws IOException {
+                int flag = in.readByte();
+                if (flag > 1)
+                    throw new IOException("corrupt snapshot: null flag " + flag);
+                return flag == 0 ? null : codec.read(in);
+            }
+        };
+    }
+
+    private static int toInt(long value) throws IOException {
+        if ((int) value != value)
+            throw new IOException("corrupt snapshot: " + value + " is out of int range");
+        return (int) value;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,164 @@
+package top.noox.snapshot;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>快照的读取端，格式见 {@link SnapshotOutput}
+ * <p>自带缓冲，会从底层的流中预读，读完快照后流的位置不确定
+ * <p>快照可能被截断或损坏，读出的长度先检查范围，字节按块读取，不会按损坏的长度预先分配内存
+ */
+public final class SnapshotInput {
+
+    private final InputStream in;
+
+    private final byte[] buffer = new byte[1 << 16];
+
+    private int position, limit;
+
+
+    public SnapshotInput(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * 读取并检查快照头部
+     * @return 键值对个数
+     * @throws IOException 不是本格式的快照
+     */
+    public long readHeader() throws IOException {
+        if (readInt() != SnapshotOutput.MAGIC)
+            throw new IOException("not a tree snapshot");
+        long version = readVarLong();
+        if (version != SnapshotOutput.VERSION)
+            throw new IOException("unsupported snapshot version: " + version);
+        return readVarLong();
+    }
+
+    /**
+     * <p>按顺序解码count个键值对，供 buildFromSorted 直接消费
+     * <p>返回的Entry对象被重复使用，调用方需在下一次next之前取出key与value；读取失败时抛出 {@link UncheckedIOException}
+     */
+    public <K, V> Iterator<Map.Entry<K, V>> entries(long count, Codec<K> keyCodec, Codec<V> valueCodec) {
+        return new Iterator<Map.Entry<K, V>>() {
+            private final Entry<K, V> entry = new Entry<>();
+            private long read;
+
+            @Override
+            public boolean hasNext() {
+                return read < count;
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (read == count)
+                    throw new NoSuchElementException();
+                try {
+                    entry.key = read == 0 ? keyCodec.read(SnapshotInput.this) : keyCodec.read(SnapshotInput.this, entry.key);
+                    entry.value = valueCodec.read(SnapshotInput.this);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                read++;
+                return entry;
+            }
+        };
+    }
+
+    public int readByte() throws IOException {
+        if (position == limit)
+            fill();
+        return buffer[position++] & 0xFF;
+    }
+
+    public int readInt() throws IOException {
+        return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+    }
+
+    public long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = position < limit ? buffer[position++] : readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("malformed varint");
+    }
+
+    /**
+     * 读取一个长度或下标
+     * @param max 允许的最大值
+     * @throws IOException 不在 [0, max] 内
+     */
+    public int readLength(int max) throws IOException {
+        long length = readVarLong();
+        if (length < 0 || length > max)
+            throw new IOException("corrupt snapshot: length " + length + " is not in [0, " + max + "]");
+        return (int) length;
+    }
+
+    /**
+     * 读取length个字节，数组随读到的数据逐块扩大，流提前结束时抛出EOFException而不是先分配length个字节
+     */
+    public byte[] readBytes(int length) throws IOException {
+        byte[] bytes = new byte[Math.min(length, buffer.length)];
+        for (int read = 0; read < length; ) {
+            if (read == bytes.length)
+                bytes = Arrays.copyOf(bytes, (int) Math.min(length, (long) bytes.length << 1));
+            int n = bytes.length - read;
+            readBytes(bytes, read, n);
+            read += n;
+        }
+        return bytes;
+    }
+
+    public void readBytes(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (position == limit)
+                fill();
+            int n = Math.min(length, limit - position);
+            System.arraycopy(buffer, position, bytes, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    private void fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0)
+            throw new EOFException("truncated snapshot");
+        position = 0;
+        limit = n;
+    }
+
+    /**
+     * 重复使用的键值对
+     */
+    private static final class Entry<K, V> implements Map.Entry<K, V> {
+        private K key;
+        private V value;
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
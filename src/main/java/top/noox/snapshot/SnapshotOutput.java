@@ -0,0 +1,104 @@
+package top.noox.snapshot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * <p>快照的写入端，自带缓冲，变长整数按7位一组、低位在前编码
+ * <p>快照格式：magic(int) | version(varint) | 个数(varint) | 按key升序的 [key | value]，
+ * 第一个key完整编码，其后的key相对前一个key编码，见 {@link Codec}
+ */
+public final class SnapshotOutput {
+
+    static final int MAGIC = 0x54534E50;    //"TSNP"
+    static final int VERSION = 1;
+
+    private final OutputStream out;
+
+    private final byte[] buffer = new byte[1 << 16];
+
+    private int position;
+
+
+    public SnapshotOutput(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * 写出完整的快照并flush，不关闭底层的流
+     * @param count 键值对个数
+     * @param entries 按key严格升序的键值对，恰好count个
+     */
+    public <K, V> void writeEntries(long count, Iterator<? extends Map.Entry<K, V>> entries,
+                                    Codec<? super K> keyCodec, Codec<? super V> valueCodec) throws IOException {
+        writeInt(MAGIC);
+        writeVarLong(VERSION);
+        writeVarLong(count);
+        K previous = null;
+        for (long i = 0; i < count; i++) {
+            if (!entries.hasNext())
+                throw new IllegalStateException("expected " + count + " entries, got " + i);
+            Map.Entry<K, V> entry = entries.next();
+            K key = entry.getKey();
+            if (i == 0)
+                keyCodec.write(this, key);
+            else
+                keyCodec.write(this, previous, key);
+            valueCodec.write(this, entry.getValue());
+            previous = key;
+        }
+        if (entries.hasNext())
+            throw new IllegalStateException("more than " + count + " entries");
+        flush();
+    }
+
+    public void writeByte(int b) throws IOException {
+        if (position == buffer.length)
+            drain();
+        buffer[position++] = (byte) b;
+    }
+
+    public void writeInt(int value) throws IOException {
+        writeByte(value >>> 24);
+        writeByte(value >>> 16);
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+
+    /**
+     * 无符号变长编码，小于128的数占1字节，最多10字节
+     */
+    public void writeVarLong(long value) throws IOException {
+        if (buffer.length - position < 10)
+            drain();
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        if (length > buffer.length - position) {
+            drain();
+            if (length > buffer.length) {
+                out.write(bytes, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+}